@@ -0,0 +1,250 @@
+package space.gorogoro.frameguard.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.UUID;
+
+import space.gorogoro.frameguard.FrameGuardLockIndex;
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardPosition;
+import space.gorogoro.frameguard.FrameGuardSqliteStore;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * BenchmarkData
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Generated SQLite databases of the benchmarks. A database of N locks is written once to
+ * frameguard.bench.dir (default target/bench-data) and reused by later runs.
+ * Each chunk holds 64 frames in an 8x8 grid at y=64, facing north onto the block at z+1.
+ * Chunks are laid out in a square around chunk 0,0. Half of the locks are 30 days old.
+ */
+public final class BenchmarkData {
+  public static final String WORLD = "world";
+  public static final int WORLD_ID = 1;
+  public static final int USERS = 1000;
+  public static final int LOCKS_PER_CHUNK = 64;
+  public static final int Y = 64;
+  public static final int AGED_DAYS = 30;
+  private static final int COMMIT_INTERVAL = 10000;
+  private static final int QUERY_TIMEOUT = 30;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Get number of chunks on a side of the square holding the locks.
+   * @param int Number of locks
+   * @return int Chunks on a side
+   */
+  public static int getSide(int locks) {
+    int chunks = (locks + LOCKS_PER_CHUNK - 1) / LOCKS_PER_CHUNK;
+    return (int)Math.ceil(Math.sqrt(chunks));
+  }
+
+  /**
+   * Create lock record number i.
+   * @param int Number of lock
+   * @param int Chunks on a side
+   * @return FrameGuardLockRecord Lock record
+   */
+  public static FrameGuardLockRecord getRecord(int i, int side) {
+    int chunk = i / LOCKS_PER_CHUNK;
+    int slot = i % LOCKS_PER_CHUNK;
+    int x = (chunk % side) * 16 + (slot % 8) * 2;
+    int z = (chunk / side) * 16 + (slot / 8) * 2;
+    return new FrameGuardLockRecord(x, Y, z, chunk % USERS + 1, "NORTH", x, Y, z + 1, "STONE");
+  }
+
+  /**
+   * Get database of locks, generated when it is missing.
+   * @param int Number of locks
+   * @return File Database file
+   * @throws FrameGuardStoreException
+   */
+  public static synchronized File getDatabase(int locks) throws FrameGuardStoreException {
+    File dir = new File(System.getProperty("frameguard.bench.dir", "target/bench-data"));
+    File file = new File(dir, "locks-" + locks + ".db");
+    File done = new File(dir, "locks-" + locks + ".done");
+    if(done.exists()){
+      return file;
+    }
+    dir.mkdirs();
+    file.delete();
+    generate(file, locks);
+    try{
+      done.createNewFile();
+    } catch (IOException e){
+      throw new FrameGuardStoreException(e);
+    }
+    return file;
+  }
+
+  /**
+   * Copy database of locks for benchmarks that change it.
+   * @param int Number of locks
+   * @return File Copy, delete it after use
+   * @throws FrameGuardStoreException
+   */
+  public static File copyDatabase(int locks) throws FrameGuardStoreException {
+    File src = getDatabase(locks);
+    try{
+      File copy = File.createTempFile("locks-" + locks + "-", ".db", src.getParentFile());
+      Files.copy(src.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return copy;
+    } catch (IOException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  /**
+   * Delete copy of database with its WAL files.
+   * @param File Copy
+   */
+  public static void deleteDatabase(File file) {
+    new File(file.getPath() + "-wal").delete();
+    new File(file.getPath() + "-shm").delete();
+    file.delete();
+  }
+
+  /**
+   * Open store of database.
+   * @param File Database file
+   * @return FrameGuardLockStore Store
+   * @throws FrameGuardStoreException
+   */
+  public static FrameGuardLockStore open(File file) throws FrameGuardStoreException {
+    FrameGuardLockStore store = new FrameGuardSqliteStore(file, QUERY_TIMEOUT);
+    store.open();
+    return store;
+  }
+
+  /**
+   * Write locks through the store, then age half of them.
+   * @param File Database file
+   * @param int Number of locks
+   * @throws FrameGuardStoreException
+   */
+  private static void generate(File file, int locks) throws FrameGuardStoreException {
+    FrameGuardLockStore store = open(file);
+    try{
+      store.putWorld(WORLD_ID, WORLD);
+      Random random = new Random(USERS);
+      for(int id = 1; id <= USERS; id++){
+        store.putUser(id, new UUID(random.nextLong(), random.nextLong()), "player" + id);
+      }
+      int side = getSide(locks);
+      for(int i = 0; i < locks; i++){
+        store.putLock(WORLD_ID, getRecord(i, side));
+        if(i % COMMIT_INTERVAL == COMMIT_INTERVAL - 1){
+          store.commit();
+        }
+      }
+      store.commit();
+    } finally {
+      store.close();
+    }
+
+    Connection con = null;
+    Statement stmt = null;
+    try{
+      con = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+      stmt = con.createStatement();
+      stmt.executeUpdate("UPDATE lockdata SET created_at = datetime('now','localtime','-" + AGED_DAYS + " days') WHERE pos % 2 = 0");
+      stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      try{
+        if(stmt != null){
+          stmt.close();
+        }
+        if(con != null){
+          con.close();
+        }
+      } catch (SQLException e){
+        throw new FrameGuardStoreException(e);
+      }
+    }
+  }
+
+  /**
+   * Load the resident chunks into the index, the square of at most chunks x chunks around chunk 0,0.
+   * @param FrameGuardLockStore Store
+   * @param FrameGuardLockIndex Index
+   * @param int Number of locks
+   * @param int Chunks on a side of the resident square
+   * @return int Chunks on a side that were loaded
+   * @throws FrameGuardStoreException
+   */
+  public static int loadResident(FrameGuardLockStore store, final FrameGuardLockIndex index, int locks, int chunks) throws FrameGuardStoreException {
+    int side = Math.min(getSide(locks), chunks);
+    for(int cx = 0; cx < side; cx++){
+      for(int cz = 0; cz < side; cz++){
+        loadChunk(store, index, cx, cz);
+      }
+    }
+    return side;
+  }
+
+  /**
+   * Load chunk into the index the way FrameGuardDatabase does on a miss.
+   * @param FrameGuardLockStore Store
+   * @param FrameGuardLockIndex Index
+   * @param int Chunk x
+   * @param int Chunk z
+   * @throws FrameGuardStoreException
+   */
+  public static void loadChunk(FrameGuardLockStore store, final FrameGuardLockIndex index, int cx, int cz) throws FrameGuardStoreException {
+    store.forEachLockInChunk(WORLD_ID, cx, cz, new FrameGuardLockStore.LockVisitor() {
+      @Override
+      public void visit(int worldId, FrameGuardLockRecord r) {
+        index.put(WORLD, r.getX(), r.getY(), r.getZ(), r.getOwnerId(), r.getBlockFace(), r.getAttachedX(), r.getAttachedY(), r.getAttachedZ(), r.getAttachedMaterial());
+      }
+    });
+    index.markChunkLoaded(WORLD, cx, cz);
+  }
+
+  /**
+   * Create probe positions inside the resident square.
+   * A quarter are locks, a quarter attached blocks and the rest other blocks near the frames.
+   * @param int Number of probes, power of 2
+   * @param int Chunks on a side of the resident square
+   * @param long Seed
+   * @return long[] Packed positions
+   */
+  public static long[] getProbes(int count, int side, long seed) {
+    Random random = new Random(seed);
+    long[] probes = new long[count];
+    for(int i = 0; i < count; i++){
+      int x = random.nextInt(side * 8) * 2;
+      int z = random.nextInt(side * 8) * 2;
+      switch(i & 3){
+        case 0:
+          probes[i] = FrameGuardPosition.pack(x, Y, z);
+          break;
+        case 1:
+          probes[i] = FrameGuardPosition.pack(x, Y, z + 1);
+          break;
+        case 2:
+          probes[i] = FrameGuardPosition.pack(x + 1, Y, z);
+          break;
+        default:
+          probes[i] = FrameGuardPosition.pack(x, Y + 1 + random.nextInt(64), z);
+          break;
+      }
+    }
+    return probes;
+  }
+}
@@ -0,0 +1,33 @@
+package space.gorogoro.frameguard.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * BenchmarkMain
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * JMH runner taking the usual JMH arguments. The GC profiler is always on
+ * so that allocation per operation (gc.alloc.rate.norm) is reported.
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    Options options = new OptionsBuilder()
+      .parent(new CommandLineOptions(args))
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
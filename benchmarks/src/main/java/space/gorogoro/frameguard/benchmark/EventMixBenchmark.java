@@ -0,0 +1,98 @@
+package space.gorogoro.frameguard.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space.gorogoro.frameguard.FrameGuardLockIndex;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardPosition;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * EventMixBenchmark
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Checks FrameGuardListener makes for a mix of block breaks and piston moves, replayed
+ * against the index since the handlers need a running server. A block break asks
+ * hasLockInSection, then isLocked and isAttached. A piston asks isAnyAdjacent for its
+ * head and the 12 blocks it pushes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventMixBenchmark {
+  private static final int EVENTS = 1 << 16;
+  private static final int RESIDENT_SIDE = 32;
+  private static final int PUSHED = 12;
+
+  @Param({"10000", "1000000", "10000000"})
+  public int locks;
+
+  @Param({"10"})
+  public int pistonPercent;
+
+  private FrameGuardLockStore store;
+  private FrameGuardLockIndex index;
+  private long[] positions;
+  private boolean[] pistons;
+  private final long[] pistonCheck = new long[PUSHED + 1];
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws FrameGuardStoreException {
+    store = BenchmarkData.open(BenchmarkData.getDatabase(locks));
+    index = new FrameGuardLockIndex();
+    int side = BenchmarkData.loadResident(store, index, locks, RESIDENT_SIDE);
+    store.close();
+    positions = BenchmarkData.getProbes(EVENTS, side, 3L);
+    pistons = new boolean[EVENTS];
+    Random random = new Random(4L);
+    for(int i = 0; i < EVENTS; i++){
+      pistons[i] = random.nextInt(100) < pistonPercent;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    index.clear();
+  }
+
+  @Benchmark
+  public boolean eventMix() {
+    int i = next++ & (EVENTS - 1);
+    long pos = positions[i];
+    int x = FrameGuardPosition.x(pos);
+    int y = FrameGuardPosition.y(pos);
+    int z = FrameGuardPosition.z(pos);
+    if(pistons[i]){
+      for(int n = 0; n <= PUSHED; n++){
+        pistonCheck[n] = FrameGuardPosition.pack(x - n, y, z);
+      }
+      return index.isAnyAdjacent(BenchmarkData.WORLD, pistonCheck, PUSHED + 1);
+    }
+    if(!index.hasLockInSection(BenchmarkData.WORLD, x, y, z)){
+      return false;
+    }
+    return index.isLocked(BenchmarkData.WORLD, x, y, z) || index.isAttached(BenchmarkData.WORLD, x, y, z);
+  }
+}
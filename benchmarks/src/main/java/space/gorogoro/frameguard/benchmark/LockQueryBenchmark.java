@@ -0,0 +1,110 @@
+package space.gorogoro.frameguard.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space.gorogoro.frameguard.FrameGuardLockIndex;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardPosition;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * LockQueryBenchmark
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * isLocked, isAttached and isLockedOwner of FrameGuardDatabase answered by the index
+ * of the resident chunks, and loading a chunk from the store on an index miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LockQueryBenchmark {
+  private static final int PROBES = 1 << 16;
+  private static final int RESIDENT_SIDE = 32;
+
+  @Param({"10000", "1000000", "10000000"})
+  public int locks;
+
+  private FrameGuardLockStore store;
+  private FrameGuardLockIndex index;
+  private FrameGuardLockIndex scratch;
+  private long[] probes;
+  private int[] owners;
+  private int[] chunks;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws FrameGuardStoreException {
+    store = BenchmarkData.open(BenchmarkData.getDatabase(locks));
+    index = new FrameGuardLockIndex();
+    scratch = new FrameGuardLockIndex();
+    int side = BenchmarkData.loadResident(store, index, locks, RESIDENT_SIDE);
+    probes = BenchmarkData.getProbes(PROBES, side, 1L);
+    owners = new int[PROBES];
+    chunks = new int[PROBES];
+    Random random = new Random(2L);
+    int allSide = BenchmarkData.getSide(locks);
+    for(int i = 0; i < PROBES; i++){
+      // Half of the owner checks hit the owner.
+      int owner = index.getOwner(BenchmarkData.WORLD, FrameGuardPosition.x(probes[i]), FrameGuardPosition.y(probes[i]), FrameGuardPosition.z(probes[i]));
+      owners[i] = owner > 0 && random.nextBoolean() ? owner : random.nextInt(BenchmarkData.USERS) + 1;
+      chunks[i] = random.nextInt(allSide * allSide);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    store.close();
+  }
+
+  @Benchmark
+  public boolean isLocked() {
+    long pos = probes[next++ & (PROBES - 1)];
+    return index.isLocked(BenchmarkData.WORLD, FrameGuardPosition.x(pos), FrameGuardPosition.y(pos), FrameGuardPosition.z(pos));
+  }
+
+  @Benchmark
+  public boolean isAttached() {
+    long pos = probes[next++ & (PROBES - 1)];
+    return index.isAttached(BenchmarkData.WORLD, FrameGuardPosition.x(pos), FrameGuardPosition.y(pos), FrameGuardPosition.z(pos));
+  }
+
+  @Benchmark
+  public boolean isLockedOwner() {
+    int i = next++ & (PROBES - 1);
+    long pos = probes[i];
+    return index.isLockedOwner(BenchmarkData.WORLD, FrameGuardPosition.x(pos), FrameGuardPosition.y(pos), FrameGuardPosition.z(pos), owners[i]);
+  }
+
+  @Benchmark
+  public int loadChunk() throws FrameGuardStoreException {
+    int chunk = chunks[next++ & (PROBES - 1)];
+    int side = BenchmarkData.getSide(locks);
+    int cx = chunk % side;
+    int cz = chunk / side;
+    BenchmarkData.loadChunk(store, scratch, cx, cz);
+    int size = scratch.size();
+    scratch.unloadChunk(BenchmarkData.WORLD, cx, cz);
+    return size;
+  }
+}
@@ -0,0 +1,99 @@
+package space.gorogoro.frameguard.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * LockWriteBenchmark
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * createLockData and removeLockData as the writer thread runs them: lock and unlock
+ * committed one by one, and a batch committed together as the writer does under load.
+ * New locks go above the generated ones (y=128) so the table keeps its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LockWriteBenchmark {
+  private static final int BATCH = 500;
+  private static final int Y = 128;
+
+  @Param({"10000", "1000000", "10000000"})
+  public int locks;
+
+  private File file;
+  private FrameGuardLockStore store;
+  private int side;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws FrameGuardStoreException {
+    file = BenchmarkData.copyDatabase(locks);
+    store = BenchmarkData.open(file);
+    side = BenchmarkData.getSide(locks);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    store.close();
+    BenchmarkData.deleteDatabase(file);
+  }
+
+  /**
+   * Create record of a new lock spread over the generated chunks.
+   * @return FrameGuardLockRecord Lock record
+   */
+  private FrameGuardLockRecord nextRecord() {
+    FrameGuardLockRecord r = BenchmarkData.getRecord(next++ % (side * side * BenchmarkData.LOCKS_PER_CHUNK), side);
+    return new FrameGuardLockRecord(r.getX(), Y, r.getZ(), r.getOwnerId(), r.getBlockFace(), r.getAttachedX(), Y, r.getAttachedZ(), r.getAttachedMaterial());
+  }
+
+  @Benchmark
+  public void lockUnlock() throws FrameGuardStoreException {
+    FrameGuardLockRecord r = nextRecord();
+    store.putLock(BenchmarkData.WORLD_ID, r);
+    store.commit();
+    store.removeLock(BenchmarkData.WORLD_ID, r.getX(), r.getY(), r.getZ());
+    store.commit();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void lockUnlockBatched() throws FrameGuardStoreException {
+    FrameGuardLockRecord[] batch = new FrameGuardLockRecord[BATCH];
+    for(int i = 0; i < BATCH; i++){
+      batch[i] = nextRecord();
+      store.putLock(BenchmarkData.WORLD_ID, batch[i]);
+    }
+    store.commit();
+    for(FrameGuardLockRecord r : batch){
+      store.removeLock(BenchmarkData.WORLD_ID, r.getX(), r.getY(), r.getZ());
+    }
+    store.commit();
+  }
+}
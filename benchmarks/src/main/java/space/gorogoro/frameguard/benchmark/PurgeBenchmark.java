@@ -0,0 +1,73 @@
+package space.gorogoro.frameguard.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * PurgeBenchmark
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * purgeData of fgpurge over a fresh copy of the database, removing the aged half of the locks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class PurgeBenchmark {
+  private static final int DAYS = 7;
+  private static final int BATCH_SIZE = 1000;
+
+  @Param({"10000", "1000000", "10000000"})
+  public int locks;
+
+  private File file;
+  private FrameGuardLockStore store;
+
+  @Setup(Level.Invocation)
+  public void setup() throws FrameGuardStoreException {
+    file = BenchmarkData.copyDatabase(locks);
+    store = BenchmarkData.open(file);
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDown() {
+    store.close();
+    BenchmarkData.deleteDatabase(file);
+  }
+
+  @Benchmark
+  public int purge() throws FrameGuardStoreException {
+    return store.purge(DAYS, BATCH_SIZE, new FrameGuardLockStore.PurgeListener() {
+      @Override
+      public void purged(int worldId, FrameGuardLockRecord record) {
+      }
+
+      @Override
+      public void progress(int purgedCount) {
+      }
+    });
+  }
+}
@@ -0,0 +1,204 @@
+package space.gorogoro.frameguard;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * FrameGuardConnectionPool
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Bounded pool of JDBC connections. Each connection keeps its prepared statements.
+ * A connection that was idle for a while is validated before it is handed out,
+ * and a broken connection is closed so that a new one is opened in its place.
+ */
+public class FrameGuardConnectionPool {
+  private static final long VALIDATE_AFTER_MILLIS = 30000L;
+  private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+  private final ConnectionFactory factory;
+  private final int queryTimeout;
+  private final long borrowTimeoutMillis;
+  private final Semaphore permits;
+  private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+  private volatile boolean closed;
+
+  /**
+   * Opens new connection.
+   */
+  public interface ConnectionFactory {
+    Connection connect() throws SQLException;
+  }
+
+  /**
+   * Connection with its prepared statements.
+   */
+  public static class PooledConnection {
+    private final Connection con;
+    private final int queryTimeout;
+    private final Map<String, PreparedStatement> prepStmts = new HashMap<String, PreparedStatement>();
+    private long lastUsed = System.currentTimeMillis();
+
+    /**
+     * Constructor of PooledConnection.
+     * @param Connection Connection
+     * @param int Query timeout (seconds)
+     */
+    private PooledConnection(Connection con, int queryTimeout) {
+      this.con = con;
+      this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Get connection.
+     * @return Connection Connection
+     */
+    public Connection getConnection() {
+      return con;
+    }
+
+    /**
+     * Get prepared statement. Statements are prepared once and reused, do not close them.
+     * @param String SQL
+     * @return PreparedStatement PreparedStatement
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+      PreparedStatement prepStmt = prepStmts.get(sql);
+      if(prepStmt == null){
+        prepStmt = con.prepareStatement(sql);
+        prepStmt.setQueryTimeout(queryTimeout);
+        prepStmts.put(sql, prepStmt);
+      }
+      return prepStmt;
+    }
+
+    /**
+     * Check connection.
+     * @return boolean true:usable false:broken
+     */
+    private boolean isValid() {
+      try{
+        return !con.isClosed() && con.isValid(VALIDATE_TIMEOUT_SECONDS);
+      } catch (SQLException e){
+        return false;
+      }
+    }
+
+    /**
+     * Close statements and connection.
+     */
+    private void close() {
+      for(PreparedStatement prepStmt : prepStmts.values()){
+        try{
+          prepStmt.close();
+        } catch (SQLException e){
+          // The connection is closed anyway.
+        }
+      }
+      prepStmts.clear();
+      try{
+        con.close();
+      } catch (SQLException e){
+        FrameGuardLog.logStackTrace(e);
+      }
+    }
+  }
+
+  /**
+   * Constructor of FrameGuardConnectionPool.
+   * @param ConnectionFactory Factory of connections
+   * @param int Maximum number of connections
+   * @param int Query timeout (seconds), also the time to wait for a free connection
+   */
+  public FrameGuardConnectionPool(ConnectionFactory factory, int maxSize, int queryTimeout) {
+    this.factory = factory;
+    this.queryTimeout = queryTimeout;
+    this.borrowTimeoutMillis = Math.max(queryTimeout, 1) * 1000L;
+    this.permits = new Semaphore(Math.max(maxSize, 1), true);
+  }
+
+  /**
+   * Borrow connection. It must be given back with release.
+   * @return PooledConnection Connection in auto commit mode
+   * @throws SQLException
+   */
+  public PooledConnection borrow() throws SQLException {
+    if(closed){
+      throw new SQLException("Connection pool is closed.");
+    }
+    try{
+      if(!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)){
+        throw new SQLException("Timed out waiting for a free connection.");
+      }
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new SQLException(e);
+    }
+    try{
+      PooledConnection pooled;
+      while((pooled = idle.pollFirst()) != null){
+        if(System.currentTimeMillis() - pooled.lastUsed < VALIDATE_AFTER_MILLIS || pooled.isValid()){
+          return pooled;
+        }
+        pooled.close();
+      }
+      Connection con = factory.connect();
+      con.setAutoCommit(true);
+      return new PooledConnection(con, queryTimeout);
+    } catch (SQLException e){
+      permits.release();
+      throw e;
+    } catch (RuntimeException e){
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Give back connection.
+   * @param PooledConnection Connection
+   * @param boolean true:an error occurred on the connection, it is checked before reuse
+   */
+  public void release(PooledConnection pooled, boolean failed) {
+    if(pooled == null){
+      return;
+    }
+    try{
+      if(closed || (failed && !pooled.isValid())){
+        pooled.close();
+      }else{
+        if(!pooled.con.getAutoCommit()){
+          pooled.con.rollback();
+          pooled.con.setAutoCommit(true);
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(pooled);
+      }
+    } catch (SQLException e){
+      pooled.close();
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Close idle connections. Borrowed connections are closed when they are given back.
+   */
+  public void close() {
+    closed = true;
+    PooledConnection pooled;
+    while((pooled = idle.pollFirst()) != null){
+      pooled.close();
+    }
+  }
+}
@@ -0,0 +1,1306 @@
+package space.gorogoro.frameguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/*
+ * FrameGuardCore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Locks and protection decisions over world names, block coordinates and player UUIDs.
+ * Does not depend on Bukkit: the plugin translates events into these calls, and the
+ * load generator replays event streams against it without a server.
+ * Called from the main thread. Writes go to the writer thread, and callbacks come back
+ * through the executor of the main thread.
+ */
+public class FrameGuardCore {
+  private static final int STREAM_PROGRESS_INTERVAL = 100000;
+
+  private final Logger logger;
+  private final FrameGuardMetrics metrics;
+  private final FrameGuardLockIndex lockIndex = new FrameGuardLockIndex();
+  private final FrameGuardDictionary<String> worldIds = new FrameGuardDictionary<String>();
+  private final FrameGuardDictionary<UUID> userIds = new FrameGuardDictionary<UUID>();
+  private final Map<Integer, String> playerNames = new HashMap<Integer, String>();
+  private FrameGuardLockStore store;
+  private FrameGuardWriter writer;
+  private Executor mainThread;
+  private volatile Thread streamThread;
+
+  /**
+   * Result of a protection check.
+   */
+  public enum Verdict {
+    /** Not protected. */
+    ALLOW,
+    /** A locked wall hanging is there. */
+    LOCKED,
+    /** A locked wall hanging is attached to the block. */
+    ATTACHED
+  }
+
+  /**
+   * Receives result of expire on the main thread.
+   */
+  public interface ExpireCallback {
+    /**
+     * @param int Number of expired locks, -1 when failed
+     * @param long Time spent on the writer thread (nanoseconds)
+     */
+    void expired(int count, long nanos);
+  }
+
+  /**
+   * Receives progress of purge on the main thread.
+   */
+  public interface PurgeCallback {
+    /**
+     * @param int Number of locks purged so far
+     */
+    void progress(int purgedCount);
+
+    /**
+     * Purge finished.
+     */
+    void finished();
+
+    /**
+     * Purge failed, locks purged before the failure stay purged.
+     */
+    void failed();
+  }
+
+  /**
+   * Receives progress of export or import on the main thread.
+   */
+  public interface StreamCallback {
+    /**
+     * @param long Number of locks so far
+     */
+    void progress(long count);
+
+    /**
+     * @param long Number of locks
+     */
+    void finished(long count);
+
+    /**
+     * Failed, locks imported before the failure stay imported.
+     */
+    void failed();
+  }
+
+  /**
+   * Receives result of bulk unlock or transfer on the main thread.
+   */
+  public interface BulkCallback {
+    /**
+     * @param int Number of locks, -1 when failed
+     */
+    void done(int count);
+  }
+
+  /**
+   * Constructor of FrameGuardCore.
+   * @param Logger Logger
+   * @param FrameGuardMetrics Metrics
+   */
+  public FrameGuardCore(Logger logger, FrameGuardMetrics metrics) {
+    this.logger = logger;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Open store, load ids of world and user and start the writer thread.
+   * @param FrameGuardLockStore Store
+   * @param Executor Executor of the main thread
+   * @throws FrameGuardStoreException
+   */
+  public void open(FrameGuardLockStore store, Executor mainThread) throws FrameGuardStoreException {
+    this.store = store;
+    this.mainThread = mainThread;
+    store.open();
+    loadDictionaries();
+    writer = new FrameGuardWriter(logger, store, mainThread);
+    writer.start();
+  }
+
+  /**
+   * Flush queued writes and close store.
+   * @param long Maximum wait for queued writes (milliseconds)
+   */
+  public void close(long flushTimeoutMillis) {
+    try{
+      Thread running = streamThread;
+      if(running != null){
+        // Export and import stop at the next row, imported batches stay imported.
+        running.interrupt();
+        running.join(flushTimeoutMillis);
+      }
+      if(writer != null){
+        writer.shutdown(flushTimeoutMillis);
+        writer = null;
+      }
+      if(store != null){
+        store.close();
+        store = null;
+      }
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Load ids of world and user.
+   * @throws FrameGuardStoreException
+   */
+  private void loadDictionaries() throws FrameGuardStoreException {
+    worldIds.clear();
+    userIds.clear();
+    playerNames.clear();
+    store.forEachWorld(new FrameGuardLockStore.WorldVisitor() {
+      @Override
+      public void visit(int id, String worldName) {
+        worldIds.put(worldName, id);
+      }
+    });
+    store.forEachUser(new FrameGuardLockStore.UserVisitor() {
+      @Override
+      public void visit(int id, UUID uuid, String playerName) {
+        userIds.put(uuid, id);
+        playerNames.put(id, playerName);
+      }
+    });
+  }
+
+  /**
+   * Add worlds stored since the store was opened, e.g. by another server sharing the store.
+   */
+  private void loadWorlds() {
+    try{
+      store.forEachWorld(new FrameGuardLockStore.WorldVisitor() {
+        @Override
+        public void visit(int id, String worldName) {
+          if(worldIds.getKey(id) == null){
+            worldIds.put(worldName, id);
+          }
+        }
+      });
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Add users stored since the store was opened, e.g. by another server sharing the store.
+   */
+  private void loadUsers() {
+    try{
+      store.forEachUser(new FrameGuardLockStore.UserVisitor() {
+        @Override
+        public void visit(int id, UUID uuid, String playerName) {
+          if(!playerNames.containsKey(id)){
+            userIds.put(uuid, id);
+            playerNames.put(id, playerName);
+          }
+        }
+      });
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Get id of world. The id of a new world is assigned by a shared store, or else here.
+   * @param String World name
+   * @return int World id
+   * @throws FrameGuardStoreException
+   */
+  private int internWorld(String world) throws FrameGuardStoreException {
+    int id = worldIds.getId(world);
+    if(id < 0){
+      id = store.getSharedWorldId(world);
+      if(id < 0){
+        id = worldIds.intern(world);
+      }else{
+        worldIds.put(world, id);
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Get id of user and remember the name. The id of a new user is assigned by a shared store, or else here.
+   * @param UUID Player
+   * @param String Player name
+   * @return int User id
+   * @throws FrameGuardStoreException
+   */
+  private int internUser(UUID player, String playerName) throws FrameGuardStoreException {
+    int id = userIds.getId(player);
+    if(id < 0){
+      id = store.getSharedUserId(player, playerName);
+      if(id < 0){
+        id = userIds.intern(player);
+      }else{
+        userIds.put(player, id);
+      }
+    }
+    if(!playerNames.containsKey(id)){
+      playerNames.put(id, playerName);
+    }
+    return id;
+  }
+
+  /**
+   * Forget lock data of all chunks.
+   */
+  public void unloadAllChunks() {
+    lockIndex.clear();
+  }
+
+  /**
+   * Get number of locks in memory.
+   * @return int Number of locks
+   */
+  public int getLoadedLockCount() {
+    return lockIndex.size();
+  }
+
+  /**
+   * Load lock data of chunk.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   * @param boolean true:chunk was generated just now
+   */
+  public void loadChunk(final String world, int chunkX, int chunkZ, boolean newChunk) {
+    if(newChunk){
+      // A chunk generated just now has no lock.
+      lockIndex.markChunkLoaded(world, chunkX, chunkZ);
+      return;
+    }
+    long started = System.nanoTime();
+    try{
+      try{
+        int worldId = worldIds.getId(world);
+        if(worldId < 0){
+          // Another server sharing the store may have locked in the world.
+          worldId = store.getSharedWorldId(world);
+          if(worldId >= 0){
+            worldIds.put(world, worldId);
+          }
+        }
+        if(lockIndex.isChunkLoaded(world, chunkX, chunkZ) || worldId < 0){
+          // Still in memory because the writes of the chunk are not committed yet, or the world has no lock.
+          lockIndex.markChunkLoaded(world, chunkX, chunkZ);
+          return;
+        }
+        store.forEachLockInChunk(worldId, chunkX, chunkZ, new FrameGuardLockStore.LockVisitor() {
+          @Override
+          public void visit(int id, FrameGuardLockRecord record) {
+            lockIndex.put(
+              world,
+              record.getX(),
+              record.getY(),
+              record.getZ(),
+              record.getOwnerId(),
+              record.getBlockFace(),
+              record.getAttachedX(),
+              record.getAttachedY(),
+              record.getAttachedZ(),
+              record.getAttachedMaterial()
+            );
+          }
+        });
+        lockIndex.markChunkLoaded(world, chunkX, chunkZ);
+      } catch (Exception e){
+        FrameGuardLog.logStackTrace(e);
+      }
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.LOAD_CHUNK, started);
+    }
+  }
+
+  /**
+   * Drop lock data of chunk.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   */
+  public void unloadChunk(String world, int chunkX, int chunkZ) {
+    lockIndex.unloadChunk(world, chunkX, chunkZ);
+  }
+
+  /**
+   * Load lock data of chunk if it is not loaded yet.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   */
+  private void ensureChunkLoaded(String world, int chunkX, int chunkZ) {
+    boolean loaded = lockIndex.isChunkLoaded(world, chunkX, chunkZ);
+    metrics.recordChunk(loaded);
+    if(!loaded){
+      loadChunk(world, chunkX, chunkZ, false);
+    }
+  }
+
+  /**
+   * Load the locks of the chunks holding the block and its horizontal sides.
+   * A lock in the next chunk can touch a block on the edge of the chunk.
+   * @param String World name
+   * @param int x
+   * @param int z
+   */
+  private void loadNeighbourChunks(String world, int x, int z){
+    for(int chunkX = (x - 1) >> 4; chunkX <= (x + 1) >> 4; chunkX++){
+      for(int chunkZ = (z - 1) >> 4; chunkZ <= (z + 1) >> 4; chunkZ++){
+        ensureChunkLoaded(world, chunkX, chunkZ);
+      }
+    }
+  }
+
+  /**
+   * Load the locks of the chunks holding the blocks and their horizontal sides.
+   * Most neighbouring positions share their chunks, the chunks are loaded when the range changes.
+   * @param String World name
+   * @param long[] Positions packed by FrameGuardPosition.pack
+   * @param int Number of positions
+   */
+  private void loadNeighbourChunks(String world, long[] positions, int count){
+    int loadedMinX = 0;
+    int loadedMaxX = -1;
+    int loadedMinZ = 0;
+    int loadedMaxZ = -1;
+    for(int i = 0; i < count; i++){
+      int x = FrameGuardPosition.x(positions[i]);
+      int z = FrameGuardPosition.z(positions[i]);
+      if((x - 1) >> 4 != loadedMinX || (x + 1) >> 4 != loadedMaxX || (z - 1) >> 4 != loadedMinZ || (z + 1) >> 4 != loadedMaxZ){
+        loadNeighbourChunks(world, x, z);
+        loadedMinX = (x - 1) >> 4;
+        loadedMaxX = (x + 1) >> 4;
+        loadedMinZ = (z - 1) >> 4;
+        loadedMaxZ = (z + 1) >> 4;
+      }
+    }
+  }
+
+  /**
+   * Get number of queued writes.
+   * @return int Number of queued writes
+   */
+  public int getWriteQueueSize() {
+    return writer == null ? 0 : writer.getQueueSize();
+  }
+
+  /**
+   * Check a block broken by a player.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return Verdict LOCKED, ATTACHED or ALLOW
+   */
+  public Verdict checkBlockBreak(String world, int x, int y, int z) {
+    if(!hasLockInSection(world, x, y, z)){
+      return Verdict.ALLOW;
+    }
+    if(isLocked(world, x, y, z)){
+      return Verdict.LOCKED;
+    }
+    if(isAttached(world, x, y, z)){
+      return Verdict.ATTACHED;
+    }
+    return Verdict.ALLOW;
+  }
+
+  /**
+   * Check a block that burns or fades.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return Verdict LOCKED, ATTACHED or ALLOW
+   */
+  public Verdict checkBlockChange(String world, int x, int y, int z) {
+    if(!isAdjacentToLock(world, x, y, z)){
+      return Verdict.ALLOW;
+    }
+    if(isLocked(world, x, y, z)){
+      return Verdict.LOCKED;
+    }
+    if(isAttached(world, x, y, z)){
+      return Verdict.ATTACHED;
+    }
+    return Verdict.ALLOW;
+  }
+
+  /**
+   * Check a block placed by a player.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return Verdict LOCKED or ALLOW
+   */
+  public Verdict checkBlockPlace(String world, int x, int y, int z) {
+    if(!isAdjacentToLock(world, x, y, z)){
+      return Verdict.ALLOW;
+    }
+    return isLocked(world, x, y, z) ? Verdict.LOCKED : Verdict.ALLOW;
+  }
+
+  /**
+   * Check lock data.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:locked false:no lock
+   */
+  public boolean isLocked(String world, int x, int y, int z){
+    long started = System.nanoTime();
+    try{
+      ensureChunkLoaded(world, x >> 4, z >> 4);
+      return lockIndex.isLocked(world, x, y, z);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.IS_LOCKED, started);
+    }
+  }
+
+  /**
+   * Check lock data of attached by location.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:attached by lock false:no attached
+   */
+  public boolean isAttached(String world, int x, int y, int z){
+    long started = System.nanoTime();
+    try{
+      loadNeighbourChunks(world, x, z);
+      return lockIndex.isAttached(world, x, y, z);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.IS_ATTACHED, started);
+    }
+  }
+
+  /**
+   * Check whether the 16x16x16 section of the block may hold a lock or a locked attachment point.
+   * Cheap check to rule out the blocks far from every lock.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:maybe false:neither locked nor attached
+   */
+  public boolean hasLockInSection(String world, int x, int y, int z){
+    long started = System.nanoTime();
+    try{
+      // The section bit of an attachment point is set when the chunk of its hanging is loaded.
+      loadNeighbourChunks(world, x, z);
+      return lockIndex.hasLockInSection(world, x, y, z);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.HAS_LOCK_IN_SECTION, started);
+    }
+  }
+
+  /**
+   * Check whether the block touches a locked wall hanging: the block of the hanging,
+   * one of its horizontal sides or the block it is attached to.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:touches false:does not touch
+   */
+  public boolean isAdjacentToLock(String world, int x, int y, int z){
+    long started = System.nanoTime();
+    try{
+      loadNeighbourChunks(world, x, z);
+      return lockIndex.isAdjacent(world, x, y, z);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.IS_ADJACENT_TO_LOCK, started);
+    }
+  }
+
+  /**
+   * Check whether any of the blocks touches a locked wall hanging.
+   * @param String World name
+   * @param long[] Positions packed by FrameGuardPosition.pack
+   * @param int Number of positions
+   * @return boolean true:touches false:none
+   */
+  public boolean isAnyAdjacentToLock(String world, long[] positions, int count){
+    long started = System.nanoTime();
+    try{
+      loadNeighbourChunks(world, positions, count);
+      return lockIndex.isAnyAdjacent(world, positions, count);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.IS_ANY_ADJACENT_TO_LOCK, started);
+    }
+  }
+
+  /**
+   * Find locked blocks and blocks with a locked wall hanging attached among the blocks of an explosion.
+   * @param String World name
+   * @param long[] Positions packed by FrameGuardPosition.pack
+   * @param int Number of positions
+   * @param boolean[] Set to true for protected positions, false for the others
+   * @return int Number of protected positions
+   */
+  public int findProtected(String world, long[] positions, int count, boolean[] protectedPositions){
+    long started = System.nanoTime();
+    try{
+      // A block on the chunk edge may hold a hanging of the next chunk.
+      loadNeighbourChunks(world, positions, count);
+      int found = 0;
+      for(int i = 0; i < count; i++){
+        protectedPositions[i] = lockIndex.isLockedOrAttached(world, positions[i]);
+        if(protectedPositions[i]){
+          found++;
+        }
+      }
+      return found;
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.REMOVE_PROTECTED_BLOCKS, started);
+    }
+  }
+
+  /**
+   * Check lock data by location and player.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param UUID Player
+   * @return boolean true:locked false:no locked or no owner
+   */
+  public boolean isLockedOwner(String world, int x, int y, int z, UUID owner){
+    long started = System.nanoTime();
+    try{
+      int userId = userIds.getId(owner);
+      if(userId < 0){
+        return false;
+      }
+      ensureChunkLoaded(world, x >> 4, z >> 4);
+      return lockIndex.isLockedOwner(world, x, y, z, userId);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.IS_LOCKED_OWNER, started);
+    }
+  }
+
+  /**
+   * Get lock record.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return FrameGuardLockRecord Lock record or null.
+   */
+  public FrameGuardLockRecord getLockRecord(String world, int x, int y, int z){
+    long started = System.nanoTime();
+    try{
+      ensureChunkLoaded(world, x >> 4, z >> 4);
+      return lockIndex.getRecord(world, x, y, z);
+    } finally {
+      metrics.record(FrameGuardMetrics.Query.GET_LOCK_RECORD, started);
+    }
+  }
+
+  /**
+   * Get name of the player who locked.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return String Player name, empty when the name is unknown, null when there is no lock.
+   */
+  public String getOwnerName(String world, int x, int y, int z){
+    ensureChunkLoaded(world, x >> 4, z >> 4);
+    int lockedUserId = lockIndex.getOwner(world, x, y, z);
+    if(lockedUserId < 0){
+      return null;
+    }
+    String playerName = playerNames.get(lockedUserId);
+    if(playerName == null){
+      // The owner may have been stored by another server sharing the store.
+      loadUsers();
+      playerName = playerNames.get(lockedUserId);
+    }
+    return playerName == null ? "" : playerName;
+  }
+
+  /**
+   * Lock wall hanging. The lock is in memory at once and stored by the writer thread.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param UUID Player
+   * @param String Player name
+   * @param String Facing of the wall hanging
+   * @param int x of the attached block
+   * @param int y of the attached block
+   * @param int z of the attached block
+   * @param String Material of the attached block
+   * @return boolean true:locked false:already locked
+   */
+  public boolean lock(final String world, final int x, final int y, final int z, UUID player, String playerName,
+      String blockFace, int attachedX, int attachedY, int attachedZ, String attachedMaterial) {
+    ensureChunkLoaded(world, x >> 4, z >> 4);
+    if(lockIndex.isLocked(world, x, y, z)){
+      return false;
+    }
+    int worldId;
+    int userId;
+    try{
+      worldId = internWorld(world);
+      userId = internUser(player, playerName);
+    } catch (FrameGuardStoreException e){
+      FrameGuardLog.logStackTrace(e);
+      return false;
+    }
+    lockIndex.put(world, x, y, z, userId, blockFace, attachedX, attachedY, attachedZ, attachedMaterial);
+    lockIndex.beginWrite(world, x, y, z);
+    FrameGuardLockRecord record = new FrameGuardLockRecord(x, y, z, userId, blockFace, attachedX, attachedY, attachedZ, attachedMaterial);
+    writer.lock(worldId, world, userId, player, playerNames.get(userId), record, new Runnable() {
+      @Override
+      public void run() {
+        lockIndex.endWrite(world, x, y, z);
+      }
+    });
+    metrics.recordWriteQueueDepth(writer.getQueueSize());
+    return true;
+  }
+
+  /**
+   * Lock wall hangings of one player at once. Positions already locked are skipped,
+   * the new locks are stored in one transaction.
+   * @param String World name
+   * @param UUID Player
+   * @param String Player name
+   * @param List<FrameGuardLockRecord> Locks, their owner ids are ignored
+   * @return int Number of new locks
+   */
+  public int lockAll(final String world, UUID player, String playerName, List<FrameGuardLockRecord> candidates) {
+    final List<FrameGuardLockRecord> records = new ArrayList<FrameGuardLockRecord>(candidates.size());
+    int worldId = -1;
+    int userId = -1;
+    for(FrameGuardLockRecord candidate : candidates){
+      int x = candidate.getX();
+      int y = candidate.getY();
+      int z = candidate.getZ();
+      ensureChunkLoaded(world, x >> 4, z >> 4);
+      if(lockIndex.isLocked(world, x, y, z)){
+        continue;
+      }
+      if(userId < 0){
+        try{
+          worldId = internWorld(world);
+          userId = internUser(player, playerName);
+        } catch (FrameGuardStoreException e){
+          FrameGuardLog.logStackTrace(e);
+          return 0;
+        }
+      }
+      FrameGuardLockRecord record = new FrameGuardLockRecord(x, y, z, userId, candidate.getBlockFace(),
+        candidate.getAttachedX(), candidate.getAttachedY(), candidate.getAttachedZ(), candidate.getAttachedMaterial());
+      lockIndex.put(world, x, y, z, userId, record.getBlockFace(), record.getAttachedX(), record.getAttachedY(), record.getAttachedZ(), record.getAttachedMaterial());
+      lockIndex.beginWrite(world, x, y, z);
+      records.add(record);
+    }
+    if(records.isEmpty()){
+      return 0;
+    }
+    writer.lockAll(worldId, world, userId, player, playerNames.get(userId), records, new Runnable() {
+      @Override
+      public void run() {
+        for(FrameGuardLockRecord record : records){
+          lockIndex.endWrite(world, record.getX(), record.getY(), record.getZ());
+        }
+      }
+    });
+    metrics.recordWriteQueueDepth(writer.getQueueSize());
+    return records.size();
+  }
+
+  /**
+   * Unlock wall hanging. Only the owner can unlock unless forced.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param UUID Player
+   * @param boolean true:unlock whoever the owner is (e.g. OP)
+   * @return boolean true:unlocked false:no lock or not the owner
+   */
+  public boolean unlock(final String world, final int x, final int y, final int z, UUID player, boolean force) {
+    ensureChunkLoaded(world, x >> 4, z >> 4);
+    if(!lockIndex.isLocked(world, x, y, z)){
+      return false;
+    }
+    if(!force && !lockIndex.isLockedOwner(world, x, y, z, userIds.getId(player))){
+      return false;
+    }
+    int owner = lockIndex.getOwner(world, x, y, z);
+    lockIndex.remove(world, x, y, z);
+    lockIndex.beginWrite(world, x, y, z);
+    writer.unlock(worldIds.getId(world), owner, x, y, z, new Runnable() {
+      @Override
+      public void run() {
+        lockIndex.endWrite(world, x, y, z);
+      }
+    });
+    metrics.recordWriteQueueDepth(writer.getQueueSize());
+    return true;
+  }
+
+  /**
+   * Get filter of the locks of an owner.
+   * @param UUID Owner
+   * @return FrameGuardLockFilter Filter or null when the owner has never locked.
+   */
+  public FrameGuardLockFilter getOwnerFilter(UUID owner) {
+    if(userIds.getId(owner) < 0){
+      loadUsers();
+    }
+    int userId = userIds.getId(owner);
+    return userId < 0 ? null : FrameGuardLockFilter.owner(userId);
+  }
+
+  /**
+   * Get filter of the locks of a world.
+   * @param String World name
+   * @return FrameGuardLockFilter Filter or null when the world has never had a lock.
+   */
+  public FrameGuardLockFilter getWorldFilter(String world) {
+    if(worldIds.getId(world) < 0){
+      loadWorlds();
+    }
+    int worldId = worldIds.getId(world);
+    return worldId < 0 ? null : FrameGuardLockFilter.world(worldId);
+  }
+
+  /**
+   * Get filter of the locks inside a cuboid.
+   * @param String World name
+   * @param int x of a corner
+   * @param int y of a corner
+   * @param int z of a corner
+   * @param int x of the opposite corner
+   * @param int y of the opposite corner
+   * @param int z of the opposite corner
+   * @return FrameGuardLockFilter Filter or null when the world has never had a lock.
+   */
+  public FrameGuardLockFilter getAreaFilter(String world, int x1, int y1, int z1, int x2, int y2, int z2) {
+    if(worldIds.getId(world) < 0){
+      loadWorlds();
+    }
+    int worldId = worldIds.getId(world);
+    return worldId < 0 ? null : FrameGuardLockFilter.area(worldId, x1, y1, z1, x2, y2, z2);
+  }
+
+  /**
+   * Unlock every lock selected by the filter, loaded or not.
+   * The loaded locks are removed from memory at once, the store removes all of them
+   * with one statement on the writer thread.
+   * @param FrameGuardLockFilter Filter, null selects nothing
+   * @param BulkCallback Callback
+   */
+  public void unlockAll(final FrameGuardLockFilter filter, final BulkCallback callback) {
+    if(filter == null){
+      callback.done(0);
+      return;
+    }
+    final String world = filter.hasWorld() ? worldIds.getKey(filter.getWorldId()) : null;
+    if(world != null || !filter.hasWorld()){
+      lockIndex.removeAll(world, filter, false);
+    }
+    writer.submit(new FrameGuardWriter.Job() {
+      @Override
+      public void run(FrameGuardLockStore store) {
+        int count;
+        try{
+          count = store.removeLocks(filter);
+        } catch (Exception e){
+          FrameGuardLog.logStackTrace(e);
+          count = -1;
+        }
+        final int result = count;
+        mainThread.execute(new Runnable() {
+          @Override
+          public void run() {
+            // Chunks loaded while the statement ran may hold the old rows.
+            if(world != null || !filter.hasWorld()){
+              lockIndex.removeAll(world, filter, true);
+            }
+            callback.done(result);
+          }
+        });
+      }
+    }, null);
+    metrics.recordWriteQueueDepth(writer.getQueueSize());
+  }
+
+  /**
+   * Give every lock selected by the filter to another player, loaded or not.
+   * The loaded locks change owner in memory at once, the store updates all of them
+   * with one statement on the writer thread.
+   * @param FrameGuardLockFilter Filter, null selects nothing
+   * @param UUID New owner
+   * @param String New owner name
+   * @param BulkCallback Callback
+   */
+  public void transferAll(final FrameGuardLockFilter filter, final UUID player, String playerName, final BulkCallback callback) {
+    if(filter == null){
+      callback.done(0);
+      return;
+    }
+    final int userId;
+    try{
+      userId = internUser(player, playerName);
+    } catch (FrameGuardStoreException e){
+      FrameGuardLog.logStackTrace(e);
+      callback.done(-1);
+      return;
+    }
+    final String ownerName = playerNames.get(userId);
+    final String world = filter.hasWorld() ? worldIds.getKey(filter.getWorldId()) : null;
+    if(world != null || !filter.hasWorld()){
+      lockIndex.transferAll(world, filter, userId, false);
+    }
+    writer.submit(new FrameGuardWriter.Job() {
+      @Override
+      public void run(FrameGuardLockStore store) {
+        int count;
+        try{
+          count = store.transferLocks(filter, userId, player, ownerName);
+        } catch (Exception e){
+          FrameGuardLog.logStackTrace(e);
+          count = -1;
+        }
+        final int result = count;
+        mainThread.execute(new Runnable() {
+          @Override
+          public void run() {
+            // Chunks loaded while the statement ran may hold the old rows.
+            if(world != null || !filter.hasWorld()){
+              lockIndex.transferAll(world, filter, userId, true);
+            }
+            callback.done(result);
+          }
+        });
+      }
+    }, null);
+    metrics.recordWriteQueueDepth(writer.getQueueSize());
+  }
+
+  /**
+   * Write all locks to the file in the background, gzipped when the name ends with .gz.
+   * The export starts after the writes queued so far are committed, and the file is
+   * replaced only when the export succeeded.
+   * @param File File
+   * @param StreamCallback Callback
+   * @return boolean true:started false:another export or import is running
+   */
+  public boolean exportLocks(final File file, final StreamCallback callback) {
+    if(streamThread != null){
+      return false;
+    }
+    streamThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        File tmp = new File(file.getPath() + ".tmp");
+        FrameGuardLockFile out = null;
+        final long[] count = {0};
+        boolean succeeded = false;
+        try{
+          out = FrameGuardLockFile.create(tmp, file.getName().endsWith(".gz"));
+          final FrameGuardLockFile lockFile = out;
+          store.exportLocks(new FrameGuardLockStore.ExportVisitor() {
+            @Override
+            public void visit(String worldName, UUID uuid, String playerName, FrameGuardLockRecord record, long createdAt) throws FrameGuardStoreException {
+              if(Thread.currentThread().isInterrupted()){
+                throw new FrameGuardStoreException("Export was interrupted.");
+              }
+              try{
+                lockFile.write(worldName, uuid, playerName, record, createdAt);
+              } catch (IOException e){
+                throw new FrameGuardStoreException(e);
+              }
+              if(++count[0] % STREAM_PROGRESS_INTERVAL == 0){
+                reportProgress(callback, count[0]);
+              }
+            }
+          });
+          out.close();
+          out = null;
+          if(file.exists() && !file.delete()){
+            throw new IOException("Can not replace " + file.getPath());
+          }
+          if(!tmp.renameTo(file)){
+            throw new IOException("Can not rename " + tmp.getPath());
+          }
+          succeeded = true;
+        } catch (Exception e){
+          FrameGuardLog.logStackTrace(e);
+        } finally {
+          if(out != null){
+            try{
+              out.close();
+            } catch (IOException e){
+              FrameGuardLog.logStackTrace(e);
+            }
+          }
+          if(!succeeded){
+            tmp.delete();
+          }
+          finishStream(callback, succeeded, count[0]);
+        }
+      }
+    }, "FrameGuard-Export");
+    streamThread.setDaemon(true);
+    final Thread thread = streamThread;
+    // Wait for the writes queued so far, the export reads committed rows only.
+    writer.submit(new FrameGuardWriter.Job() {
+      @Override
+      public void run(FrameGuardLockStore store) {
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        thread.start();
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Read locks from the file in the background and store them, replacing locks at the same positions.
+   * Rows are read in batches: a batch is given ids on the main thread, stored in one transaction
+   * by the writer thread, and the next batch is read after it was committed.
+   * @param File File
+   * @param int Number of locks in a transaction
+   * @param StreamCallback Callback
+   * @return boolean true:started false:another export or import is running
+   */
+  public boolean importLocks(final File file, final int batchSize, final StreamCallback callback) {
+    if(streamThread != null){
+      return false;
+    }
+    streamThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        FrameGuardLockFile in = null;
+        long count = 0;
+        boolean succeeded = false;
+        try{
+          in = FrameGuardLockFile.open(file);
+          final Semaphore committed = new Semaphore(0);
+          final AtomicBoolean failed = new AtomicBoolean();
+          while(true){
+            final List<FrameGuardLockFile.Row> rows = new ArrayList<FrameGuardLockFile.Row>(batchSize);
+            FrameGuardLockFile.Row row;
+            while(rows.size() < batchSize && (row = in.read()) != null){
+              rows.add(row);
+            }
+            if(rows.isEmpty()){
+              break;
+            }
+            mainThread.execute(new Runnable() {
+              @Override
+              public void run() {
+                importBatch(rows, committed, failed);
+              }
+            });
+            committed.acquire();
+            if(failed.get()){
+              throw new FrameGuardStoreException("Import failed after " + count + " locks.");
+            }
+            count += rows.size();
+            reportProgress(callback, count);
+          }
+          succeeded = true;
+        } catch (Exception e){
+          FrameGuardLog.logStackTrace(e);
+        } finally {
+          if(in != null){
+            try{
+              in.close();
+            } catch (IOException e){
+              FrameGuardLog.logStackTrace(e);
+            }
+          }
+          finishStream(callback, succeeded, count);
+        }
+      }
+    }, "FrameGuard-Import");
+    streamThread.setDaemon(true);
+    streamThread.start();
+    return true;
+  }
+
+  /**
+   * Give ids to a batch of imported locks and queue it. Loaded chunks get the locks in memory at once.
+   * @param List<FrameGuardLockFile.Row> Locks
+   * @param Semaphore Released after the batch was committed or failed
+   * @param AtomicBoolean Set when the batch failed
+   */
+  private void importBatch(final List<FrameGuardLockFile.Row> rows, final Semaphore committed, final AtomicBoolean failed) {
+    final int[] rowWorldIds = new int[rows.size()];
+    final String[] ownerNames = new String[rows.size()];
+    final FrameGuardLockRecord[] records = new FrameGuardLockRecord[rows.size()];
+    final boolean[] loaded = new boolean[rows.size()];
+    final int[] rowUserIds = new int[rows.size()];
+    try{
+      for(int i = 0; i < rows.size(); i++){
+        rowWorldIds[i] = internWorld(rows.get(i).getWorldName());
+        rowUserIds[i] = internUser(rows.get(i).getUuid(), rows.get(i).getPlayerName());
+      }
+    } catch (FrameGuardStoreException e){
+      FrameGuardLog.logStackTrace(e);
+      failed.set(true);
+      committed.release();
+      return;
+    }
+    for(int i = 0; i < rows.size(); i++){
+      FrameGuardLockFile.Row row = rows.get(i);
+      FrameGuardLockRecord record = row.getRecord();
+      String world = row.getWorldName();
+      int userId = rowUserIds[i];
+      ownerNames[i] = playerNames.get(userId);
+      records[i] = new FrameGuardLockRecord(record.getX(), record.getY(), record.getZ(), userId, record.getBlockFace(),
+        record.getAttachedX(), record.getAttachedY(), record.getAttachedZ(), record.getAttachedMaterial());
+      loaded[i] = lockIndex.isChunkLoaded(world, record.getX() >> 4, record.getZ() >> 4);
+      if(loaded[i]){
+        putInIndex(world, records[i]);
+        lockIndex.beginWrite(world, record.getX(), record.getY(), record.getZ());
+      }
+    }
+    writer.submit(new FrameGuardWriter.Job() {
+      @Override
+      public void run(FrameGuardLockStore store) {
+        try{
+          // Mutations of this thread that are still open go in first.
+          store.commit();
+          for(int i = 0; i < rows.size(); i++){
+            store.putWorld(rowWorldIds[i], rows.get(i).getWorldName());
+          }
+          for(int i = 0; i < rows.size(); i++){
+            store.putUser(records[i].getOwnerId(), rows.get(i).getUuid(), ownerNames[i]);
+          }
+          for(int i = 0; i < rows.size(); i++){
+            store.putLock(rowWorldIds[i], records[i], rows.get(i).getCreatedAt());
+          }
+          store.commit();
+        } catch (Exception e){
+          store.rollback();
+          FrameGuardLog.logStackTrace(e);
+          failed.set(true);
+        }
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        for(int i = 0; i < rows.size(); i++){
+          String world = rows.get(i).getWorldName();
+          FrameGuardLockRecord record = records[i];
+          if(loaded[i]){
+            lockIndex.endWrite(world, record.getX(), record.getY(), record.getZ());
+            if(failed.get()){
+              // Read the chunk again from the store at the next check.
+              lockIndex.unloadChunk(world, record.getX() >> 4, record.getZ() >> 4);
+            }
+          }else if(!failed.get() && lockIndex.isChunkLoaded(world, record.getX() >> 4, record.getZ() >> 4)
+              && !lockIndex.isLocked(world, record.getX(), record.getY(), record.getZ())){
+            // The chunk was loaded before the batch was committed.
+            putInIndex(world, record);
+          }
+        }
+        committed.release();
+      }
+    });
+    metrics.recordWriteQueueDepth(writer.getQueueSize());
+  }
+
+  /**
+   * Put lock record in memory.
+   * @param String World name
+   * @param FrameGuardLockRecord Lock record
+   */
+  private void putInIndex(String world, FrameGuardLockRecord record) {
+    lockIndex.put(world, record.getX(), record.getY(), record.getZ(), record.getOwnerId(), record.getBlockFace(),
+      record.getAttachedX(), record.getAttachedY(), record.getAttachedZ(), record.getAttachedMaterial());
+  }
+
+  /**
+   * Report progress of export or import on the main thread.
+   * @param StreamCallback Callback
+   * @param long Number of locks so far
+   */
+  private void reportProgress(final StreamCallback callback, final long count) {
+    mainThread.execute(new Runnable() {
+      @Override
+      public void run() {
+        callback.progress(count);
+      }
+    });
+  }
+
+  /**
+   * Report the end of export or import on the main thread.
+   * @param StreamCallback Callback
+   * @param boolean true:succeeded false:failed
+   * @param long Number of locks
+   */
+  private void finishStream(final StreamCallback callback, final boolean succeeded, final long count) {
+    try{
+      mainThread.execute(new Runnable() {
+        @Override
+        public void run() {
+          streamThread = null;
+          if(succeeded){
+            callback.finished(count);
+          }else{
+            callback.failed();
+          }
+        }
+      });
+    } catch (Exception e){
+      // The plugin is being disabled, nobody is waiting for the result.
+      streamThread = null;
+    }
+  }
+
+  /**
+   * Purge lock data in the background.
+   * @param int days
+   * @param int Maximum number of locks in a batch
+   * @param PurgeCallback Callback
+   */
+  public void purge(final int days, final int batchSize, final PurgeCallback callback){
+    final int sequence = lockIndex.getWriteSequence();
+    writer.submit(new FrameGuardWriter.Job() {
+      @Override
+      public void run(FrameGuardLockStore store) {
+        final List<Integer> purgedWorldIds = new ArrayList<Integer>();
+        final List<FrameGuardLockRecord> purged = new ArrayList<FrameGuardLockRecord>();
+        try{
+          store.purge(days, batchSize, new FrameGuardLockStore.PurgeListener() {
+            @Override
+            public void purged(int worldId, FrameGuardLockRecord record) {
+              purgedWorldIds.add(worldId);
+              purged.add(record);
+            }
+
+            @Override
+            public void progress(final int purgedCount) {
+              final List<Integer> worldIdsOfBatch = new ArrayList<Integer>(purgedWorldIds);
+              final List<FrameGuardLockRecord> batch = new ArrayList<FrameGuardLockRecord>(purged);
+              purgedWorldIds.clear();
+              purged.clear();
+              mainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                  removePurged(sequence, worldIdsOfBatch, batch);
+                  callback.progress(purgedCount);
+                }
+              });
+            }
+          });
+          mainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+              callback.finished();
+            }
+          });
+        } catch (Exception e){
+          FrameGuardLog.logStackTrace(e);
+          mainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+              callback.failed();
+            }
+          });
+        }
+      }
+    }, null);
+  }
+
+  /**
+   * Remove a bounded number of the oldest locks older than days in the background.
+   * @param int days
+   * @param int Maximum number of locks
+   * @param ExpireCallback Callback
+   */
+  public void expire(final int days, final int limit, final ExpireCallback callback){
+    final int sequence = lockIndex.getWriteSequence();
+    writer.submit(new FrameGuardWriter.Job() {
+      @Override
+      public void run(FrameGuardLockStore store) {
+        final List<Integer> expiredWorldIds = new ArrayList<Integer>();
+        final List<FrameGuardLockRecord> expired = new ArrayList<FrameGuardLockRecord>();
+        long started = System.nanoTime();
+        int count;
+        try{
+          count = store.expire(System.currentTimeMillis() - days * 86400000L, limit, new FrameGuardLockStore.LockVisitor() {
+            @Override
+            public void visit(int worldId, FrameGuardLockRecord record) {
+              expiredWorldIds.add(worldId);
+              expired.add(record);
+            }
+          });
+        } catch (Exception e){
+          FrameGuardLog.logStackTrace(e);
+          expiredWorldIds.clear();
+          expired.clear();
+          count = -1;
+        }
+        final int result = count;
+        final long nanos = System.nanoTime() - started;
+        mainThread.execute(new Runnable() {
+          @Override
+          public void run() {
+            removePurged(sequence, expiredWorldIds, expired);
+            callback.expired(result, nanos);
+          }
+        });
+      }
+    }, null);
+  }
+
+  /**
+   * Remove purged locks from memory.
+   * A lock with writes queued after the purge is kept, it may have been locked again.
+   * @param int Write sequence when the purge was queued
+   * @param List<Integer> World ids
+   * @param List<FrameGuardLockRecord> Purged locks
+   */
+  private void removePurged(int sequence, List<Integer> purgedWorldIds, List<FrameGuardLockRecord> purged){
+    for(int i = 0; i < purged.size(); i++){
+      String world = worldIds.getKey(purgedWorldIds.get(i));
+      FrameGuardLockRecord record = purged.get(i);
+      if(world == null || lockIndex.hasPendingWritesSince(world, record.getX(), record.getY(), record.getZ(), sequence)){
+        continue;
+      }
+      if(record.equals(lockIndex.getRecord(world, record.getX(), record.getY(), record.getZ()))){
+        lockIndex.remove(world, record.getX(), record.getY(), record.getZ());
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package space.gorogoro.frameguard;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * FrameGuardDictionary
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardDictionary<K> {
+  private final Map<K, Integer> ids = new HashMap<K, Integer>();
+  private Object[] keys = new Object[16];
+  private int maxId = 0;
+
+  /**
+   * Get id of key.
+   * @param K key
+   * @return int Id or -1.
+   */
+  public int getId(K key) {
+    Integer id = ids.get(key);
+    if(id == null){
+      return -1;
+    }
+    return id;
+  }
+
+  /**
+   * Get key of id.
+   * @param int id
+   * @return K Key or null.
+   */
+  @SuppressWarnings("unchecked")
+  public K getKey(int id) {
+    if(id < 0 || id >= keys.length){
+      return null;
+    }
+    return (K) keys[id];
+  }
+
+  /**
+   * Put key with id that is already stored.
+   * @param K key
+   * @param int id
+   */
+  public void put(K key, int id) {
+    if(!ids.containsKey(key)){
+      ids.put(key, id);
+    }
+    if(id >= keys.length){
+      keys = Arrays.copyOf(keys, Math.max(id + 1, keys.length << 1));
+    }
+    keys[id] = key;
+    maxId = Math.max(maxId, id);
+  }
+
+  /**
+   * Get id of key. A new id is assigned when the key is missing.
+   * @param K key
+   * @return int Id.
+   */
+  public int intern(K key) {
+    int id = getId(key);
+    if(id < 0){
+      id = maxId + 1;
+      put(key, id);
+    }
+    return id;
+  }
+
+  /**
+   * Get number of keys.
+   * @return int Number of keys.
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  /**
+   * Remove all keys.
+   */
+  public void clear() {
+    ids.clear();
+    keys = new Object[16];
+    maxId = 0;
+  }
+}
@@ -0,0 +1,112 @@
+package space.gorogoro.frameguard;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/*
+ * FrameGuardH2Store
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardH2Store extends FrameGuardJdbcStore {
+  private final File file;
+  private final int queryTimeout;
+
+  /**
+   * Constructor of FrameGuardH2Store.
+   * @param File Database file without extension
+   * @param int Query timeout (seconds)
+   */
+  public FrameGuardH2Store(File file, int queryTimeout) {
+    super(queryTimeout);
+    this.file = file;
+    this.queryTimeout = queryTimeout;
+  }
+
+  @Override
+  protected Connection connect() throws SQLException {
+    try{
+      // Select JDBC driver.
+      Class.forName("org.h2.Driver");
+    } catch (ClassNotFoundException e){
+      throw new SQLException(e);
+    }
+    // USER is a keyword of H2, the table name is kept the same as the other stores.
+    return DriverManager.getConnection("jdbc:h2:" + file.getAbsolutePath()
+      + ";NON_KEYWORDS=USER;LOCK_TIMEOUT=" + (queryTimeout * 1000));
+  }
+
+  @Override
+  protected String[] getSchema() {
+    return new String[] {
+      "CREATE TABLE IF NOT EXISTS user ("
+        + " id INT PRIMARY KEY"
+        + ",uuid VARCHAR(36) NOT NULL"
+        + ",player_name VARCHAR(255) NOT NULL"
+        + ",created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        + ")",
+      "CREATE INDEX IF NOT EXISTS uuid_index ON user (uuid)",
+      "CREATE INDEX IF NOT EXISTS player_name_index ON user (player_name)",
+      "CREATE TABLE IF NOT EXISTS world ("
+        + " id INT PRIMARY KEY"
+        + ",world_name VARCHAR(255) NOT NULL"
+        + ",created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        + ")",
+      "CREATE INDEX IF NOT EXISTS world_name_index ON world (world_name)",
+      "CREATE TABLE IF NOT EXISTS name_code ("
+        + " id INT PRIMARY KEY"
+        + ",name VARCHAR(64) NOT NULL"
+        + ")"
+    };
+  }
+
+  @Override
+  protected String[] getLockSchema(String table) {
+    return new String[] {
+      "CREATE TABLE IF NOT EXISTS " + table + " ("
+        + " world_id INT NOT NULL"
+        + ",pos BIGINT NOT NULL"
+        + ",user_id INT NOT NULL"
+        + ",face SMALLINT NOT NULL"
+        + ",attached_pos BIGINT NOT NULL"
+        + ",material SMALLINT NOT NULL"
+        + ",created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        + ",PRIMARY KEY(world_id, pos)"
+        + ")",
+      "CREATE INDEX IF NOT EXISTS lockdata_user_id_index ON " + table + " (user_id)",
+      "CREATE INDEX IF NOT EXISTS lockdata_created_at_index ON " + table + " (created_at)"
+    };
+  }
+
+  @Override
+  protected String getPutCodeSql() {
+    return "MERGE INTO name_code (id, name) KEY (id) VALUES (?, ?)";
+  }
+
+  @Override
+  protected String getPutWorldSql() {
+    return "MERGE INTO world (id, world_name) KEY (id) VALUES (?, ?)";
+  }
+
+  @Override
+  protected String getPutUserSql() {
+    return "MERGE INTO user (id, uuid, player_name) KEY (id) VALUES (?, ?, ?)";
+  }
+
+  @Override
+  protected String getPutLockSql() {
+    // created_at is reset as the other stores do, a lock made again is a new lock.
+    return "MERGE INTO lockdata (world_id, user_id, pos, face, attached_pos, material, created_at)"
+      + " KEY (world_id, pos) VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+  }
+
+  @Override
+  protected String getPutLockWithTimeSql() {
+    return "MERGE INTO lockdata (world_id, user_id, pos, face, attached_pos, material, created_at)"
+      + " KEY (world_id, pos) VALUES (?, ?, ?, ?, ?, ?, ?)";
+  }
+}
@@ -0,0 +1,1338 @@
+package space.gorogoro.frameguard;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import space.gorogoro.frameguard.FrameGuardConnectionPool.PooledConnection;
+
+/*
+ * FrameGuardJdbcStore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Lock store on a SQL database. Connections are taken from a bounded pool. Lookups borrow
+ * a connection per call. Mutations of a thread share one connection until commit or rollback,
+ * and consecutive mutations of the same kind are sent as one JDBC batch.
+ *
+ * Since schema version 2 a lock is keyed by world id and its packed position (FrameGuardPosition),
+ * so a chunk is one range of the primary key. Block face and attached material are stored as
+ * small codes of table name_code. Older databases are upgraded in batches when the store opens.
+ */
+public abstract class FrameGuardJdbcStore implements FrameGuardLockStore {
+  private static final String LOCK_COLUMNS = "world_id, user_id, pos, face, attached_pos, material";
+  private static final int DEFAULT_POOL_SIZE = 3;
+  private static final int EXPORT_FETCH_SIZE = 1000;
+  private static final int MIGRATION_BATCH_SIZE = 10000;
+
+  private final int queryTimeout;
+  private FrameGuardConnectionPool pool;
+  private final ThreadLocal<WriteSession> sessions = new ThreadLocal<WriteSession>();
+  private final Set<Integer> storedWorldIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+  private final Set<Integer> storedUserIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+  private final FrameGuardDictionary<String> codes = new FrameGuardDictionary<String>();
+  private final Set<Integer> storedCodes = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+  /**
+   * Mutations of one thread that are not committed yet.
+   */
+  private static class WriteSession {
+    private final PooledConnection pooled;
+    private String batchSql;
+    private PreparedStatement batchStmt;
+    private final Set<Integer> unusedWorldIds = new LinkedHashSet<Integer>();
+    private final Set<Integer> unusedUserIds = new LinkedHashSet<Integer>();
+
+    /**
+     * Constructor of WriteSession.
+     * @param PooledConnection Connection in manual commit mode
+     */
+    private WriteSession(PooledConnection pooled) {
+      this.pooled = pooled;
+    }
+  }
+
+  /**
+   * Constructor of FrameGuardJdbcStore.
+   * @param int Query timeout (seconds)
+   */
+  protected FrameGuardJdbcStore(int queryTimeout) {
+    this.queryTimeout = queryTimeout;
+  }
+
+  /**
+   * Open new connection.
+   * @return Connection Connection
+   * @throws SQLException
+   */
+  protected abstract Connection connect() throws SQLException;
+
+  /**
+   * Get statements that create the tables and indexes other than lockdata.
+   * @return String[] Statements
+   */
+  protected abstract String[] getSchema();
+
+  /**
+   * Get statements that create the lock table of the current schema version and its indexes.
+   * Its columns are world_id, pos, user_id, face, attached_pos, material, created_at and the
+   * primary key is world_id, pos. The first statement creates the table, the others create
+   * indexes, so that an upgrade can build them after the rows are copied.
+   * @param String Table name
+   * @return String[] Statements
+   */
+  protected abstract String[] getLockSchema(String table);
+
+  /**
+   * Get statements that give back the space freed by a schema upgrade. They run outside of a transaction.
+   * @return String[] Statements
+   */
+  protected String[] getCompactSql() {
+    return new String[0];
+  }
+
+  /**
+   * Get SQL that stores name code if it is missing. Parameters are id, name.
+   * @return String SQL
+   */
+  protected abstract String getPutCodeSql();
+
+  /**
+   * Get SQL that stores world if it is missing. Parameters are id, world_name.
+   * @return String SQL
+   */
+  protected abstract String getPutWorldSql();
+
+  /**
+   * Get SQL that stores user if it is missing. Parameters are id, uuid, player_name.
+   * @return String SQL
+   */
+  protected abstract String getPutUserSql();
+
+  /**
+   * Get SQL that stores or replaces lock. Parameters are world_id, user_id, pos, face,
+   * attached_pos, material.
+   * @return String SQL
+   */
+  protected abstract String getPutLockSql();
+
+  /**
+   * Get SQL that stores or replaces lock with its created time. Parameters are those of
+   * getPutLockSql followed by created_at.
+   * @return String SQL
+   */
+  protected abstract String getPutLockWithTimeSql();
+
+  /**
+   * Check whether the database is shared by several servers. Then the database assigns the ids of
+   * name codes, worlds and users, and users and worlds are kept when they have no lock,
+   * because another server may hold their ids.
+   * @return boolean true:shared false:used by this server only
+   */
+  protected boolean isShared() {
+    return false;
+  }
+
+  /**
+   * Get code assigned by a shared database. The code is stored when it is missing.
+   * @param String Face or material name
+   * @return int Code, or -1 when the database is not shared and the store assigns the code.
+   * @throws SQLException
+   */
+  protected int getSharedCode(String name) throws SQLException {
+    return -1;
+  }
+
+  /**
+   * Get fetch size of the export cursor.
+   * @param Connection Connection of the cursor
+   * @return int Fetch size
+   * @throws SQLException
+   */
+  protected int getExportFetchSize(Connection con) throws SQLException {
+    return EXPORT_FETCH_SIZE;
+  }
+
+  /**
+   * Get maximum number of connections.
+   * @return int Pool size
+   */
+  protected int getPoolSize() {
+    return DEFAULT_POOL_SIZE;
+  }
+
+  /**
+   * Set created_at parameter.
+   * @param PreparedStatement PreparedStatement
+   * @param int Parameter index
+   * @param long Time (milliseconds)
+   * @throws SQLException
+   */
+  protected void setCreatedAt(PreparedStatement prepStmt, int index, long millis) throws SQLException {
+    prepStmt.setTimestamp(index, new Timestamp(millis));
+  }
+
+  /**
+   * Get created_at column.
+   * @param ResultSet Result set
+   * @param int Column index
+   * @return long Time (milliseconds)
+   * @throws SQLException
+   */
+  protected long getCreatedAt(ResultSet rs, int index) throws SQLException {
+    Timestamp createdAt = rs.getTimestamp(index);
+    return createdAt == null ? 0 : createdAt.getTime();
+  }
+
+  @Override
+  public void open() throws FrameGuardStoreException {
+    pool = new FrameGuardConnectionPool(new FrameGuardConnectionPool.ConnectionFactory() {
+      @Override
+      public Connection connect() throws SQLException {
+        return FrameGuardJdbcStore.this.connect();
+      }
+    }, getPoolSize(), queryTimeout);
+    PooledConnection pooled = null;
+    Statement stmt = null;
+    boolean failed = true;
+    try{
+      pooled = pool.borrow();
+      stmt = pooled.getConnection().createStatement();
+      stmt.setQueryTimeout(queryTimeout);
+      for(String sql : getSchema()){
+        stmt.execute(sql);
+      }
+      // Codes that are stored already keep their ids while locks are upgraded.
+      loadCodes(pooled.getConnection());
+      upgrade(pooled.getConnection());
+      failed = false;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeStmt(stmt);
+      if(pooled != null){
+        pool.release(pooled, failed);
+      }
+    }
+  }
+
+  /**
+   * Load codes of face and material names.
+   * @param Connection Connection
+   * @throws SQLException
+   */
+  private void loadCodes(Connection con) throws SQLException {
+    Statement stmt = con.createStatement();
+    try{
+      ResultSet rs = stmt.executeQuery("SELECT id, name FROM name_code");
+      synchronized(codes){
+        codes.clear();
+        storedCodes.clear();
+        while(rs.next()){
+          codes.put(rs.getString(2), rs.getInt(1));
+          storedCodes.add(rs.getInt(1));
+        }
+      }
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * Create the lock table, or upgrade it when it was made by an older version.
+   * @param Connection Connection
+   * @throws SQLException
+   */
+  private void upgrade(Connection con) throws SQLException {
+    FrameGuardSchemaMigrator migrator = new FrameGuardSchemaMigrator()
+      .add(new FrameGuardSchemaMigrator.Migration() {
+        @Override
+        public int getVersion() {
+          return 2;
+        }
+
+        @Override
+        public void migrate(Connection con, FrameGuardSchemaMigrator.Progress progress) throws SQLException {
+          migratePackedLocks(con, progress);
+        }
+      });
+    FrameGuardSchemaMigrator.createVersionTable(con);
+    int count;
+    con.setAutoCommit(false);
+    try{
+      int version = FrameGuardSchemaMigrator.getVersion(con);
+      if(version < 0){
+        if(hasTable(con, "lockdata") || hasTable(con, "lockdata_v2")){
+          // Made before the version was kept.
+          version = 1;
+        } else {
+          execute(con, getLockSchema("lockdata"));
+          version = migrator.getLatestVersion();
+        }
+        FrameGuardSchemaMigrator.setVersion(con, version);
+        con.commit();
+      }
+      count = migrator.migrate(con, version);
+    } catch (SQLException e){
+      try{
+        con.rollback();
+      } catch (SQLException re){
+        // The connection is dropped by the caller.
+      }
+      throw e;
+    }
+    con.setAutoCommit(true);
+    if(count > 0 && getCompactSql().length > 0){
+      FrameGuardLog.getLogger().info("Compacting database.");
+      execute(con, getCompactSql());
+    }
+  }
+
+  /**
+   * Upgrade to version 2. Locks are copied in order of id into lockdata_v2 in batches and
+   * its indexes are built, then the old table is dropped and the new one takes its name.
+   * @param Connection Connection in manual commit mode
+   * @param FrameGuardSchemaMigrator.Progress Progress
+   * @throws SQLException
+   */
+  private void migratePackedLocks(Connection con, FrameGuardSchemaMigrator.Progress progress) throws SQLException {
+    Statement stmt = null;
+    PreparedStatement select = null;
+    PreparedStatement insert = null;
+    PreparedStatement putCode = null;
+    ResultSet rs = null;
+    try{
+      stmt = con.createStatement();
+      // DDL of H2 and MySQL is committed at once, so a stopped upgrade is found by the shape of the tables.
+      if(hasColumn(con, "lockdata", "pos")){
+        // Stopped after the new table took its name, only the version is missing.
+        return;
+      }
+      if(!hasTable(con, "lockdata")){
+        // Stopped after the old table was dropped, the copy is complete.
+        stmt.execute("ALTER TABLE lockdata_v2 RENAME TO lockdata");
+        return;
+      }
+      // A copy left by a stopped upgrade is made again.
+      stmt.execute("DROP TABLE IF EXISTS lockdata_v2");
+      String[] lockSchema = getLockSchema("lockdata_v2");
+      stmt.execute(lockSchema[0]);
+      con.commit();
+
+      rs = stmt.executeQuery("SELECT COUNT(*) FROM lockdata");
+      long total = rs.next() ? rs.getLong(1) : 0;
+      closeRs(rs);
+      rs = null;
+      progress.report(0, total);
+
+      select = con.prepareStatement("SELECT id, world_id, user_id, x, y, z, block_face, attached_x, attached_y, attached_z, attached_material, created_at"
+        + " FROM lockdata WHERE id > ? ORDER BY id LIMIT " + MIGRATION_BATCH_SIZE);
+      insert = con.prepareStatement("INSERT INTO lockdata_v2 (" + LOCK_COLUMNS + ", created_at) VALUES (?, ?, ?, ?, ?, ?, ?)");
+      putCode = con.prepareStatement(getPutCodeSql());
+      long lastId = 0;
+      long done = 0;
+      while(true){
+        select.setLong(1, lastId);
+        rs = select.executeQuery();
+        int selected = 0;
+        while(rs.next()){
+          lastId = rs.getLong(1);
+          insert.setInt(1, rs.getInt(2));
+          insert.setInt(2, rs.getInt(3));
+          insert.setLong(3, FrameGuardPosition.pack(rs.getInt(4), rs.getInt(5), rs.getInt(6)));
+          insert.setInt(4, getCode(putCode, rs.getString(7)));
+          insert.setLong(5, FrameGuardPosition.pack(rs.getInt(8), rs.getInt(9), rs.getInt(10)));
+          insert.setInt(6, getCode(putCode, rs.getString(11)));
+          // Both columns have the same type.
+          insert.setObject(7, rs.getObject(12));
+          insert.addBatch();
+          selected++;
+        }
+        closeRs(rs);
+        rs = null;
+        if(selected == 0){
+          break;
+        }
+        putCode.executeBatch();
+        insert.executeBatch();
+        con.commit();
+        done += selected;
+        progress.report(done, total);
+      }
+
+      // Indexes are built at once, faster than they grow row by row.
+      execute(con, Arrays.copyOfRange(lockSchema, 1, lockSchema.length));
+      stmt.execute("DROP TABLE lockdata");
+      stmt.execute("ALTER TABLE lockdata_v2 RENAME TO lockdata");
+    } catch (SQLException e){
+      // Codes of the rolled back batch are stored again next time.
+      storedCodes.clear();
+      throw e;
+    } finally {
+      closeRs(rs);
+      closeStmt(putCode);
+      closeStmt(insert);
+      closeStmt(select);
+      closeStmt(stmt);
+    }
+  }
+
+  /**
+   * Check table.
+   * @param Connection Connection
+   * @param String Table name
+   * @return boolean true:exists false:missing
+   */
+  private static boolean hasTable(Connection con, String table) {
+    return hasColumn(con, table, "1");
+  }
+
+  /**
+   * Check column.
+   * @param Connection Connection
+   * @param String Table name
+   * @param String Column name
+   * @return boolean true:exists false:table or column is missing
+   */
+  private static boolean hasColumn(Connection con, String table, String column) {
+    Statement stmt = null;
+    try{
+      stmt = con.createStatement();
+      stmt.executeQuery("SELECT " + column + " FROM " + table + " WHERE 1 = 0").close();
+      return true;
+    } catch (SQLException e){
+      return false;
+    } finally {
+      closeStmt(stmt);
+    }
+  }
+
+  /**
+   * Execute statements.
+   * @param Connection Connection
+   * @param String[] Statements
+   * @throws SQLException
+   */
+  private static void execute(Connection con, String[] sqls) throws SQLException {
+    Statement stmt = con.createStatement();
+    try{
+      for(String sql : sqls){
+        stmt.execute(sql);
+      }
+    } finally {
+      stmt.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    rollback();
+    if(pool != null){
+      pool.close();
+    }
+    storedWorldIds.clear();
+    storedUserIds.clear();
+    storedCodes.clear();
+  }
+
+  /**
+   * Borrow connection for lookup.
+   * @return PooledConnection Connection
+   * @throws SQLException
+   */
+  private PooledConnection borrow() throws SQLException {
+    if(pool == null){
+      throw new SQLException("Store is not open.");
+    }
+    return pool.borrow();
+  }
+
+  /**
+   * Get write session of the current thread. A connection is borrowed on first use.
+   * @return WriteSession Write session
+   * @throws SQLException
+   */
+  private WriteSession getSession() throws SQLException {
+    WriteSession session = sessions.get();
+    if(session == null){
+      PooledConnection pooled = borrow();
+      try{
+        pooled.getConnection().setAutoCommit(false);
+      } catch (SQLException e){
+        pool.release(pooled, true);
+        throw e;
+      }
+      session = new WriteSession(pooled);
+      sessions.set(session);
+    }
+    return session;
+  }
+
+  /**
+   * Get statement to add a batch entry. The pending batch is sent first when the SQL differs,
+   * so that mutations keep their order.
+   * @param String SQL
+   * @return PreparedStatement PreparedStatement
+   * @throws SQLException
+   */
+  private PreparedStatement batch(String sql) throws SQLException {
+    WriteSession session = getSession();
+    if(!sql.equals(session.batchSql)){
+      flushBatch(session);
+      session.batchStmt = session.pooled.prepare(sql);
+      session.batchSql = sql;
+    }
+    return session.batchStmt;
+  }
+
+  /**
+   * Send pending batch.
+   * @param WriteSession Write session
+   * @throws SQLException
+   */
+  private static void flushBatch(WriteSession session) throws SQLException {
+    PreparedStatement prepStmt = session.batchStmt;
+    session.batchStmt = null;
+    session.batchSql = null;
+    if(prepStmt != null){
+      prepStmt.executeBatch();
+    }
+  }
+
+  @Override
+  public void forEachWorld(WorldVisitor visitor) throws FrameGuardStoreException {
+    PooledConnection pooled = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      rs = pooled.prepare("SELECT id, world_name FROM world ORDER BY id").executeQuery();
+      while(rs.next()){
+        visitor.visit(rs.getInt(1), rs.getString(2));
+      }
+      failed = false;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeRs(rs);
+      release(pooled, failed);
+    }
+  }
+
+  @Override
+  public void forEachUser(UserVisitor visitor) throws FrameGuardStoreException {
+    PooledConnection pooled = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      rs = pooled.prepare("SELECT id, uuid, player_name FROM user ORDER BY id").executeQuery();
+      while(rs.next()){
+        visitor.visit(rs.getInt(1), UUID.fromString(rs.getString(2)), rs.getString(3));
+      }
+      failed = false;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeRs(rs);
+      release(pooled, failed);
+    }
+  }
+
+  @Override
+  public void forEachLock(LockVisitor visitor) throws FrameGuardStoreException {
+    PooledConnection pooled = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      rs = pooled.prepare("SELECT " + LOCK_COLUMNS + " FROM lockdata").executeQuery();
+      while(rs.next()){
+        visitor.visit(rs.getInt(1), readRecord(rs));
+      }
+      failed = false;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeRs(rs);
+      release(pooled, failed);
+    }
+  }
+
+  @Override
+  public void forEachLockInChunk(int worldId, int chunkX, int chunkZ, LockVisitor visitor) throws FrameGuardStoreException {
+    PooledConnection pooled = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      // All blocks of a chunk are one range of the primary key.
+      long chunkKey = FrameGuardPosition.chunkKey(chunkX, chunkZ);
+      PreparedStatement prepStmt = pooled.prepare("SELECT " + LOCK_COLUMNS + " FROM lockdata WHERE world_id = ? AND pos BETWEEN ? AND ?");
+      prepStmt.setInt(1, worldId);
+      prepStmt.setLong(2, FrameGuardPosition.firstOfChunk(chunkKey));
+      prepStmt.setLong(3, FrameGuardPosition.lastOfChunk(chunkKey));
+      rs = prepStmt.executeQuery();
+      while(rs.next()){
+        visitor.visit(rs.getInt(1), readRecord(rs));
+      }
+      failed = false;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeRs(rs);
+      release(pooled, failed);
+    }
+  }
+
+  /**
+   * Rows are read with a forward-only cursor on a connection of its own.
+   */
+  @Override
+  public void exportLocks(ExportVisitor visitor) throws FrameGuardStoreException {
+    PooledConnection pooled = null;
+    PreparedStatement prepStmt = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      prepStmt = pooled.getConnection().prepareStatement(
+        "SELECT w.world_name, u.uuid, u.player_name, l.pos, l.face, l.attached_pos, l.material, l.created_at"
+          + " FROM lockdata l JOIN world w ON w.id = l.world_id JOIN user u ON u.id = l.user_id",
+        ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY
+      );
+      prepStmt.setFetchSize(getExportFetchSize(pooled.getConnection()));
+      rs = prepStmt.executeQuery();
+      while(rs.next()){
+        long pos = rs.getLong(4);
+        long attachedPos = rs.getLong(6);
+        visitor.visit(
+          rs.getString(1),
+          UUID.fromString(rs.getString(2)),
+          rs.getString(3),
+          new FrameGuardLockRecord(
+            FrameGuardPosition.x(pos),
+            FrameGuardPosition.y(pos),
+            FrameGuardPosition.z(pos),
+            -1,
+            getName(rs.getInt(5)),
+            FrameGuardPosition.x(attachedPos),
+            FrameGuardPosition.y(attachedPos),
+            FrameGuardPosition.z(attachedPos),
+            getName(rs.getInt(7))
+          ),
+          getCreatedAt(rs, 8)
+        );
+      }
+      failed = false;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeRs(rs);
+      closeStmt(prepStmt);
+      release(pooled, failed);
+    }
+  }
+
+  @Override
+  public FrameGuardLockRecord getLock(int worldId, int x, int y, int z) throws FrameGuardStoreException {
+    PooledConnection pooled = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      PreparedStatement prepStmt = pooled.prepare("SELECT " + LOCK_COLUMNS + " FROM lockdata WHERE world_id = ? AND pos = ?");
+      prepStmt.setInt(1, worldId);
+      prepStmt.setLong(2, FrameGuardPosition.pack(x, y, z));
+      rs = prepStmt.executeQuery();
+      FrameGuardLockRecord record = rs.next() ? readRecord(rs) : null;
+      failed = false;
+      return record;
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    } finally {
+      closeRs(rs);
+      release(pooled, failed);
+    }
+  }
+
+  /**
+   * Read lock record from row selected with LOCK_COLUMNS.
+   * @param ResultSet Result set
+   * @return FrameGuardLockRecord Lock record
+   * @throws SQLException
+   */
+  private FrameGuardLockRecord readRecord(ResultSet rs) throws SQLException {
+    long pos = rs.getLong(3);
+    long attachedPos = rs.getLong(5);
+    return new FrameGuardLockRecord(
+      FrameGuardPosition.x(pos),
+      FrameGuardPosition.y(pos),
+      FrameGuardPosition.z(pos),
+      rs.getInt(2),
+      getName(rs.getInt(4)),
+      FrameGuardPosition.x(attachedPos),
+      FrameGuardPosition.y(attachedPos),
+      FrameGuardPosition.z(attachedPos),
+      getName(rs.getInt(6))
+    );
+  }
+
+  /**
+   * Get name of code. A code stored by another server sharing the database is read from table name_code.
+   * @param int Code
+   * @return String Face or material name
+   * @throws SQLException The code is not stored.
+   */
+  private String getName(int code) throws SQLException {
+    String name;
+    synchronized(codes){
+      name = codes.getKey(code);
+    }
+    if(name == null && isShared()){
+      name = loadName(code);
+    }
+    if(name == null){
+      throw new SQLException("Unknown name code: " + code);
+    }
+    return name;
+  }
+
+  /**
+   * Read name of code from table name_code. A connection of its own is used, the caller may be streaming rows.
+   * @param int Code
+   * @return String Face or material name or null.
+   * @throws SQLException
+   */
+  private String loadName(int code) throws SQLException {
+    PooledConnection pooled = null;
+    ResultSet rs = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      PreparedStatement prepStmt = pooled.prepare("SELECT name FROM name_code WHERE id = ?");
+      prepStmt.setInt(1, code);
+      rs = prepStmt.executeQuery();
+      String name = rs.next() ? rs.getString(1) : null;
+      if(name != null){
+        synchronized(codes){
+          codes.put(name, code);
+        }
+        storedCodes.add(code);
+      }
+      failed = false;
+      return name;
+    } finally {
+      closeRs(rs);
+      release(pooled, failed);
+    }
+  }
+
+  /**
+   * Get code of name. A new code is assigned by a shared database, or else by this store.
+   * @param String Face or material name
+   * @return int Code
+   * @throws SQLException
+   */
+  private int internCode(String name) throws SQLException {
+    synchronized(codes){
+      int code = codes.getId(name);
+      if(code >= 0){
+        return code;
+      }
+    }
+    // The database is asked outside of the lock, lookups of the main thread wait for it otherwise.
+    int sharedCode = getSharedCode(name);
+    synchronized(codes){
+      if(sharedCode < 0){
+        return codes.intern(name);
+      }
+      codes.put(name, sharedCode);
+      storedCodes.add(sharedCode);
+      return codes.getId(name);
+    }
+  }
+
+  /**
+   * Get id assigned by a shared database. The row is inserted when it is missing. The insert is committed
+   * on a connection of its own, so that other servers see the id at once and a rollback of the writes
+   * does not take it back.
+   * @param String SQL selecting the id by the unique key, its parameter is the first value
+   * @param String SQL inserting the row unless the key is stored, its parameters are the values
+   * @param String[] Values
+   * @return int Id
+   * @throws SQLException
+   */
+  protected int getSharedId(String selectSql, String insertSql, String[] values) throws SQLException {
+    PooledConnection pooled = null;
+    boolean failed = true;
+    try{
+      pooled = borrow();
+      int id = selectId(pooled, selectSql, values[0]);
+      if(id < 0){
+        PreparedStatement insert = pooled.prepare(insertSql);
+        for(int i = 0; i < values.length; i++){
+          insert.setString(i + 1, values[i]);
+        }
+        insert.executeUpdate();
+        // Another server may have inserted the key first, its id is taken then.
+        id = selectId(pooled, selectSql, values[0]);
+      }
+      if(id < 0){
+        throw new SQLException("No id was assigned to " + values[0] + ".");
+      }
+      failed = false;
+      return id;
+    } finally {
+      release(pooled, failed);
+    }
+  }
+
+  /**
+   * Select id by key.
+   * @param PooledConnection Connection
+   * @param String SQL selecting the id, its parameter is the key
+   * @param String Key
+   * @return int Id or -1.
+   * @throws SQLException
+   */
+  private static int selectId(PooledConnection pooled, String selectSql, String key) throws SQLException {
+    PreparedStatement prepStmt = pooled.prepare(selectSql);
+    prepStmt.setString(1, key);
+    ResultSet rs = prepStmt.executeQuery();
+    try{
+      return rs.next() ? rs.getInt(1) : -1;
+    } finally {
+      rs.close();
+    }
+  }
+
+  /**
+   * Get code of name. A new code is added to the pending mutations.
+   * @param String Face or material name
+   * @return int Code
+   * @throws SQLException
+   */
+  private int putCode(String name) throws SQLException {
+    int code = internCode(name);
+    if(!storedCodes.contains(code)){
+      PreparedStatement prepStmt = batch(getPutCodeSql());
+      prepStmt.setInt(1, code);
+      prepStmt.setString(2, name);
+      prepStmt.addBatch();
+      storedCodes.add(code);
+    }
+    return code;
+  }
+
+  /**
+   * Get code of name while the schema is upgraded. A new code is added to the batch of the statement.
+   * @param PreparedStatement Statement of getPutCodeSql
+   * @param String Face or material name
+   * @return int Code
+   * @throws SQLException
+   */
+  private int getCode(PreparedStatement putCode, String name) throws SQLException {
+    int code = internCode(name);
+    if(storedCodes.add(code)){
+      putCode.setInt(1, code);
+      putCode.setString(2, name);
+      putCode.addBatch();
+    }
+    return code;
+  }
+
+  @Override
+  public int getSharedWorldId(String worldName) throws FrameGuardStoreException {
+    return -1;
+  }
+
+  @Override
+  public int getSharedUserId(UUID uuid, String playerName) throws FrameGuardStoreException {
+    return -1;
+  }
+
+  @Override
+  public void putWorld(int id, String worldName) throws FrameGuardStoreException {
+    if(storedWorldIds.contains(id)){
+      return;
+    }
+    try{
+      PreparedStatement prepStmt = batch(getPutWorldSql());
+      prepStmt.setInt(1, id);
+      prepStmt.setString(2, worldName);
+      prepStmt.addBatch();
+      storedWorldIds.add(id);
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  public void putUser(int id, UUID uuid, String playerName) throws FrameGuardStoreException {
+    if(storedUserIds.contains(id)){
+      return;
+    }
+    try{
+      PreparedStatement prepStmt = batch(getPutUserSql());
+      prepStmt.setInt(1, id);
+      prepStmt.setString(2, uuid.toString());
+      prepStmt.setString(3, playerName);
+      prepStmt.addBatch();
+      storedUserIds.add(id);
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  public void putLock(int worldId, FrameGuardLockRecord record) throws FrameGuardStoreException {
+    try{
+      // Codes go in before the batch of locks is taken.
+      int face = putCode(record.getBlockFace());
+      int material = putCode(record.getAttachedMaterial());
+      PreparedStatement prepStmt = batch(getPutLockSql());
+      setLockParameters(prepStmt, worldId, record, face, material);
+      prepStmt.addBatch();
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  public void putLock(int worldId, FrameGuardLockRecord record, long createdAt) throws FrameGuardStoreException {
+    try{
+      int face = putCode(record.getBlockFace());
+      int material = putCode(record.getAttachedMaterial());
+      PreparedStatement prepStmt = batch(getPutLockWithTimeSql());
+      setLockParameters(prepStmt, worldId, record, face, material);
+      setCreatedAt(prepStmt, 7, createdAt);
+      prepStmt.addBatch();
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  /**
+   * Set parameters of getPutLockSql.
+   * @param PreparedStatement PreparedStatement
+   * @param int World id
+   * @param FrameGuardLockRecord Lock record
+   * @param int Code of block face
+   * @param int Code of attached material
+   * @throws SQLException
+   */
+  private static void setLockParameters(PreparedStatement prepStmt, int worldId, FrameGuardLockRecord record, int face, int material) throws SQLException {
+    prepStmt.setInt(1, worldId);
+    prepStmt.setInt(2, record.getOwnerId());
+    prepStmt.setLong(3, FrameGuardPosition.pack(record.getX(), record.getY(), record.getZ()));
+    prepStmt.setInt(4, face);
+    prepStmt.setLong(5, FrameGuardPosition.pack(record.getAttachedX(), record.getAttachedY(), record.getAttachedZ()));
+    prepStmt.setInt(6, material);
+  }
+
+  @Override
+  public void removeLock(int worldId, int x, int y, int z) throws FrameGuardStoreException {
+    try{
+      deleteLock(worldId, FrameGuardPosition.pack(x, y, z));
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  /**
+   * Add lock to the batch of deletes.
+   * @param int World id
+   * @param long Packed position
+   * @throws SQLException
+   */
+  private void deleteLock(int worldId, long pos) throws SQLException {
+    PreparedStatement prepStmt = batch("DELETE FROM lockdata WHERE world_id = ? AND pos = ?");
+    prepStmt.setInt(1, worldId);
+    prepStmt.setLong(2, pos);
+    prepStmt.addBatch();
+  }
+
+  /**
+   * The world is removed at commit if it has no lock then. It is kept in a shared database.
+   */
+  @Override
+  public void removeUnusedWorld(int id) throws FrameGuardStoreException {
+    if(isShared()){
+      return;
+    }
+    try{
+      getSession().unusedWorldIds.add(id);
+      storedWorldIds.remove(id);
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  /**
+   * The user is removed at commit if it has no lock then. It is kept in a shared database.
+   */
+  @Override
+  public void removeUnusedUser(int id) throws FrameGuardStoreException {
+    if(isShared()){
+      return;
+    }
+    try{
+      getSession().unusedUserIds.add(id);
+      storedUserIds.remove(id);
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  public void commit() throws FrameGuardStoreException {
+    WriteSession session = sessions.get();
+    if(session == null){
+      return;
+    }
+    try{
+      for(Integer id : session.unusedWorldIds){
+        PreparedStatement prepStmt = batch("DELETE FROM world WHERE id = ? AND NOT EXISTS (SELECT 1 FROM lockdata WHERE world_id = ?)");
+        prepStmt.setInt(1, id);
+        prepStmt.setInt(2, id);
+        prepStmt.addBatch();
+      }
+      for(Integer id : session.unusedUserIds){
+        PreparedStatement prepStmt = batch("DELETE FROM user WHERE id = ? AND NOT EXISTS (SELECT 1 FROM lockdata WHERE user_id = ?)");
+        prepStmt.setInt(1, id);
+        prepStmt.setInt(2, id);
+        prepStmt.addBatch();
+      }
+      flushBatch(session);
+      session.pooled.getConnection().commit();
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+    sessions.remove();
+    pool.release(session.pooled, false);
+  }
+
+  @Override
+  public void rollback() {
+    WriteSession session = sessions.get();
+    if(session == null){
+      return;
+    }
+    sessions.remove();
+    if(session.batchStmt != null){
+      try{
+        session.batchStmt.clearBatch();
+      } catch (SQLException e){
+        // The connection is checked when it is given back.
+      }
+    }
+    // Rows that were stored in this session are gone again.
+    storedWorldIds.clear();
+    storedUserIds.clear();
+    storedCodes.clear();
+    pool.release(session.pooled, true);
+  }
+
+  @Override
+  public int purge(int days, int batchSize, PurgeListener listener) throws FrameGuardStoreException {
+    long createdBefore = System.currentTimeMillis() - days * 86400000L;
+    int count = 0;
+    ResultSet rs = null;
+    try{
+      // Mutations of this thread that are still open go in first.
+      commit();
+      int[] worldIds = new int[batchSize];
+      long[] positions = new long[batchSize];
+      while(true){
+        WriteSession session = getSession();
+        // Walks created_at index from the oldest lock.
+        PreparedStatement prepStmt = session.pooled.prepare("SELECT " + LOCK_COLUMNS + " FROM lockdata WHERE created_at < ? ORDER BY created_at LIMIT ?");
+        setCreatedAt(prepStmt, 1, createdBefore);
+        prepStmt.setInt(2, batchSize);
+        rs = prepStmt.executeQuery();
+        int selected = 0;
+        while(rs.next()){
+          listener.purged(rs.getInt(1), readRecord(rs));
+          worldIds[selected] = rs.getInt(1);
+          positions[selected] = rs.getLong(3);
+          selected++;
+        }
+        closeRs(rs);
+        rs = null;
+        if(selected == 0){
+          break;
+        }
+        for(int i = 0; i < selected; i++){
+          deleteLock(worldIds[i], positions[i]);
+        }
+        commit();
+        count += selected;
+        listener.progress(count);
+        if(selected < batchSize){
+          break;
+        }
+      }
+
+      // Clean up user and world tables at once.
+      removeUnusedRows(getSession());
+      commit();
+      return count;
+    } catch (SQLException e){
+      rollback();
+      throw new FrameGuardStoreException(e);
+    } catch (FrameGuardStoreException e){
+      rollback();
+      throw e;
+    } finally {
+      closeRs(rs);
+    }
+  }
+
+  @Override
+  public int expire(long createdBefore, int limit, LockVisitor removed) throws FrameGuardStoreException {
+    ResultSet rs = null;
+    try{
+      // Mutations of this thread that are still open go in first.
+      commit();
+      WriteSession session = getSession();
+      // Walks created_at index from the oldest lock.
+      PreparedStatement prepStmt = session.pooled.prepare("SELECT " + LOCK_COLUMNS + " FROM lockdata WHERE created_at < ? ORDER BY created_at LIMIT ?");
+      setCreatedAt(prepStmt, 1, createdBefore);
+      prepStmt.setInt(2, limit);
+      rs = prepStmt.executeQuery();
+      List<FrameGuardLockRecord> records = new ArrayList<FrameGuardLockRecord>();
+      List<Integer> recordWorldIds = new ArrayList<Integer>();
+      Set<Integer> worldIds = new LinkedHashSet<Integer>();
+      Set<Integer> userIds = new LinkedHashSet<Integer>();
+      while(rs.next()){
+        FrameGuardLockRecord record = readRecord(rs);
+        removed.visit(rs.getInt(1), record);
+        records.add(record);
+        recordWorldIds.add(rs.getInt(1));
+        worldIds.add(rs.getInt(1));
+        userIds.add(record.getOwnerId());
+      }
+      closeRs(rs);
+      rs = null;
+      for(int i = 0; i < records.size(); i++){
+        FrameGuardLockRecord record = records.get(i);
+        deleteLock(recordWorldIds.get(i), FrameGuardPosition.pack(record.getX(), record.getY(), record.getZ()));
+      }
+      for(Integer id : worldIds){
+        removeUnusedWorld(id);
+      }
+      for(Integer id : userIds){
+        removeUnusedUser(id);
+      }
+      commit();
+      return records.size();
+    } catch (SQLException e){
+      rollback();
+      throw new FrameGuardStoreException(e);
+    } catch (FrameGuardStoreException e){
+      rollback();
+      throw e;
+    } finally {
+      closeRs(rs);
+    }
+  }
+
+  @Override
+  public int removeLocks(FrameGuardLockFilter filter) throws FrameGuardStoreException {
+    try{
+      // Mutations of this thread that are still open go in first.
+      commit();
+      WriteSession session = getSession();
+      int count;
+      if(filter.hasArea()){
+        List<Long> positions = selectArea(session, filter);
+        for(Long pos : positions){
+          deleteLock(filter.getWorldId(), pos);
+        }
+        flushBatch(session);
+        count = positions.size();
+      } else {
+        PreparedStatement prepStmt = session.pooled.prepare("DELETE FROM lockdata WHERE " + getFilterSql(filter));
+        setFilterParameters(prepStmt, 1, filter);
+        count = prepStmt.executeUpdate();
+      }
+      removeUnusedRows(session);
+      commit();
+      return count;
+    } catch (SQLException e){
+      rollback();
+      throw new FrameGuardStoreException(e);
+    } catch (FrameGuardStoreException e){
+      rollback();
+      throw e;
+    }
+  }
+
+  @Override
+  public int transferLocks(FrameGuardLockFilter filter, int userId, UUID uuid, String playerName) throws FrameGuardStoreException {
+    try{
+      // Mutations of this thread that are still open go in first.
+      commit();
+      putUser(userId, uuid, playerName);
+      WriteSession session = getSession();
+      flushBatch(session);
+      int count;
+      if(filter.hasArea()){
+        List<Long> positions = selectArea(session, filter);
+        for(Long pos : positions){
+          PreparedStatement prepStmt = batch("UPDATE lockdata SET user_id = ? WHERE world_id = ? AND pos = ?");
+          prepStmt.setInt(1, userId);
+          prepStmt.setInt(2, filter.getWorldId());
+          prepStmt.setLong(3, pos);
+          prepStmt.addBatch();
+        }
+        flushBatch(session);
+        count = positions.size();
+      } else {
+        PreparedStatement prepStmt = session.pooled.prepare("UPDATE lockdata SET user_id = ? WHERE " + getFilterSql(filter));
+        prepStmt.setInt(1, userId);
+        setFilterParameters(prepStmt, 2, filter);
+        count = prepStmt.executeUpdate();
+      }
+      removeUnusedRows(session);
+      commit();
+      return count;
+    } catch (SQLException e){
+      rollback();
+      throw new FrameGuardStoreException(e);
+    } catch (FrameGuardStoreException e){
+      rollback();
+      throw e;
+    }
+  }
+
+  /**
+   * Remove users and worlds without lock at once. They are kept in a shared database.
+   * @param WriteSession Write session
+   * @throws SQLException
+   */
+  private void removeUnusedRows(WriteSession session) throws SQLException {
+    if(isShared()){
+      return;
+    }
+    session.pooled.prepare("DELETE FROM user WHERE id NOT IN (SELECT user_id FROM lockdata)").executeUpdate();
+    session.pooled.prepare("DELETE FROM world WHERE id NOT IN (SELECT world_id FROM lockdata)").executeUpdate();
+    storedWorldIds.clear();
+    storedUserIds.clear();
+  }
+
+  /**
+   * Select packed positions of the locks in the area of filter. The chunk columns of the area
+   * are one range of the primary key, each lock in it is checked with the filter.
+   * @param WriteSession Write session
+   * @param FrameGuardLockFilter Filter with an area
+   * @return List<Long> Packed positions
+   * @throws SQLException
+   */
+  private static List<Long> selectArea(WriteSession session, FrameGuardLockFilter filter) throws SQLException {
+    List<Long> positions = new ArrayList<Long>();
+    PreparedStatement prepStmt = session.pooled.prepare("SELECT user_id, pos FROM lockdata WHERE world_id = ? AND pos BETWEEN ? AND ?");
+    prepStmt.setInt(1, filter.getWorldId());
+    prepStmt.setLong(2, FrameGuardPosition.firstOfChunkX(filter.getMinX() >> 4));
+    prepStmt.setLong(3, FrameGuardPosition.lastOfChunkX(filter.getMaxX() >> 4));
+    ResultSet rs = prepStmt.executeQuery();
+    try{
+      while(rs.next()){
+        long pos = rs.getLong(2);
+        if(filter.matches(rs.getInt(1), pos)){
+          positions.add(pos);
+        }
+      }
+    } finally {
+      closeRs(rs);
+    }
+    return positions;
+  }
+
+  /**
+   * Get WHERE condition of filter without area. The owner is found by lockdata_user_id_index
+   * and the world by the primary key.
+   * @param FrameGuardLockFilter Filter
+   * @return String Condition
+   */
+  private static String getFilterSql(FrameGuardLockFilter filter) {
+    StringBuilder sql = new StringBuilder();
+    if(filter.hasOwner()){
+      sql.append("user_id = ?");
+    }
+    if(filter.hasWorld()){
+      sql.append(sql.length() == 0 ? "" : " AND ").append("world_id = ?");
+    }
+    return sql.length() == 0 ? "1 = 1" : sql.toString();
+  }
+
+  /**
+   * Set parameters of filter condition.
+   * @param PreparedStatement PreparedStatement
+   * @param int Index of the first parameter
+   * @param FrameGuardLockFilter Filter
+   * @throws SQLException
+   */
+  private static void setFilterParameters(PreparedStatement prepStmt, int index, FrameGuardLockFilter filter) throws SQLException {
+    if(filter.hasOwner()){
+      prepStmt.setInt(index++, filter.getOwnerId());
+    }
+    if(filter.hasWorld()){
+      prepStmt.setInt(index, filter.getWorldId());
+    }
+  }
+
+  /**
+   * Give back connection borrowed for lookup.
+   * @param PooledConnection Connection
+   * @param boolean true:an error occurred
+   */
+  private void release(PooledConnection pooled, boolean failed) {
+    if(pooled != null){
+      pool.release(pooled, failed);
+    }
+  }
+
+  /**
+   * Close result set.
+   * @param ResultSet Result set
+   */
+  private static void closeRs(ResultSet rs) {
+    try{
+      if(rs != null){
+        rs.close();
+      }
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Close statement.
+   * @param Statement Statement
+   */
+  private static void closeStmt(Statement stmt) {
+    try{
+      if(stmt != null){
+        stmt.close();
+      }
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+}
@@ -0,0 +1,587 @@
+package space.gorogoro.frameguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/*
+ * FrameGuardJournalStore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Lock store on an append-only journal. Every mutation is appended to a memory-mapped file
+ * and the journal is replayed into memory at open. When the journal holds too many dead
+ * records, the live records are written to the next generation of the journal in the background.
+ *
+ * File:   magic(int) version(int) sealed(byte) records... 0(int)
+ * Record: length(int) type(byte) payload crc32(int), length counts type and payload.
+ */
+public class FrameGuardJournalStore extends FrameGuardMemoryStore {
+  private static final int MAGIC = 0x46474a4c;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 9;
+  private static final int SEALED_OFFSET = 8;
+  private static final int MIN_CAPACITY = 1 << 20;
+  private static final int MAX_GROWTH = 64 << 20;
+  // A mapped region is indexed by int.
+  private static final int MAX_CAPACITY = Integer.MAX_VALUE;
+
+  private static final byte PUT_WORLD = 1;
+  private static final byte PUT_USER = 2;
+  private static final byte PUT_LOCK = 3;
+  private static final byte REMOVE_LOCK = 4;
+  private static final byte REMOVE_WORLD = 5;
+  private static final byte REMOVE_USER = 6;
+
+  private final File folder;
+  private final int compactThreshold;
+  private final CRC32 crc = new CRC32();
+  private ByteBuffer record = ByteBuffer.allocate(256);
+  private RandomAccessFile file;
+  private MappedByteBuffer buffer;
+  private long generation;
+  private int position;
+  private int appendedRecords;
+  private boolean dirty;
+  private IOException appendFailure;
+  private Thread compactor;
+
+  /**
+   * Constructor of FrameGuardJournalStore.
+   * @param File Folder of journal files
+   * @param int Dead records that start compaction
+   */
+  public FrameGuardJournalStore(File folder, int compactThreshold) {
+    this.folder = folder;
+    this.compactThreshold = compactThreshold;
+  }
+
+  /**
+   * Get journal file of generation.
+   * @param long Generation
+   * @return File Journal file
+   */
+  private File getJournalFile(long generation) {
+    return new File(folder, "journal-" + generation + ".log");
+  }
+
+  @Override
+  public synchronized void open() throws FrameGuardStoreException {
+    try{
+      if(!folder.exists()){
+        folder.mkdirs();
+      }
+      // The newest sealed generation is used, the others are left over from compaction.
+      List<Long> generations = new ArrayList<Long>();
+      File[] files = folder.listFiles();
+      if(files != null){
+        for(File f : files){
+          String name = f.getName();
+          if(name.startsWith("journal-") && name.endsWith(".log")){
+            try{
+              generations.add(Long.parseLong(name.substring(8, name.length() - 4)));
+            } catch (NumberFormatException e){
+              // Not a journal.
+            }
+          }
+        }
+      }
+      Collections.sort(generations, Collections.reverseOrder());
+      generation = -1;
+      for(Long candidate : generations){
+        if(generation < 0 && isSealed(getJournalFile(candidate))){
+          generation = candidate;
+        }else{
+          getJournalFile(candidate).delete();
+        }
+      }
+      if(generation < 0){
+        generation = 0;
+        create(getJournalFile(generation), new ArrayList<byte[]>(), true).close();
+      }
+      map(getJournalFile(generation));
+      appendFailure = null;
+      replay();
+    } catch (IOException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    Thread running;
+    synchronized(this){
+      running = compactor;
+    }
+    if(running != null){
+      try{
+        running.join();
+      } catch (InterruptedException e){
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized(this){
+      try{
+        if(buffer != null){
+          buffer.force();
+        }
+        if(file != null){
+          file.close();
+        }
+      } catch (IOException e){
+        FrameGuardLog.logStackTrace(e);
+      }
+      buffer = null;
+      file = null;
+    }
+  }
+
+  /**
+   * Check that journal file was completely written.
+   * @param File Journal file
+   * @return boolean true:sealed false:broken or incomplete
+   * @throws IOException
+   */
+  private static boolean isSealed(File journal) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(journal, "r");
+    try{
+      if(raf.length() < HEADER_SIZE){
+        return false;
+      }
+      return raf.readInt() == MAGIC && raf.readInt() == VERSION && raf.readByte() == 1;
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Map journal file.
+   * @param File Journal file
+   * @throws IOException
+   */
+  private void map(File journal) throws IOException {
+    file = new RandomAccessFile(journal, "rw");
+    long length = file.length();
+    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(length, MIN_CAPACITY));
+    position = HEADER_SIZE;
+  }
+
+  /**
+   * Apply the records of the journal. A torn record at the end is discarded.
+   */
+  private void replay() {
+    appendedRecords = 0;
+    ByteBuffer view = buffer.duplicate();
+    while(position + 4 <= view.capacity()){
+      int length = view.getInt(position);
+      if(length <= 0 || position + 8 + length > view.capacity()){
+        break;
+      }
+      byte[] bytes = new byte[length];
+      view.position(position + 4);
+      view.get(bytes);
+      crc.reset();
+      crc.update(bytes, 0, length);
+      if((int) crc.getValue() != view.getInt(position + 4 + length)){
+        break;
+      }
+      apply(ByteBuffer.wrap(bytes));
+      position += 8 + length;
+      appendedRecords++;
+    }
+    terminate();
+  }
+
+  /**
+   * Apply one record to memory.
+   * @param ByteBuffer Record without length and crc
+   */
+  private void apply(ByteBuffer in) {
+    byte type = in.get();
+    switch(type){
+      case PUT_WORLD:
+        super.putWorld(in.getInt(), getString(in));
+        break;
+      case PUT_USER:
+        super.putUser(in.getInt(), new UUID(in.getLong(), in.getLong()), getString(in));
+        break;
+      case PUT_LOCK:
+        int worldId = in.getInt();
+        long createdAt = in.getLong();
+        super.putLock(worldId, new FrameGuardLockRecord(in.getInt(), in.getInt(), in.getInt(), in.getInt(), getString(in), in.getInt(), in.getInt(), in.getInt(), getString(in)), createdAt);
+        break;
+      case REMOVE_LOCK:
+        super.removeLock(in.getInt(), in.getInt(), in.getInt(), in.getInt());
+        break;
+      case REMOVE_WORLD:
+        super.removeUnusedWorld(in.getInt());
+        break;
+      case REMOVE_USER:
+        super.removeUnusedUser(in.getInt());
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public synchronized void putWorld(int id, String worldName) {
+    if(hasWorld(id)){
+      return;
+    }
+    super.putWorld(id, worldName);
+    begin(PUT_WORLD).putInt(id);
+    putString(worldName);
+    append();
+  }
+
+  @Override
+  public synchronized void putUser(int id, UUID uuid, String playerName) {
+    if(hasUser(id)){
+      return;
+    }
+    super.putUser(id, uuid, playerName);
+    begin(PUT_USER).putInt(id).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    putString(playerName);
+    append();
+  }
+
+  @Override
+  public synchronized void putLock(int worldId, FrameGuardLockRecord lock, long createdAt) {
+    super.putLock(worldId, lock, createdAt);
+    encodeLock(worldId, lock, createdAt);
+    append();
+  }
+
+  @Override
+  public synchronized void removeLock(int worldId, int x, int y, int z) {
+    if(getLock(worldId, x, y, z) == null){
+      return;
+    }
+    super.removeLock(worldId, x, y, z);
+    begin(REMOVE_LOCK).putInt(worldId).putInt(x).putInt(y).putInt(z);
+    append();
+  }
+
+  @Override
+  public synchronized void removeUnusedWorld(int id) {
+    if(!hasWorld(id)){
+      return;
+    }
+    super.removeUnusedWorld(id);
+    if(!hasWorld(id)){
+      begin(REMOVE_WORLD).putInt(id);
+      append();
+    }
+  }
+
+  @Override
+  public synchronized void removeUnusedUser(int id) {
+    if(!hasUser(id)){
+      return;
+    }
+    super.removeUnusedUser(id);
+    if(!hasUser(id)){
+      begin(REMOVE_USER).putInt(id);
+      append();
+    }
+  }
+
+  /**
+   * Write appended records to disk. Compaction starts when there are too many dead records.
+   * After a record could not be appended every commit fails, the changes since then are
+   * only in memory and are lost at restart.
+   */
+  @Override
+  public synchronized void commit() throws FrameGuardStoreException {
+    if(buffer == null){
+      throw new FrameGuardStoreException("Journal is not open.");
+    }
+    if(appendFailure != null){
+      throw new FrameGuardStoreException("Journal can not be written, changes are lost at restart.", appendFailure);
+    }
+    if(dirty){
+      buffer.force();
+      dirty = false;
+    }
+    int dead = appendedRecords - getRecordCount();
+    if(compactor == null && dead >= compactThreshold && dead > getRecordCount()){
+      compactor = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          compact();
+        }
+      }, "FrameGuard-Compactor");
+      compactor.setDaemon(true);
+      compactor.start();
+    }
+  }
+
+  /**
+   * Appended records are already applied to memory and can not be taken back.
+   */
+  @Override
+  public void rollback() {
+  }
+
+  /**
+   * Start record.
+   * @param byte Record type
+   * @return ByteBuffer Record buffer
+   */
+  private ByteBuffer begin(byte type) {
+    record.clear();
+    record.put(type);
+    return record;
+  }
+
+  /**
+   * Encode lock record.
+   * @param int World id
+   * @param FrameGuardLockRecord Lock record
+   * @param long Created time (milliseconds)
+   */
+  private void encodeLock(int worldId, FrameGuardLockRecord lock, long createdAt) {
+    begin(PUT_LOCK).putInt(worldId).putLong(createdAt)
+      .putInt(lock.getX()).putInt(lock.getY()).putInt(lock.getZ()).putInt(lock.getOwnerId());
+    putString(lock.getBlockFace());
+    record.putInt(lock.getAttachedX()).putInt(lock.getAttachedY()).putInt(lock.getAttachedZ());
+    putString(lock.getAttachedMaterial());
+  }
+
+  /**
+   * Put string to record.
+   * @param String Value
+   */
+  private void putString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if(record.remaining() < bytes.length + 2){
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() << 1, record.position() + bytes.length + 64));
+      record.flip();
+      larger.put(record);
+      record = larger;
+    }
+    record.putShort((short) bytes.length);
+    record.put(bytes);
+  }
+
+  /**
+   * Get string from record.
+   * @param ByteBuffer Record
+   * @return String Value
+   */
+  private static String getString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getShort() & 0xFFFF];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Append record to the journal. When it fails the store is marked failed, no later record
+   * is appended so that the journal never holds a change without the ones before it.
+   */
+  private void append() {
+    if(buffer == null || appendFailure != null){
+      return;
+    }
+    int length = record.position();
+    try{
+      ensureCapacity((long) position + 12 + length);
+    } catch (IOException e){
+      FrameGuardLog.logStackTrace(e);
+      appendFailure = e;
+      return;
+    }
+    crc.reset();
+    crc.update(record.array(), 0, length);
+    buffer.putInt(position, length);
+    for(int i = 0; i < length; i++){
+      buffer.put(position + 4 + i, record.get(i));
+    }
+    buffer.putInt(position + 4 + length, (int) crc.getValue());
+    position += 8 + length;
+    terminate();
+    appendedRecords++;
+    dirty = true;
+  }
+
+  /**
+   * Mark the end of the journal so that old bytes behind it are not replayed.
+   */
+  private void terminate() {
+    if(position + 4 <= buffer.capacity()){
+      buffer.putInt(position, 0);
+    }
+  }
+
+  /**
+   * Map a larger region when the journal is full.
+   * @param long Required size
+   * @throws IOException The journal would be larger than MAX_CAPACITY or can not be mapped.
+   */
+  private void ensureCapacity(long required) throws IOException {
+    if(required <= buffer.capacity()){
+      return;
+    }
+    if(required > MAX_CAPACITY){
+      throw new IOException("Journal is full: " + getJournalFile(generation).getName());
+    }
+    buffer.force();
+    long capacity = buffer.capacity();
+    while(capacity < required){
+      capacity += Math.min(capacity, MAX_GROWTH);
+    }
+    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, MAX_CAPACITY));
+  }
+
+  /**
+   * Write the live records to the next generation and switch to it.
+   */
+  private void compact() {
+    final List<byte[]> snapshot = new ArrayList<byte[]>();
+    int snapshotPosition;
+    int snapshotAppended;
+    long nextGeneration;
+    File next;
+    synchronized(this){
+      snapshotPosition = position;
+      snapshotAppended = appendedRecords;
+      nextGeneration = generation + 1;
+      next = getJournalFile(nextGeneration);
+      forEachWorld(new WorldVisitor() {
+        @Override
+        public void visit(int id, String worldName) {
+          begin(PUT_WORLD).putInt(id);
+          putString(worldName);
+          snapshot.add(frame());
+        }
+      });
+      forEachUser(new UserVisitor() {
+        @Override
+        public void visit(int id, UUID uuid, String playerName) {
+          begin(PUT_USER).putInt(id).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+          putString(playerName);
+          snapshot.add(frame());
+        }
+      });
+      forEachEntry(new EntryVisitor() {
+        @Override
+        public void visit(int worldId, FrameGuardLockRecord lock, long createdAt) {
+          encodeLock(worldId, lock, createdAt);
+          snapshot.add(frame());
+        }
+      });
+    }
+    RandomAccessFile out = null;
+    try{
+      // Records are written outside the lock, the writer keeps appending to the current generation.
+      out = create(next, snapshot, false);
+      synchronized(this){
+        // Copy records appended during compaction, then seal.
+        int tailRecords = appendedRecords - snapshotAppended;
+        byte[] tail = new byte[position - snapshotPosition];
+        ByteBuffer view = buffer.duplicate();
+        view.position(snapshotPosition);
+        view.get(tail);
+        out.seek(out.length());
+        out.write(tail);
+        int end = (int) out.length();
+        out.getChannel().force(true);
+        out.seek(SEALED_OFFSET);
+        out.writeByte(1);
+        out.getChannel().force(true);
+        out.close();
+        out = null;
+
+        File old = getJournalFile(generation);
+        buffer.force();
+        file.close();
+        generation = nextGeneration;
+        map(next);
+        position = end;
+        terminate();
+        appendedRecords = snapshot.size() + tailRecords;
+        if(!old.delete()){
+          // Deleted at next open.
+          old.deleteOnExit();
+        }
+        compactor = null;
+      }
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+      closeQuietly(out);
+      next.delete();
+      synchronized(this){
+        compactor = null;
+      }
+    }
+  }
+
+  /**
+   * Frame the record buffer with length and crc.
+   * @return byte[] Framed record
+   */
+  private byte[] frame() {
+    int length = record.position();
+    crc.reset();
+    crc.update(record.array(), 0, length);
+    ByteBuffer framed = ByteBuffer.allocate(8 + length);
+    framed.putInt(length);
+    framed.put(record.array(), 0, length);
+    framed.putInt((int) crc.getValue());
+    return framed.array();
+  }
+
+  /**
+   * Create journal file.
+   * @param File Journal file
+   * @param List<byte[]> Framed records
+   * @param boolean true:seal now false:sealed by the caller after more records are written
+   * @return RandomAccessFile Opened journal file
+   * @throws IOException
+   */
+  private static RandomAccessFile create(File journal, List<byte[]> records, boolean sealed) throws IOException {
+    RandomAccessFile out = new RandomAccessFile(journal, "rw");
+    try{
+      out.setLength(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).put((byte) (sealed ? 1 : 0));
+      out.write(header.array());
+      for(byte[] framed : records){
+        out.write(framed);
+      }
+      if(sealed){
+        out.getChannel().force(true);
+      }
+      return out;
+    } catch (IOException e){
+      closeQuietly(out);
+      throw e;
+    }
+  }
+
+  /**
+   * Close file without error.
+   * @param RandomAccessFile File
+   */
+  private static void closeQuietly(RandomAccessFile raf) {
+    try{
+      if(raf != null){
+        raf.close();
+      }
+    } catch (IOException e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+}
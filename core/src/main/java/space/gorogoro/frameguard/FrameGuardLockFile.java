@@ -0,0 +1,463 @@
+package space.gorogoro.frameguard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * FrameGuardLockFile
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Export file of locks, one JSON object per line (NDJSON), optionally gzipped.
+ * The first line is the header, each of the other lines is one lock with its world and owner:
+ *
+ * {"format":"frameguard-locks","version":1}
+ * {"world":"world","uuid":"...","player":"kubotan","x":1,"y":64,"z":2,"face":"NORTH","ax":1,"ay":64,"az":3,"material":"STONE","created":1500000000000}
+ */
+public final class FrameGuardLockFile implements Closeable {
+  private static final String FORMAT = "frameguard-locks";
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final BufferedWriter out;
+  private final BufferedReader in;
+  private final StringBuilder line = new StringBuilder(256);
+  private final Map<String, String> fields = new HashMap<String, String>();
+  private long lineNumber;
+
+  /**
+   * Lock with its world and owner.
+   */
+  public static final class Row {
+    private final String worldName;
+    private final UUID uuid;
+    private final String playerName;
+    private final FrameGuardLockRecord record;
+    private final long createdAt;
+
+    /**
+     * Constructor of Row.
+     * @param String World name
+     * @param UUID Owner
+     * @param String Owner name
+     * @param FrameGuardLockRecord Lock record, its owner id is not written
+     * @param long Created time (milliseconds)
+     */
+    public Row(String worldName, UUID uuid, String playerName, FrameGuardLockRecord record, long createdAt) {
+      this.worldName = worldName;
+      this.uuid = uuid;
+      this.playerName = playerName;
+      this.record = record;
+      this.createdAt = createdAt;
+    }
+
+    /**
+     * Get world name.
+     * @return String World name
+     */
+    public String getWorldName() {
+      return worldName;
+    }
+
+    /**
+     * Get owner.
+     * @return UUID Owner
+     */
+    public UUID getUuid() {
+      return uuid;
+    }
+
+    /**
+     * Get owner name.
+     * @return String Owner name
+     */
+    public String getPlayerName() {
+      return playerName;
+    }
+
+    /**
+     * Get lock record.
+     * @return FrameGuardLockRecord Lock record
+     */
+    public FrameGuardLockRecord getRecord() {
+      return record;
+    }
+
+    /**
+     * Get created time.
+     * @return long Created time (milliseconds)
+     */
+    public long getCreatedAt() {
+      return createdAt;
+    }
+  }
+
+  /**
+   * Constructor of FrameGuardLockFile.
+   * @param BufferedWriter Output or null
+   * @param BufferedReader Input or null
+   */
+  private FrameGuardLockFile(BufferedWriter out, BufferedReader in) {
+    this.out = out;
+    this.in = in;
+  }
+
+  /**
+   * Create export file and write the header.
+   * @param File File
+   * @param boolean true:gzip
+   * @return FrameGuardLockFile File to write
+   * @throws IOException
+   */
+  public static FrameGuardLockFile create(File file, boolean gzip) throws IOException {
+    OutputStream stream = new FileOutputStream(file);
+    try{
+      stream = gzip ? new GZIPOutputStream(stream, BUFFER_SIZE) : new BufferedOutputStream(stream, BUFFER_SIZE);
+      FrameGuardLockFile lockFile = new FrameGuardLockFile(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE), null);
+      lockFile.out.write("{\"format\":\"" + FORMAT + "\",\"version\":" + VERSION + "}\n");
+      return lockFile;
+    } catch (IOException e){
+      stream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Open export file and check the header. A gzipped file is found by its magic number.
+   * @param File File
+   * @return FrameGuardLockFile File to read
+   * @throws IOException
+   */
+  public static FrameGuardLockFile open(File file) throws IOException {
+    InputStream stream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    try{
+      stream.mark(2);
+      boolean gzip = stream.read() == (GZIPInputStream.GZIP_MAGIC & 0xff) && stream.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+      stream.reset();
+      if(gzip){
+        stream = new GZIPInputStream(stream, BUFFER_SIZE);
+      }
+      FrameGuardLockFile lockFile = new FrameGuardLockFile(null, new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), BUFFER_SIZE));
+      if(!lockFile.readFields() || !FORMAT.equals(lockFile.fields.get("format"))){
+        throw new IOException("Not an export file of FrameGuard: " + file.getName());
+      }
+      if(lockFile.getInt("version") != VERSION){
+        throw new IOException("Unsupported version of export file: " + lockFile.fields.get("version"));
+      }
+      return lockFile;
+    } catch (IOException e){
+      stream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Write lock.
+   * @param String World name
+   * @param UUID Owner
+   * @param String Owner name
+   * @param FrameGuardLockRecord Lock record
+   * @param long Created time (milliseconds)
+   * @throws IOException
+   */
+  public void write(String worldName, UUID uuid, String playerName, FrameGuardLockRecord record, long createdAt) throws IOException {
+    line.setLength(0);
+    line.append("{\"world\":");
+    appendString(worldName);
+    line.append(",\"uuid\":\"").append(uuid).append("\",\"player\":");
+    appendString(playerName);
+    line.append(",\"x\":").append(record.getX())
+      .append(",\"y\":").append(record.getY())
+      .append(",\"z\":").append(record.getZ())
+      .append(",\"face\":");
+    appendString(record.getBlockFace());
+    line.append(",\"ax\":").append(record.getAttachedX())
+      .append(",\"ay\":").append(record.getAttachedY())
+      .append(",\"az\":").append(record.getAttachedZ())
+      .append(",\"material\":");
+    appendString(record.getAttachedMaterial());
+    line.append(",\"created\":").append(createdAt).append("}\n");
+    out.append(line);
+  }
+
+  /**
+   * Read next lock.
+   * @return Row Lock or null at the end of the file.
+   * @throws IOException The line is broken.
+   */
+  public Row read() throws IOException {
+    if(!readFields()){
+      return null;
+    }
+    String uuid = getString("uuid");
+    try{
+      return new Row(
+        getString("world"),
+        UUID.fromString(uuid),
+        getString("player"),
+        new FrameGuardLockRecord(
+          getInt("x"),
+          getInt("y"),
+          getInt("z"),
+          -1,
+          getString("face"),
+          getInt("ax"),
+          getInt("ay"),
+          getInt("az"),
+          getString("material")
+        ),
+        getLong("created")
+      );
+    } catch (IllegalArgumentException e){
+      throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(out != null){
+      out.close();
+    }
+    if(in != null){
+      in.close();
+    }
+  }
+
+  /**
+   * Append JSON string.
+   * @param String Value, null is written as empty
+   */
+  private void appendString(String value) {
+    line.append('"');
+    if(value != null){
+      for(int i = 0; i < value.length(); i++){
+        char c = value.charAt(i);
+        if(c == '"' || c == '\\'){
+          line.append('\\').append(c);
+        }else if(c < 0x20){
+          line.append(String.format("\\u%04x", (int) c));
+        }else{
+          line.append(c);
+        }
+      }
+    }
+    line.append('"');
+  }
+
+  /**
+   * Read the fields of the next non-empty line. Only a flat object of strings and numbers is accepted.
+   * @return boolean true:read false:end of file
+   * @throws IOException The line is broken.
+   */
+  private boolean readFields() throws IOException {
+    String text;
+    do{
+      text = in.readLine();
+      if(text == null){
+        return false;
+      }
+      lineNumber++;
+      text = text.trim();
+    }while(text.isEmpty());
+    fields.clear();
+    int[] pos = {skipSpaces(text, 0)};
+    expect(text, pos, '{');
+    if(peek(text, pos) == '}'){
+      return true;
+    }
+    while(true){
+      String key = parseString(text, pos);
+      expect(text, pos, ':');
+      String value = peek(text, pos) == '"' ? parseString(text, pos) : parseNumber(text, pos);
+      fields.put(key, value);
+      char c = peek(text, pos);
+      pos[0]++;
+      if(c == '}'){
+        return true;
+      }
+      if(c != ','){
+        throw broken("',' or '}' expected");
+      }
+    }
+  }
+
+  /**
+   * Skip white space.
+   * @param String Line
+   * @param int Position
+   * @return int Position of the next character
+   */
+  private static int skipSpaces(String text, int i) {
+    while(i < text.length() && Character.isWhitespace(text.charAt(i))){
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Get the next character after white space.
+   * @param String Line
+   * @param int[] Position, moved to the character
+   * @return char Character
+   * @throws IOException The line ended.
+   */
+  private char peek(String text, int[] pos) throws IOException {
+    pos[0] = skipSpaces(text, pos[0]);
+    if(pos[0] >= text.length()){
+      throw broken("unexpected end of line");
+    }
+    return text.charAt(pos[0]);
+  }
+
+  /**
+   * Consume character.
+   * @param String Line
+   * @param int[] Position
+   * @param char Expected character
+   * @throws IOException Another character was found.
+   */
+  private void expect(String text, int[] pos, char expected) throws IOException {
+    if(peek(text, pos) != expected){
+      throw broken("'" + expected + "' expected");
+    }
+    pos[0]++;
+  }
+
+  /**
+   * Parse JSON string.
+   * @param String Line
+   * @param int[] Position
+   * @return String Value
+   * @throws IOException The string is broken.
+   */
+  private String parseString(String text, int[] pos) throws IOException {
+    expect(text, pos, '"');
+    StringBuilder sb = new StringBuilder();
+    int i = pos[0];
+    while(i < text.length()){
+      char c = text.charAt(i++);
+      if(c == '"'){
+        pos[0] = i;
+        return sb.toString();
+      }
+      if(c != '\\'){
+        sb.append(c);
+        continue;
+      }
+      if(i >= text.length()){
+        break;
+      }
+      char escaped = text.charAt(i++);
+      switch(escaped){
+        case 'b': sb.append('\b'); break;
+        case 'f': sb.append('\f'); break;
+        case 'n': sb.append('\n'); break;
+        case 'r': sb.append('\r'); break;
+        case 't': sb.append('\t'); break;
+        case 'u':
+          if(i + 4 > text.length()){
+            throw broken("broken escape");
+          }
+          try{
+            sb.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+          } catch (NumberFormatException e){
+            throw broken("broken escape");
+          }
+          i += 4;
+          break;
+        default: sb.append(escaped); break;
+      }
+    }
+    throw broken("unterminated string");
+  }
+
+  /**
+   * Parse JSON number.
+   * @param String Line
+   * @param int[] Position
+   * @return String Value
+   * @throws IOException No number.
+   */
+  private String parseNumber(String text, int[] pos) throws IOException {
+    int start = pos[0];
+    int i = start;
+    while(i < text.length() && "+-0123456789.eE".indexOf(text.charAt(i)) >= 0){
+      i++;
+    }
+    if(i == start){
+      throw broken("value expected");
+    }
+    pos[0] = i;
+    return text.substring(start, i);
+  }
+
+  /**
+   * Get string field.
+   * @param String Key
+   * @return String Value
+   * @throws IOException The field is missing.
+   */
+  private String getString(String key) throws IOException {
+    String value = fields.get(key);
+    if(value == null){
+      throw broken("\"" + key + "\" is missing");
+    }
+    return value;
+  }
+
+  /**
+   * Get int field.
+   * @param String Key
+   * @return int Value
+   * @throws IOException The field is missing or not an integer.
+   */
+  private int getInt(String key) throws IOException {
+    try{
+      return Integer.parseInt(getString(key));
+    } catch (NumberFormatException e){
+      throw broken("\"" + key + "\" is not an integer");
+    }
+  }
+
+  /**
+   * Get long field.
+   * @param String Key
+   * @return long Value
+   * @throws IOException The field is missing or not an integer.
+   */
+  private long getLong(String key) throws IOException {
+    try{
+      return Long.parseLong(getString(key));
+    } catch (NumberFormatException e){
+      throw broken("\"" + key + "\" is not an integer");
+    }
+  }
+
+  /**
+   * Create error of the current line.
+   * @param String Message
+   * @return IOException Error
+   */
+  private IOException broken(String message) {
+    return new IOException("Line " + lineNumber + ": " + message);
+  }
+}
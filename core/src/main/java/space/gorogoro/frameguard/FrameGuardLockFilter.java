@@ -0,0 +1,202 @@
+package space.gorogoro.frameguard;
+
+/*
+ * FrameGuardLockFilter
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Selects locks by owner, by world or by a cuboid of a world, for bulk unlock and transfer.
+ */
+public final class FrameGuardLockFilter {
+  private static final int ANY = -1;
+
+  private final int worldId;
+  private final int ownerId;
+  private final boolean area;
+  private final int minX;
+  private final int minY;
+  private final int minZ;
+  private final int maxX;
+  private final int maxY;
+  private final int maxZ;
+
+  /**
+   * Constructor of FrameGuardLockFilter.
+   * @param int World id or -1 for any world
+   * @param int Owner user id or -1 for any owner
+   * @param boolean true:only inside the cuboid
+   * @param int Minimum x
+   * @param int Minimum y
+   * @param int Minimum z
+   * @param int Maximum x
+   * @param int Maximum y
+   * @param int Maximum z
+   */
+  private FrameGuardLockFilter(int worldId, int ownerId, boolean area, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+    this.worldId = worldId;
+    this.ownerId = ownerId;
+    this.area = area;
+    this.minX = minX;
+    this.minY = minY;
+    this.minZ = minZ;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.maxZ = maxZ;
+  }
+
+  /**
+   * Select the locks of an owner in every world.
+   * @param int Owner user id
+   * @return FrameGuardLockFilter Filter
+   */
+  public static FrameGuardLockFilter owner(int ownerId) {
+    return new FrameGuardLockFilter(ANY, ownerId, false, 0, 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * Select the locks of a world.
+   * @param int World id
+   * @return FrameGuardLockFilter Filter
+   */
+  public static FrameGuardLockFilter world(int worldId) {
+    return new FrameGuardLockFilter(worldId, ANY, false, 0, 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * Select the locks inside a cuboid. The corners may be given in any order.
+   * @param int World id
+   * @param int x of a corner
+   * @param int y of a corner
+   * @param int z of a corner
+   * @param int x of the opposite corner
+   * @param int y of the opposite corner
+   * @param int z of the opposite corner
+   * @return FrameGuardLockFilter Filter
+   */
+  public static FrameGuardLockFilter area(int worldId, int x1, int y1, int z1, int x2, int y2, int z2) {
+    return new FrameGuardLockFilter(worldId, ANY, true,
+      Math.min(x1, x2), Math.min(y1, y2), Math.min(z1, z2), Math.max(x1, x2), Math.max(y1, y2), Math.max(z1, z2));
+  }
+
+  /**
+   * Check lock.
+   * @param int World id
+   * @param FrameGuardLockRecord Lock record
+   * @return boolean true:selected false:not selected
+   */
+  public boolean matches(int worldId, FrameGuardLockRecord record) {
+    if(this.worldId != ANY && this.worldId != worldId){
+      return false;
+    }
+    return matches(record.getOwnerId(), FrameGuardPosition.pack(record.getX(), record.getY(), record.getZ()));
+  }
+
+  /**
+   * Check lock of the selected world, the world is not compared.
+   * @param int Owner user id
+   * @param long Packed position
+   * @return boolean true:selected false:not selected
+   */
+  public boolean matches(int ownerId, long pos) {
+    if(this.ownerId != ANY && this.ownerId != ownerId){
+      return false;
+    }
+    if(!area){
+      return true;
+    }
+    int x = FrameGuardPosition.x(pos);
+    int y = FrameGuardPosition.y(pos);
+    int z = FrameGuardPosition.z(pos);
+    return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+  }
+
+  /**
+   * Check whether the filter holds a world.
+   * @return boolean true:one world false:every world
+   */
+  public boolean hasWorld() {
+    return worldId != ANY;
+  }
+
+  /**
+   * Check whether the filter holds an owner.
+   * @return boolean true:one owner false:every owner
+   */
+  public boolean hasOwner() {
+    return ownerId != ANY;
+  }
+
+  /**
+   * Check whether the filter holds a cuboid.
+   * @return boolean true:cuboid false:whole world
+   */
+  public boolean hasArea() {
+    return area;
+  }
+
+  /**
+   * Get world id.
+   * @return int World id or -1.
+   */
+  public int getWorldId() {
+    return worldId;
+  }
+
+  /**
+   * Get owner user id.
+   * @return int Owner user id or -1.
+   */
+  public int getOwnerId() {
+    return ownerId;
+  }
+
+  /**
+   * Get minimum x of the cuboid.
+   * @return int Minimum x
+   */
+  public int getMinX() {
+    return minX;
+  }
+
+  /**
+   * Get minimum y of the cuboid.
+   * @return int Minimum y
+   */
+  public int getMinY() {
+    return minY;
+  }
+
+  /**
+   * Get minimum z of the cuboid.
+   * @return int Minimum z
+   */
+  public int getMinZ() {
+    return minZ;
+  }
+
+  /**
+   * Get maximum x of the cuboid.
+   * @return int Maximum x
+   */
+  public int getMaxX() {
+    return maxX;
+  }
+
+  /**
+   * Get maximum y of the cuboid.
+   * @return int Maximum y
+   */
+  public int getMaxY() {
+    return maxY;
+  }
+
+  /**
+   * Get maximum z of the cuboid.
+   * @return int Maximum z
+   */
+  public int getMaxZ() {
+    return maxZ;
+  }
+}
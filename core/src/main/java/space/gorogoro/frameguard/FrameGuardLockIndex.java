@@ -0,0 +1,706 @@
+package space.gorogoro.frameguard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * FrameGuardLockIndex
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardLockIndex {
+  private static final String[] FACES = {"NORTH", "EAST", "SOUTH", "WEST", "UP", "DOWN"};
+  private static final int CHUNK_LOADED = 1;
+  private static final int CHUNK_UNLOADING = 2;
+
+  private final Map<String, WorldLocks> worlds = new HashMap<String, WorldLocks>();
+  private final List<String> materialNames = new ArrayList<String>();
+  private final Map<String, Integer> materialCodes = new HashMap<String, Integer>();
+  private int writeSequence = 0;
+
+  /**
+   * Locks of one world. Rows are stored in parallel arrays and addressed by slot.
+   * The rows of a chunk are linked together so that the chunk can be dropped at once.
+   * Each chunk has a bitmap of its 16x16x16 sections that hold a lock or an attachment point,
+   * one bit per section (y >> 4) modulo 32, so that most blocks are ruled out by one lookup.
+   * adjacentCounts holds every block a locked hanging touches: its own block, the four
+   * horizontal sides and the supporting block.
+   */
+  private static class WorldLocks {
+    private final FrameGuardLongIntMap slots = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap attachedCounts = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap adjacentCounts = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap chunkHeads = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap residentChunks = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap pendingWrites = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap positionWrites = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap writeSequences = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap sectionMasks = new FrameGuardLongIntMap();
+    private final FrameGuardLongIntMap sectionCounts = new FrameGuardLongIntMap();
+    private long[] positions = new long[16];
+    private int[] prev = new int[16];
+    private int[] next = new int[16];
+    private int[] owners = new int[16];
+    private byte[] faces = new byte[16];
+    private int[] materials = new int[16];
+    private long[] attached = new long[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int used = 0;
+
+    /**
+     * Get slot of position.
+     * @param long Packed position
+     * @return int Slot or -1.
+     */
+    private int slotOf(long pos) {
+      return slots.get(pos, -1);
+    }
+
+    /**
+     * Check the section bit of position.
+     * @param long Packed position
+     * @return boolean true:the section may hold a lock or attachment point false:it does not
+     */
+    private boolean inSection(long pos) {
+      return (sectionMasks.get(FrameGuardPosition.chunkKeyOf(pos), 0) & (1 << sectionBit(pos))) != 0;
+    }
+
+    /**
+     * Count a lock or attachment point in the section of position.
+     * @param long Packed position
+     * @param int 1:added -1:removed
+     */
+    private void mark(long pos, int delta) {
+      long chunkKey = FrameGuardPosition.chunkKeyOf(pos);
+      int bit = sectionBit(pos);
+      int count = sectionCounts.add((chunkKey << 5) | bit, delta);
+      int mask = sectionMasks.get(chunkKey, 0);
+      if(count > 0){
+        mask |= 1 << bit;
+      }else{
+        mask &= ~(1 << bit);
+      }
+      if(mask != 0){
+        sectionMasks.put(chunkKey, mask, 0);
+      }else{
+        sectionMasks.remove(chunkKey, 0);
+      }
+    }
+
+    /**
+     * Count the blocks touched by the lock in slot.
+     * @param int Slot
+     * @param int 1:added -1:removed
+     */
+    private void touch(int slot, int delta) {
+      long pos = positions[slot];
+      int x = FrameGuardPosition.x(pos);
+      int y = FrameGuardPosition.y(pos);
+      int z = FrameGuardPosition.z(pos);
+      adjacentCounts.add(pos, delta);
+      adjacentCounts.add(FrameGuardPosition.pack(x, y, z - 1), delta);  // NORTH
+      adjacentCounts.add(FrameGuardPosition.pack(x + 1, y, z), delta);  // EAST
+      adjacentCounts.add(FrameGuardPosition.pack(x, y, z + 1), delta);  // SOUTH
+      adjacentCounts.add(FrameGuardPosition.pack(x - 1, y, z), delta);  // WEST
+      adjacentCounts.add(attached[slot], delta);
+    }
+
+    /**
+     * Get free slot.
+     * @return int Slot.
+     */
+    private int allocate() {
+      if(freeCount > 0){
+        return freeSlots[--freeCount];
+      }
+      if(used == faces.length){
+        int capacity = used << 1;
+        positions = Arrays.copyOf(positions, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        faces = Arrays.copyOf(faces, capacity);
+        materials = Arrays.copyOf(materials, capacity);
+        attached = Arrays.copyOf(attached, capacity);
+      }
+      return used++;
+    }
+
+    /**
+     * Link slot to the rows of its chunk.
+     * @param int Slot
+     */
+    private void link(int slot) {
+      long chunkKey = FrameGuardPosition.chunkKeyOf(positions[slot]);
+      int head = chunkHeads.put(chunkKey, slot, -1);
+      prev[slot] = -1;
+      next[slot] = head;
+      if(head >= 0){
+        prev[head] = slot;
+      }
+    }
+
+    /**
+     * Unlink slot from the rows of its chunk.
+     * @param int Slot
+     */
+    private void unlink(int slot) {
+      if(prev[slot] >= 0){
+        next[prev[slot]] = next[slot];
+      }else{
+        long chunkKey = FrameGuardPosition.chunkKeyOf(positions[slot]);
+        if(next[slot] >= 0){
+          chunkHeads.put(chunkKey, next[slot], -1);
+        }else{
+          chunkHeads.remove(chunkKey, -1);
+        }
+      }
+      if(next[slot] >= 0){
+        prev[next[slot]] = prev[slot];
+      }
+    }
+
+    /**
+     * Release slot.
+     * @param int Slot
+     */
+    private void release(int slot) {
+      if(freeCount == freeSlots.length){
+        freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+      }
+      freeSlots[freeCount++] = slot;
+    }
+  }
+
+  /**
+   * Get section bit of position.
+   * @param long Packed position
+   * @return int Bit (0-31)
+   */
+  private static int sectionBit(long pos) {
+    return (FrameGuardPosition.y(pos) >> 4) & 31;
+  }
+
+  /**
+   * Get locks of world.
+   * @param String World name
+   * @return WorldLocks Locks or null.
+   */
+  private WorldLocks get(String world) {
+    return worlds.get(world);
+  }
+
+  /**
+   * Get slot of block.
+   * @param WorldLocks Locks
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return int Slot or -1.
+   */
+  private static int slotOf(WorldLocks locks, int x, int y, int z) {
+    if(locks == null){
+      return -1;
+    }
+    return locks.slotOf(FrameGuardPosition.pack(x, y, z));
+  }
+
+  /**
+   * Get code of block face.
+   * @param String Block face name
+   * @return byte Code or -1.
+   */
+  private static byte faceCode(String face) {
+    for(byte i = 0; i < FACES.length; i++){
+      if(FACES[i].equals(face)){
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get code of material.
+   * @param String Material name
+   * @return int Code.
+   */
+  private int materialCode(String material) {
+    Integer code = materialCodes.get(material);
+    if(code == null){
+      code = materialNames.size();
+      materialNames.add(material);
+      materialCodes.put(material, code);
+    }
+    return code;
+  }
+
+  /**
+   * Put lock.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param int Owner user id
+   * @param String Block face name
+   * @param int Attached x
+   * @param int Attached y
+   * @param int Attached z
+   * @param String Attached material name
+   */
+  public void put(String world, int x, int y, int z, int owner, String blockFace, int attachedX, int attachedY, int attachedZ, String attachedMaterial) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      locks = new WorldLocks();
+      worlds.put(world, locks);
+    }
+    long pos = FrameGuardPosition.pack(x, y, z);
+    int slot = locks.slotOf(pos);
+    if(slot < 0){
+      slot = locks.allocate();
+      locks.slots.put(pos, slot, -1);
+      locks.positions[slot] = pos;
+      locks.link(slot);
+      locks.mark(pos, 1);
+    }else{
+      locks.touch(slot, -1);
+      locks.attachedCounts.add(locks.attached[slot], -1);
+      locks.mark(locks.attached[slot], -1);
+    }
+    locks.owners[slot] = owner;
+    locks.faces[slot] = faceCode(blockFace);
+    locks.materials[slot] = materialCode(attachedMaterial);
+    locks.attached[slot] = FrameGuardPosition.pack(attachedX, attachedY, attachedZ);
+    locks.attachedCounts.add(locks.attached[slot], 1);
+    locks.mark(locks.attached[slot], 1);
+    locks.touch(slot, 1);
+  }
+
+  /**
+   * Remove lock.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:removed false:no lock
+   */
+  public boolean remove(String world, int x, int y, int z) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      return false;
+    }
+    int slot = locks.slots.remove(FrameGuardPosition.pack(x, y, z), -1);
+    if(slot < 0){
+      return false;
+    }
+    removeSlot(locks, slot);
+    return true;
+  }
+
+  /**
+   * Remove lock in slot. The slot must be removed from slots already.
+   * @param WorldLocks Locks
+   * @param int Slot
+   */
+  private static void removeSlot(WorldLocks locks, int slot) {
+    locks.mark(locks.positions[slot], -1);
+    locks.attachedCounts.add(locks.attached[slot], -1);
+    locks.mark(locks.attached[slot], -1);
+    locks.touch(slot, -1);
+    locks.unlink(slot);
+    locks.release(slot);
+  }
+
+  /**
+   * Remove the locks selected by the filter in one pass.
+   * @param String World name, null for every world
+   * @param FrameGuardLockFilter Filter, its world is not compared
+   * @param boolean true:keep the locks of chunks with uncommitted writes
+   * @return int Number of removed locks.
+   */
+  public int removeAll(String world, FrameGuardLockFilter filter, boolean skipPendingWrites) {
+    int count = 0;
+    for(WorldLocks locks : select(world)){
+      for(int slot = 0; slot < locks.used; slot++){
+        if(isSelected(locks, slot, filter, skipPendingWrites)){
+          locks.slots.remove(locks.positions[slot], -1);
+          removeSlot(locks, slot);
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Give the locks selected by the filter to another owner in one pass.
+   * @param String World name, null for every world
+   * @param FrameGuardLockFilter Filter, its world is not compared
+   * @param int New owner user id
+   * @param boolean true:keep the locks of chunks with uncommitted writes
+   * @return int Number of transferred locks.
+   */
+  public int transferAll(String world, FrameGuardLockFilter filter, int owner, boolean skipPendingWrites) {
+    int count = 0;
+    for(WorldLocks locks : select(world)){
+      for(int slot = 0; slot < locks.used; slot++){
+        if(isSelected(locks, slot, filter, skipPendingWrites)){
+          locks.owners[slot] = owner;
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Get locks of one world or of every world.
+   * @param String World name or null
+   * @return List<WorldLocks> Locks
+   */
+  private List<WorldLocks> select(String world) {
+    if(world == null){
+      return new ArrayList<WorldLocks>(worlds.values());
+    }
+    List<WorldLocks> selected = new ArrayList<WorldLocks>(1);
+    WorldLocks locks = worlds.get(world);
+    if(locks != null){
+      selected.add(locks);
+    }
+    return selected;
+  }
+
+  /**
+   * Check whether slot holds a lock selected by the filter.
+   * @param WorldLocks Locks
+   * @param int Slot
+   * @param FrameGuardLockFilter Filter
+   * @param boolean true:chunks with uncommitted writes are not selected
+   * @return boolean true:selected false:free slot or not selected
+   */
+  private static boolean isSelected(WorldLocks locks, int slot, FrameGuardLockFilter filter, boolean skipPendingWrites) {
+    long pos = locks.positions[slot];
+    if(locks.slots.get(pos, -1) != slot || !filter.matches(locks.owners[slot], pos)){
+      return false;
+    }
+    return !skipPendingWrites || !locks.pendingWrites.containsKey(FrameGuardPosition.chunkKeyOf(pos));
+  }
+
+  /**
+   * Check whether the locks of the chunk are loaded.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   * @return boolean true:loaded false:not loaded
+   */
+  public boolean isChunkLoaded(String world, int chunkX, int chunkZ) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      return false;
+    }
+    return locks.residentChunks.containsKey(FrameGuardPosition.chunkKey(chunkX, chunkZ));
+  }
+
+  /**
+   * Mark the locks of the chunk as loaded. Call after putting the locks of the chunk.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   */
+  public void markChunkLoaded(String world, int chunkX, int chunkZ) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      locks = new WorldLocks();
+      worlds.put(world, locks);
+    }
+    locks.residentChunks.put(FrameGuardPosition.chunkKey(chunkX, chunkZ), CHUNK_LOADED, 0);
+  }
+
+  /**
+   * Drop the locks of the chunk. A chunk with uncommitted writes is dropped when the last write is committed.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   */
+  public void unloadChunk(String world, int chunkX, int chunkZ) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      return;
+    }
+    long chunkKey = FrameGuardPosition.chunkKey(chunkX, chunkZ);
+    if(locks.pendingWrites.containsKey(chunkKey)){
+      locks.residentChunks.put(chunkKey, CHUNK_UNLOADING, 0);
+      return;
+    }
+    dropChunk(world, locks, chunkKey);
+  }
+
+  /**
+   * Drop the locks of the chunk now.
+   * @param String World name
+   * @param WorldLocks Locks
+   * @param long Chunk key
+   */
+  private void dropChunk(String world, WorldLocks locks, long chunkKey) {
+    locks.residentChunks.remove(chunkKey, 0);
+    int slot = locks.chunkHeads.remove(chunkKey, -1);
+    while(slot >= 0){
+      locks.slots.remove(locks.positions[slot], -1);
+      locks.mark(locks.positions[slot], -1);
+      locks.attachedCounts.add(locks.attached[slot], -1);
+      locks.mark(locks.attached[slot], -1);
+      locks.touch(slot, -1);
+      locks.release(slot);
+      slot = locks.next[slot];
+    }
+    if(locks.residentChunks.isEmpty() && locks.slots.isEmpty() && locks.pendingWrites.isEmpty()){
+      worlds.remove(world);
+    }
+  }
+
+  /**
+   * Record a write of the block that is not committed yet.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   */
+  public void beginWrite(String world, int x, int y, int z) {
+    WorldLocks locks = worlds.get(world);
+    if(locks != null){
+      long pos = FrameGuardPosition.pack(x, y, z);
+      locks.pendingWrites.add(FrameGuardPosition.chunkKey(x >> 4, z >> 4), 1);
+      locks.positionWrites.add(pos, 1);
+      locks.writeSequences.put(pos, ++writeSequence, 0);
+    }
+  }
+
+  /**
+   * Get sequence number of the last write recorded by beginWrite.
+   * @return int Sequence number
+   */
+  public int getWriteSequence() {
+    return writeSequence;
+  }
+
+  /**
+   * Check writes of the block recorded after the sequence number that are not committed yet.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param int Sequence number from getWriteSequence
+   * @return boolean true:pending false:none
+   */
+  public boolean hasPendingWritesSince(String world, int x, int y, int z, int sequence) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      return false;
+    }
+    long pos = FrameGuardPosition.pack(x, y, z);
+    // Compared by difference so that the check survives the overflow of the sequence.
+    return locks.writeSequences.containsKey(pos) && locks.writeSequences.get(pos, 0) - sequence > 0;
+  }
+
+  /**
+   * Record that a write of the block was committed.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   */
+  public void endWrite(String world, int x, int y, int z) {
+    WorldLocks locks = worlds.get(world);
+    if(locks == null){
+      return;
+    }
+    long pos = FrameGuardPosition.pack(x, y, z);
+    if(locks.positionWrites.get(pos, 0) > 0 && locks.positionWrites.add(pos, -1) == 0){
+      locks.writeSequences.remove(pos, 0);
+    }
+    long chunkKey = FrameGuardPosition.chunkKey(x >> 4, z >> 4);
+    if(locks.pendingWrites.get(chunkKey, 0) <= 0){
+      return;
+    }
+    if(locks.pendingWrites.add(chunkKey, -1) == 0 && locks.residentChunks.get(chunkKey, 0) == CHUNK_UNLOADING){
+      dropChunk(world, locks, chunkKey);
+    }
+  }
+
+  /**
+   * Get owner.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return int Owner user id or -1.
+   */
+  public int getOwner(String world, int x, int y, int z) {
+    WorldLocks locks = get(world);
+    int slot = slotOf(locks, x, y, z);
+    if(slot < 0){
+      return -1;
+    }
+    return locks.owners[slot];
+  }
+
+  /**
+   * Check lock.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:locked false:no lock
+   */
+  public boolean isLocked(String world, int x, int y, int z) {
+    return slotOf(get(world), x, y, z) >= 0;
+  }
+
+  /**
+   * Check whether a lock is attached to the block.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:attached by lock false:no attached
+   */
+  public boolean isAttached(String world, int x, int y, int z) {
+    WorldLocks locks = get(world);
+    if(locks == null){
+      return false;
+    }
+    return locks.attachedCounts.containsKey(FrameGuardPosition.pack(x, y, z));
+  }
+
+  /**
+   * Check whether the 16x16x16 section of the block may hold a lock or an attachment point.
+   * false means the block is neither locked nor attached, provided the chunk is loaded.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:maybe false:no lock
+   */
+  public boolean hasLockInSection(String world, int x, int y, int z) {
+    WorldLocks locks = get(world);
+    return locks != null && locks.inSection(FrameGuardPosition.pack(x, y, z));
+  }
+
+  /**
+   * Check whether the block is locked or has a lock attached to it.
+   * @param String World name
+   * @param long Packed position
+   * @return boolean true:locked or attached false:neither
+   */
+  public boolean isLockedOrAttached(String world, long pos) {
+    WorldLocks locks = get(world);
+    if(locks == null || !locks.inSection(pos)){
+      return false;
+    }
+    return locks.slots.containsKey(pos) || locks.attachedCounts.containsKey(pos);
+  }
+
+  /**
+   * Check whether the block touches a locked hanging: the hanging's own block,
+   * one of its horizontal sides or its supporting block.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return boolean true:touches false:does not touch
+   */
+  public boolean isAdjacent(String world, int x, int y, int z) {
+    WorldLocks locks = get(world);
+    return locks != null && locks.adjacentCounts.containsKey(FrameGuardPosition.pack(x, y, z));
+  }
+
+  /**
+   * Check whether any of the blocks touches a locked hanging.
+   * @param String World name
+   * @param long[] Packed positions
+   * @param int Number of positions
+   * @return boolean true:touches false:none
+   */
+  public boolean isAnyAdjacent(String world, long[] positions, int count) {
+    WorldLocks locks = get(world);
+    if(locks == null){
+      return false;
+    }
+    for(int i = 0; i < count; i++){
+      if(locks.adjacentCounts.containsKey(positions[i])){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check lock and owner.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param int Owner user id
+   * @return boolean true:locked by owner false:no lock or no owner
+   */
+  public boolean isLockedOwner(String world, int x, int y, int z, int owner) {
+    WorldLocks locks = get(world);
+    int slot = slotOf(locks, x, y, z);
+    if(slot < 0){
+      return false;
+    }
+    return locks.owners[slot] == owner;
+  }
+
+  /**
+   * Get lock record.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return FrameGuardLockRecord Lock record or null.
+   */
+  public FrameGuardLockRecord getRecord(String world, int x, int y, int z) {
+    WorldLocks locks = get(world);
+    int slot = slotOf(locks, x, y, z);
+    if(slot < 0){
+      return null;
+    }
+    long attached = locks.attached[slot];
+    return new FrameGuardLockRecord(
+      x,
+      y,
+      z,
+      locks.owners[slot],
+      locks.faces[slot] < 0 ? null : FACES[locks.faces[slot]],
+      FrameGuardPosition.x(attached),
+      FrameGuardPosition.y(attached),
+      FrameGuardPosition.z(attached),
+      materialNames.get(locks.materials[slot])
+    );
+  }
+
+  /**
+   * Get number of locks.
+   * @return int Number of locks.
+   */
+  public int size() {
+    int size = 0;
+    for(WorldLocks locks : worlds.values()){
+      size += locks.slots.size();
+    }
+    return size;
+  }
+
+  /**
+   * Remove all locks.
+   */
+  public void clear() {
+    worlds.clear();
+  }
+}
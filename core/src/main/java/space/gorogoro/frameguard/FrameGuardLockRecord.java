@@ -0,0 +1,150 @@
+package space.gorogoro.frameguard;
+
+/*
+ * FrameGuardLockRecord
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public final class FrameGuardLockRecord {
+  private final int x;
+  private final int y;
+  private final int z;
+  private final int ownerId;
+  private final String blockFace;
+  private final int attachedX;
+  private final int attachedY;
+  private final int attachedZ;
+  private final String attachedMaterial;
+
+  /**
+   * Constructor of FrameGuardLockRecord.
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param int Owner user id
+   * @param String Block face name
+   * @param int Attached x
+   * @param int Attached y
+   * @param int Attached z
+   * @param String Attached material name
+   */
+  public FrameGuardLockRecord(int x, int y, int z, int ownerId, String blockFace, int attachedX, int attachedY, int attachedZ, String attachedMaterial) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.ownerId = ownerId;
+    this.blockFace = blockFace;
+    this.attachedX = attachedX;
+    this.attachedY = attachedY;
+    this.attachedZ = attachedZ;
+    this.attachedMaterial = attachedMaterial;
+  }
+
+  /**
+   * Get x.
+   * @return int x
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * Get y.
+   * @return int y
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * Get z.
+   * @return int z
+   */
+  public int getZ() {
+    return z;
+  }
+
+  /**
+   * Get owner user id.
+   * @return int Owner user id.
+   */
+  public int getOwnerId() {
+    return ownerId;
+  }
+
+  /**
+   * Get block face.
+   * @return String Block face name.
+   */
+  public String getBlockFace() {
+    return blockFace;
+  }
+
+  /**
+   * Get attached x.
+   * @return int Attached x
+   */
+  public int getAttachedX() {
+    return attachedX;
+  }
+
+  /**
+   * Get attached y.
+   * @return int Attached y
+   */
+  public int getAttachedY() {
+    return attachedY;
+  }
+
+  /**
+   * Get attached z.
+   * @return int Attached z
+   */
+  public int getAttachedZ() {
+    return attachedZ;
+  }
+
+  /**
+   * Get attached material.
+   * @return String Attached material name.
+   */
+  public String getAttachedMaterial() {
+    return attachedMaterial;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if(this == obj){
+      return true;
+    }
+    if(!(obj instanceof FrameGuardLockRecord)){
+      return false;
+    }
+    FrameGuardLockRecord other = (FrameGuardLockRecord) obj;
+    return x == other.x && y == other.y && z == other.z && ownerId == other.ownerId
+      && attachedX == other.attachedX && attachedY == other.attachedY && attachedZ == other.attachedZ
+      && equals(blockFace, other.blockFace) && equals(attachedMaterial, other.attachedMaterial);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = x;
+    hash = hash * 31 + y;
+    hash = hash * 31 + z;
+    hash = hash * 31 + ownerId;
+    hash = hash * 31 + (blockFace == null ? 0 : blockFace.hashCode());
+    return hash;
+  }
+
+  /**
+   * Compare strings that may be null.
+   * @param String a
+   * @param String b
+   * @return boolean true:same
+   */
+  private static boolean equals(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
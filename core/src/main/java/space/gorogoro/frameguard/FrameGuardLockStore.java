@@ -0,0 +1,245 @@
+package space.gorogoro.frameguard;
+
+import java.util.UUID;
+
+/*
+ * FrameGuardLockStore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Storage of lock data. Lookups and iteration are called from the main thread,
+ * mutations are called from the writer thread and made durable by commit.
+ */
+public interface FrameGuardLockStore {
+
+  /**
+   * Receives worlds.
+   */
+  interface WorldVisitor {
+    void visit(int id, String worldName);
+  }
+
+  /**
+   * Receives users.
+   */
+  interface UserVisitor {
+    void visit(int id, UUID uuid, String playerName);
+  }
+
+  /**
+   * Receives locks.
+   */
+  interface LockVisitor {
+    void visit(int worldId, FrameGuardLockRecord record);
+  }
+
+  /**
+   * Receives locks with their world, owner and created time for export.
+   */
+  interface ExportVisitor {
+    void visit(String worldName, UUID uuid, String playerName, FrameGuardLockRecord record, long createdAt) throws FrameGuardStoreException;
+  }
+
+  /**
+   * Receives progress of purge. Locks passed to purged are removed for good when progress is called next.
+   */
+  interface PurgeListener {
+    void purged(int worldId, FrameGuardLockRecord record);
+    void progress(int purgedCount);
+  }
+
+  /**
+   * Open storage. Tables are created when they are missing.
+   * @throws FrameGuardStoreException
+   */
+  void open() throws FrameGuardStoreException;
+
+  /**
+   * Close storage.
+   */
+  void close();
+
+  /**
+   * Iterate all worlds.
+   * @param WorldVisitor Visitor
+   * @throws FrameGuardStoreException
+   */
+  void forEachWorld(WorldVisitor visitor) throws FrameGuardStoreException;
+
+  /**
+   * Iterate all users.
+   * @param UserVisitor Visitor
+   * @throws FrameGuardStoreException
+   */
+  void forEachUser(UserVisitor visitor) throws FrameGuardStoreException;
+
+  /**
+   * Iterate all locks.
+   * @param LockVisitor Visitor
+   * @throws FrameGuardStoreException
+   */
+  void forEachLock(LockVisitor visitor) throws FrameGuardStoreException;
+
+  /**
+   * Iterate locks of chunk.
+   * @param int World id
+   * @param int Chunk x
+   * @param int Chunk z
+   * @param LockVisitor Visitor
+   * @throws FrameGuardStoreException
+   */
+  void forEachLockInChunk(int worldId, int chunkX, int chunkZ, LockVisitor visitor) throws FrameGuardStoreException;
+
+  /**
+   * Stream all locks with their world and owner. Called from a thread of its own, it does not hold
+   * the store for the whole run, so that lookups and writes go on. Rows are read forward only,
+   * memory does not grow with the number of locks.
+   * @param ExportVisitor Visitor, it may stop the export with an exception
+   * @throws FrameGuardStoreException
+   */
+  void exportLocks(ExportVisitor visitor) throws FrameGuardStoreException;
+
+  /**
+   * Get lock.
+   * @param int World id
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return FrameGuardLockRecord Lock record or null.
+   * @throws FrameGuardStoreException
+   */
+  FrameGuardLockRecord getLock(int worldId, int x, int y, int z) throws FrameGuardStoreException;
+
+  /**
+   * Get id of world assigned by a database shared with other servers. The world is stored when it is missing.
+   * Called from the main thread when a world is not known yet.
+   * @param String World name
+   * @return int World id, or -1 when the store is not shared and the caller assigns the id.
+   * @throws FrameGuardStoreException
+   */
+  int getSharedWorldId(String worldName) throws FrameGuardStoreException;
+
+  /**
+   * Get id of user assigned by a database shared with other servers. The user is stored when it is missing.
+   * Called from the main thread when a user is not known yet.
+   * @param UUID UUID
+   * @param String Player name
+   * @return int User id, or -1 when the store is not shared and the caller assigns the id.
+   * @throws FrameGuardStoreException
+   */
+  int getSharedUserId(UUID uuid, String playerName) throws FrameGuardStoreException;
+
+  /**
+   * Store world if it is missing.
+   * @param int World id
+   * @param String World name
+   * @throws FrameGuardStoreException
+   */
+  void putWorld(int id, String worldName) throws FrameGuardStoreException;
+
+  /**
+   * Store user if it is missing.
+   * @param int User id
+   * @param UUID UUID
+   * @param String Player name
+   * @throws FrameGuardStoreException
+   */
+  void putUser(int id, UUID uuid, String playerName) throws FrameGuardStoreException;
+
+  /**
+   * Store lock. A lock at the same position is replaced.
+   * @param int World id
+   * @param FrameGuardLockRecord Lock record
+   * @throws FrameGuardStoreException
+   */
+  void putLock(int worldId, FrameGuardLockRecord record) throws FrameGuardStoreException;
+
+  /**
+   * Store lock with its created time, for import. A lock at the same position is replaced.
+   * @param int World id
+   * @param FrameGuardLockRecord Lock record
+   * @param long Created time (milliseconds)
+   * @throws FrameGuardStoreException
+   */
+  void putLock(int worldId, FrameGuardLockRecord record, long createdAt) throws FrameGuardStoreException;
+
+  /**
+   * Remove lock.
+   * @param int World id
+   * @param int x
+   * @param int y
+   * @param int z
+   * @throws FrameGuardStoreException
+   */
+  void removeLock(int worldId, int x, int y, int z) throws FrameGuardStoreException;
+
+  /**
+   * Remove world if it has no lock.
+   * @param int World id
+   * @throws FrameGuardStoreException
+   */
+  void removeUnusedWorld(int id) throws FrameGuardStoreException;
+
+  /**
+   * Remove user if it has no lock.
+   * @param int User id
+   * @throws FrameGuardStoreException
+   */
+  void removeUnusedUser(int id) throws FrameGuardStoreException;
+
+  /**
+   * Make mutations durable.
+   * @throws FrameGuardStoreException
+   */
+  void commit() throws FrameGuardStoreException;
+
+  /**
+   * Discard mutations that are not committed yet.
+   */
+  void rollback();
+
+  /**
+   * Remove locks older than days, and then users and worlds left without lock.
+   * Locks are removed in batches, each batch is committed on its own.
+   * @param int Days
+   * @param int Maximum number of locks in a batch
+   * @param PurgeListener Listener
+   * @return int Number of removed locks.
+   * @throws FrameGuardStoreException
+   */
+  int purge(int days, int batchSize, PurgeListener listener) throws FrameGuardStoreException;
+
+  /**
+   * Remove the oldest locks created before the time in one transaction, at most limit locks.
+   * Users and worlds left without lock are removed too.
+   * @param long Created time (milliseconds)
+   * @param int Maximum number of locks
+   * @param LockVisitor Receives removed locks
+   * @return int Number of removed locks.
+   * @throws FrameGuardStoreException
+   */
+  int expire(long createdBefore, int limit, LockVisitor removed) throws FrameGuardStoreException;
+
+  /**
+   * Remove the locks selected by the filter with one statement in one transaction.
+   * Users and worlds left without lock are removed too.
+   * @param FrameGuardLockFilter Filter
+   * @return int Number of removed locks.
+   * @throws FrameGuardStoreException
+   */
+  int removeLocks(FrameGuardLockFilter filter) throws FrameGuardStoreException;
+
+  /**
+   * Give the locks selected by the filter to another user with one statement in one transaction.
+   * The user is stored if it is missing, users left without lock are removed.
+   * @param FrameGuardLockFilter Filter
+   * @param int New owner user id
+   * @param UUID New owner UUID
+   * @param String New owner name
+   * @return int Number of transferred locks.
+   * @throws FrameGuardStoreException
+   */
+  int transferLocks(FrameGuardLockFilter filter, int userId, UUID uuid, String playerName) throws FrameGuardStoreException;
+}
@@ -0,0 +1,50 @@
+package space.gorogoro.frameguard;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * FrameGuardLog
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Logger of the core. The plugin hands over its own logger when it is enabled.
+ */
+public final class FrameGuardLog {
+  private static volatile Logger logger = Logger.getLogger("FrameGuard");
+
+  private FrameGuardLog() {
+  }
+
+  /**
+   * Set logger.
+   * @param Logger Logger
+   */
+  public static void setLogger(Logger newLogger) {
+    logger = newLogger;
+  }
+
+  /**
+   * Get logger.
+   * @return Logger Logger
+   */
+  public static Logger getLogger() {
+    return logger;
+  }
+
+  /**
+   * Output stack trace to log file.
+   * @param Exception Exception
+   */
+  public static void logStackTrace(Exception e){
+      StringWriter sw = new StringWriter();
+      PrintWriter pw = new PrintWriter(sw);
+      e.printStackTrace(pw);
+      pw.flush();
+      logger.log(Level.WARNING, sw.toString());
+  }
+}
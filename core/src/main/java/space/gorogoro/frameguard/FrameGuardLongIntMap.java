@@ -0,0 +1,247 @@
+package space.gorogoro.frameguard;
+
+import java.util.Arrays;
+
+/*
+ * FrameGuardLongIntMap
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardLongIntMap {
+  private static final long FREE = Long.MIN_VALUE;
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int shift;
+  private int size;
+  private int threshold;
+
+  /**
+   * Functional interface of forEach.
+   */
+  public interface Consumer {
+    void accept(long key, int value);
+  }
+
+  /**
+   * Constructor of FrameGuardLongIntMap.
+   */
+  public FrameGuardLongIntMap() {
+    this(16);
+  }
+
+  /**
+   * Constructor of FrameGuardLongIntMap.
+   * @param int Expected number of entries
+   */
+  public FrameGuardLongIntMap(int expected) {
+    allocate(Math.max(16, Integer.highestOneBit(Math.max(1, (int)(expected / LOAD_FACTOR)) - 1) << 1));
+  }
+
+  /**
+   * Allocate table.
+   * @param int Capacity (power of two)
+   */
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, FREE);
+    values = new int[capacity];
+    mask = capacity - 1;
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    threshold = (int)(capacity * LOAD_FACTOR);
+  }
+
+  /**
+   * Get slot of key.
+   * @param long key
+   * @return int Home slot.
+   */
+  private int slot(long key) {
+    return (int)((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  /**
+   * Get value.
+   * @param long key
+   * @param int Value returned when key is missing
+   * @return int value
+   */
+  public int get(long key, int missing) {
+    int i = slot(key);
+    long k;
+    while((k = keys[i]) != FREE){
+      if(k == key){
+        return values[i];
+      }
+      i = (i + 1) & mask;
+    }
+    return missing;
+  }
+
+  /**
+   * Check key.
+   * @param long key
+   * @return boolean true:contains false:missing
+   */
+  public boolean containsKey(long key) {
+    int i = slot(key);
+    long k;
+    while((k = keys[i]) != FREE){
+      if(k == key){
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Put value.
+   * @param long key
+   * @param int value
+   * @param int Value returned when key was missing
+   * @return int Previous value.
+   */
+  public int put(long key, int value, int missing) {
+    if(key == FREE){
+      throw new IllegalArgumentException("Reserved key.");
+    }
+    int i = slot(key);
+    long k;
+    while((k = keys[i]) != FREE){
+      if(k == key){
+        int prev = values[i];
+        values[i] = value;
+        return prev;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = value;
+    if(++size > threshold){
+      rehash(keys.length << 1);
+    }
+    return missing;
+  }
+
+  /**
+   * Add delta to value. The entry is removed when the result is 0.
+   * @param long key
+   * @param int delta
+   * @return int New value.
+   */
+  public int add(long key, int delta) {
+    int value = get(key, 0) + delta;
+    if(value == 0){
+      remove(key, 0);
+    }else{
+      put(key, value, 0);
+    }
+    return value;
+  }
+
+  /**
+   * Remove value.
+   * @param long key
+   * @param int Value returned when key is missing
+   * @return int Removed value.
+   */
+  public int remove(long key, int missing) {
+    int i = slot(key);
+    long k;
+    while((k = keys[i]) != FREE){
+      if(k == key){
+        int prev = values[i];
+        shiftKeys(i);
+        size--;
+        return prev;
+      }
+      i = (i + 1) & mask;
+    }
+    return missing;
+  }
+
+  /**
+   * Close the gap left by a removed entry (backward shift deletion).
+   * @param int Removed slot
+   */
+  private void shiftKeys(int gap) {
+    int i = gap;
+    while(true){
+      i = (i + 1) & mask;
+      long k = keys[i];
+      if(k == FREE){
+        break;
+      }
+      int home = slot(k);
+      // Move the entry when its home slot is not between the gap and its current slot
+      if(gap <= i ? (gap >= home || home > i) : (gap >= home && home > i)){
+        keys[gap] = k;
+        values[gap] = values[i];
+        gap = i;
+      }
+    }
+    keys[gap] = FREE;
+  }
+
+  /**
+   * Grow table.
+   * @param int New capacity
+   */
+  private void rehash(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(capacity);
+    for(int j = 0; j < oldKeys.length; j++){
+      long k = oldKeys[j];
+      if(k != FREE){
+        int i = slot(k);
+        while(keys[i] != FREE){
+          i = (i + 1) & mask;
+        }
+        keys[i] = k;
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  /**
+   * Call consumer for each entry.
+   * @param Consumer Consumer
+   */
+  public void forEach(Consumer consumer) {
+    for(int i = 0; i < keys.length; i++){
+      if(keys[i] != FREE){
+        consumer.accept(keys[i], values[i]);
+      }
+    }
+  }
+
+  /**
+   * Get size.
+   * @return int Number of entries.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Check empty.
+   * @return boolean true:empty false:not empty
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove all entries.
+   */
+  public void clear() {
+    Arrays.fill(keys, FREE);
+    size = 0;
+  }
+}
@@ -0,0 +1,481 @@
+package space.gorogoro.frameguard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/*
+ * FrameGuardMemoryStore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Lock store that keeps everything in memory. Nothing is saved, it is for tests and benchmarks.
+ * Mutations are visible at once, so commit and rollback do nothing.
+ */
+public class FrameGuardMemoryStore implements FrameGuardLockStore {
+  private final Map<Integer, String> worlds = new TreeMap<Integer, String>();
+  private final Map<Integer, UUID> userUuids = new TreeMap<Integer, UUID>();
+  private final Map<Integer, String> playerNames = new HashMap<Integer, String>();
+  private final Map<Integer, Map<Long, Map<Long, Entry>>> chunks = new HashMap<Integer, Map<Long, Map<Long, Entry>>>();
+  private final Map<Integer, Integer> worldLockCounts = new HashMap<Integer, Integer>();
+  private final Map<Integer, Integer> userLockCounts = new HashMap<Integer, Integer>();
+  private int lockCount = 0;
+
+  /**
+   * Receives locks with their created time.
+   */
+  protected interface EntryVisitor {
+    void visit(int worldId, FrameGuardLockRecord record, long createdAt);
+  }
+
+  /**
+   * Stored lock.
+   */
+  private static class Entry {
+    private final int worldId;
+    private final FrameGuardLockRecord record;
+    private final long createdAt;
+
+    /**
+     * Constructor of Entry.
+     * @param int World id
+     * @param FrameGuardLockRecord Lock record
+     * @param long Created time (milliseconds)
+     */
+    private Entry(int worldId, FrameGuardLockRecord record, long createdAt) {
+      this.worldId = worldId;
+      this.record = record;
+      this.createdAt = createdAt;
+    }
+  }
+
+  @Override
+  public synchronized void open() throws FrameGuardStoreException {
+  }
+
+  @Override
+  public synchronized void close() {
+  }
+
+  @Override
+  public synchronized void forEachWorld(WorldVisitor visitor) {
+    for(Map.Entry<Integer, String> world : worlds.entrySet()){
+      visitor.visit(world.getKey(), world.getValue());
+    }
+  }
+
+  @Override
+  public synchronized void forEachUser(UserVisitor visitor) {
+    for(Map.Entry<Integer, UUID> user : userUuids.entrySet()){
+      visitor.visit(user.getKey(), user.getValue(), playerNames.get(user.getKey()));
+    }
+  }
+
+  @Override
+  public synchronized void forEachLock(LockVisitor visitor) {
+    for(Map.Entry<Integer, Map<Long, Map<Long, Entry>>> world : chunks.entrySet()){
+      for(Map<Long, Entry> chunk : world.getValue().values()){
+        for(Entry entry : chunk.values()){
+          visitor.visit(world.getKey(), entry.record);
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized void forEachLockInChunk(int worldId, int chunkX, int chunkZ, LockVisitor visitor) {
+    Map<Long, Map<Long, Entry>> worldChunks = chunks.get(worldId);
+    if(worldChunks == null){
+      return;
+    }
+    Map<Long, Entry> chunk = worldChunks.get(FrameGuardPosition.chunkKey(chunkX, chunkZ));
+    if(chunk == null){
+      return;
+    }
+    for(Entry entry : chunk.values()){
+      visitor.visit(worldId, entry.record);
+    }
+  }
+
+  /**
+   * Locks are copied one chunk at a time, the store is not held while the visitor runs.
+   */
+  @Override
+  public void exportLocks(ExportVisitor visitor) throws FrameGuardStoreException {
+    List<Integer> chunkWorldIds = new ArrayList<Integer>();
+    List<Long> chunkKeys = new ArrayList<Long>();
+    synchronized(this){
+      for(Map.Entry<Integer, Map<Long, Map<Long, Entry>>> world : chunks.entrySet()){
+        for(Long chunkKey : world.getValue().keySet()){
+          chunkWorldIds.add(world.getKey());
+          chunkKeys.add(chunkKey);
+        }
+      }
+    }
+    List<FrameGuardLockFile.Row> rows = new ArrayList<FrameGuardLockFile.Row>();
+    for(int i = 0; i < chunkKeys.size(); i++){
+      rows.clear();
+      synchronized(this){
+        int worldId = chunkWorldIds.get(i);
+        Map<Long, Map<Long, Entry>> worldChunks = chunks.get(worldId);
+        Map<Long, Entry> chunk = worldChunks == null ? null : worldChunks.get(chunkKeys.get(i));
+        if(chunk == null){
+          continue;
+        }
+        for(Entry entry : chunk.values()){
+          int userId = entry.record.getOwnerId();
+          rows.add(new FrameGuardLockFile.Row(worlds.get(worldId), userUuids.get(userId), playerNames.get(userId), entry.record, entry.createdAt));
+        }
+      }
+      for(FrameGuardLockFile.Row row : rows){
+        visitor.visit(row.getWorldName(), row.getUuid(), row.getPlayerName(), row.getRecord(), row.getCreatedAt());
+      }
+    }
+  }
+
+  @Override
+  public synchronized FrameGuardLockRecord getLock(int worldId, int x, int y, int z) {
+    Map<Long, Entry> chunk = getChunk(worldId, FrameGuardPosition.pack(x, y, z), false);
+    if(chunk == null){
+      return null;
+    }
+    Entry entry = chunk.get(FrameGuardPosition.pack(x, y, z));
+    return entry == null ? null : entry.record;
+  }
+
+  @Override
+  public int getSharedWorldId(String worldName) {
+    return -1;
+  }
+
+  @Override
+  public int getSharedUserId(UUID uuid, String playerName) {
+    return -1;
+  }
+
+  @Override
+  public synchronized void putWorld(int id, String worldName) {
+    if(!worlds.containsKey(id)){
+      worlds.put(id, worldName);
+    }
+  }
+
+  @Override
+  public synchronized void putUser(int id, UUID uuid, String playerName) {
+    if(!userUuids.containsKey(id)){
+      userUuids.put(id, uuid);
+      playerNames.put(id, playerName);
+    }
+  }
+
+  @Override
+  public synchronized void putLock(int worldId, FrameGuardLockRecord record) {
+    putLock(worldId, record, System.currentTimeMillis());
+  }
+
+  @Override
+  public synchronized void putLock(int worldId, FrameGuardLockRecord record, long createdAt) {
+    long pos = FrameGuardPosition.pack(record.getX(), record.getY(), record.getZ());
+    Entry old = getChunk(worldId, pos, true).put(pos, new Entry(worldId, record, createdAt));
+    if(old != null){
+      count(userLockCounts, old.record.getOwnerId(), -1);
+    }else{
+      count(worldLockCounts, worldId, 1);
+      lockCount++;
+    }
+    count(userLockCounts, record.getOwnerId(), 1);
+  }
+
+  @Override
+  public synchronized void removeLock(int worldId, int x, int y, int z) {
+    long pos = FrameGuardPosition.pack(x, y, z);
+    Map<Long, Entry> chunk = getChunk(worldId, pos, false);
+    if(chunk == null){
+      return;
+    }
+    Entry old = chunk.remove(pos);
+    if(old == null){
+      return;
+    }
+    if(chunk.isEmpty()){
+      chunks.get(worldId).remove(FrameGuardPosition.chunkKeyOf(pos));
+    }
+    count(worldLockCounts, worldId, -1);
+    count(userLockCounts, old.record.getOwnerId(), -1);
+    lockCount--;
+  }
+
+  @Override
+  public synchronized void removeUnusedWorld(int id) {
+    if(!worldLockCounts.containsKey(id)){
+      worlds.remove(id);
+      chunks.remove(id);
+    }
+  }
+
+  @Override
+  public synchronized void removeUnusedUser(int id) {
+    if(!userLockCounts.containsKey(id)){
+      userUuids.remove(id);
+      playerNames.remove(id);
+    }
+  }
+
+  @Override
+  public void commit() throws FrameGuardStoreException {
+  }
+
+  @Override
+  public void rollback() {
+  }
+
+  @Override
+  public int purge(int days, int batchSize, PurgeListener listener) throws FrameGuardStoreException {
+    final long createdBefore = System.currentTimeMillis() - days * 86400000L;
+    final List<Integer> expiredWorldIds = new ArrayList<Integer>();
+    final List<FrameGuardLockRecord> expired = new ArrayList<FrameGuardLockRecord>();
+    forEachEntry(new EntryVisitor() {
+      @Override
+      public void visit(int worldId, FrameGuardLockRecord record, long createdAt) {
+        if(createdAt < createdBefore){
+          expiredWorldIds.add(worldId);
+          expired.add(record);
+        }
+      }
+    });
+    int count = 0;
+    while(count < expired.size()){
+      int end = Math.min(count + Math.max(batchSize, 1), expired.size());
+      synchronized(this){
+        for(int i = count; i < end; i++){
+          FrameGuardLockRecord record = expired.get(i);
+          removeLock(expiredWorldIds.get(i), record.getX(), record.getY(), record.getZ());
+          listener.purged(expiredWorldIds.get(i), record);
+        }
+      }
+      commit();
+      count = end;
+      listener.progress(count);
+    }
+    synchronized(this){
+      for(Integer id : new ArrayList<Integer>(worlds.keySet())){
+        removeUnusedWorld(id);
+      }
+      for(Integer id : new ArrayList<Integer>(userUuids.keySet())){
+        removeUnusedUser(id);
+      }
+    }
+    commit();
+    return count;
+  }
+
+  @Override
+  public int expire(long createdBefore, int limit, LockVisitor removed) throws FrameGuardStoreException {
+    if(limit <= 0){
+      return 0;
+    }
+    List<Entry> oldest;
+    synchronized(this){
+      // Keep the oldest locks, the newest of them on top.
+      PriorityQueue<Entry> candidates = new PriorityQueue<Entry>(limit, new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+          return Long.compare(b.createdAt, a.createdAt);
+        }
+      });
+      for(Map<Long, Map<Long, Entry>> worldChunks : chunks.values()){
+        for(Map<Long, Entry> chunk : worldChunks.values()){
+          for(Entry entry : chunk.values()){
+            if(entry.createdAt >= createdBefore){
+              continue;
+            }
+            if(candidates.size() < limit){
+              candidates.add(entry);
+            }else if(entry.createdAt < candidates.peek().createdAt){
+              candidates.poll();
+              candidates.add(entry);
+            }
+          }
+        }
+      }
+      oldest = new ArrayList<Entry>(candidates);
+      Collections.sort(oldest, Collections.reverseOrder(candidates.comparator()));
+      Set<Integer> worldIds = new LinkedHashSet<Integer>();
+      Set<Integer> userIds = new LinkedHashSet<Integer>();
+      for(Entry entry : oldest){
+        FrameGuardLockRecord record = entry.record;
+        removeLock(entry.worldId, record.getX(), record.getY(), record.getZ());
+        removed.visit(entry.worldId, record);
+        worldIds.add(entry.worldId);
+        userIds.add(record.getOwnerId());
+      }
+      for(Integer id : worldIds){
+        removeUnusedWorld(id);
+      }
+      for(Integer id : userIds){
+        removeUnusedUser(id);
+      }
+    }
+    commit();
+    return oldest.size();
+  }
+
+  @Override
+  public int removeLocks(FrameGuardLockFilter filter) throws FrameGuardStoreException {
+    List<Entry> selected;
+    synchronized(this){
+      selected = select(filter);
+      Set<Integer> worldIds = new LinkedHashSet<Integer>();
+      Set<Integer> userIds = new LinkedHashSet<Integer>();
+      for(Entry entry : selected){
+        FrameGuardLockRecord record = entry.record;
+        removeLock(entry.worldId, record.getX(), record.getY(), record.getZ());
+        worldIds.add(entry.worldId);
+        userIds.add(record.getOwnerId());
+      }
+      for(Integer id : worldIds){
+        removeUnusedWorld(id);
+      }
+      for(Integer id : userIds){
+        removeUnusedUser(id);
+      }
+    }
+    commit();
+    return selected.size();
+  }
+
+  @Override
+  public int transferLocks(FrameGuardLockFilter filter, int userId, UUID uuid, String playerName) throws FrameGuardStoreException {
+    List<Entry> selected;
+    synchronized(this){
+      selected = select(filter);
+      putUser(userId, uuid, playerName);
+      Set<Integer> userIds = new LinkedHashSet<Integer>();
+      for(Entry entry : selected){
+        FrameGuardLockRecord record = entry.record;
+        putLock(entry.worldId, new FrameGuardLockRecord(record.getX(), record.getY(), record.getZ(), userId, record.getBlockFace(),
+          record.getAttachedX(), record.getAttachedY(), record.getAttachedZ(), record.getAttachedMaterial()), entry.createdAt);
+        userIds.add(record.getOwnerId());
+      }
+      userIds.add(userId);
+      for(Integer id : userIds){
+        removeUnusedUser(id);
+      }
+    }
+    commit();
+    return selected.size();
+  }
+
+  /**
+   * Get locks selected by filter. Only the chunks of the world are visited when the filter holds one.
+   * @param FrameGuardLockFilter Filter
+   * @return List<Entry> Locks
+   */
+  private List<Entry> select(FrameGuardLockFilter filter) {
+    List<Entry> selected = new ArrayList<Entry>();
+    for(Map.Entry<Integer, Map<Long, Map<Long, Entry>>> world : chunks.entrySet()){
+      if(filter.hasWorld() && filter.getWorldId() != world.getKey()){
+        continue;
+      }
+      for(Map<Long, Entry> chunk : world.getValue().values()){
+        for(Entry entry : chunk.values()){
+          if(filter.matches(entry.worldId, entry.record)){
+            selected.add(entry);
+          }
+        }
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Iterate all locks with their created time.
+   * @param EntryVisitor Visitor
+   */
+  protected synchronized void forEachEntry(EntryVisitor visitor) {
+    for(Map.Entry<Integer, Map<Long, Map<Long, Entry>>> world : chunks.entrySet()){
+      for(Map<Long, Entry> chunk : world.getValue().values()){
+        for(Entry entry : chunk.values()){
+          visitor.visit(world.getKey(), entry.record, entry.createdAt);
+        }
+      }
+    }
+  }
+
+  /**
+   * Check world.
+   * @param int World id
+   * @return boolean true:stored false:missing
+   */
+  protected synchronized boolean hasWorld(int id) {
+    return worlds.containsKey(id);
+  }
+
+  /**
+   * Check user.
+   * @param int User id
+   * @return boolean true:stored false:missing
+   */
+  protected synchronized boolean hasUser(int id) {
+    return userUuids.containsKey(id);
+  }
+
+  /**
+   * Get number of stored worlds, users and locks.
+   * @return int Number of records.
+   */
+  protected synchronized int getRecordCount() {
+    return worlds.size() + userUuids.size() + lockCount;
+  }
+
+  /**
+   * Get locks of chunk.
+   * @param int World id
+   * @param long Packed position in the chunk
+   * @param boolean true:create when missing
+   * @return Map<Long, Entry> Locks by packed position, or null.
+   */
+  private Map<Long, Entry> getChunk(int worldId, long pos, boolean create) {
+    Map<Long, Map<Long, Entry>> worldChunks = chunks.get(worldId);
+    if(worldChunks == null){
+      if(!create){
+        return null;
+      }
+      worldChunks = new HashMap<Long, Map<Long, Entry>>();
+      chunks.put(worldId, worldChunks);
+    }
+    long chunkKey = FrameGuardPosition.chunkKeyOf(pos);
+    Map<Long, Entry> chunk = worldChunks.get(chunkKey);
+    if(chunk == null && create){
+      chunk = new HashMap<Long, Entry>();
+      worldChunks.put(chunkKey, chunk);
+    }
+    return chunk;
+  }
+
+  /**
+   * Add to counter. The counter is removed when it reaches 0.
+   * @param Map<Integer, Integer> Counters
+   * @param int Id
+   * @param int Delta
+   */
+  private static void count(Map<Integer, Integer> counts, int id, int delta) {
+    Integer count = counts.get(id);
+    int value = (count == null ? 0 : count) + delta;
+    if(value <= 0){
+      counts.remove(id);
+    }else{
+      counts.put(id, value);
+    }
+  }
+}
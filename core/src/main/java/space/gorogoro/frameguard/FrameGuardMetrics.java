@@ -0,0 +1,481 @@
+package space.gorogoro.frameguard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * FrameGuardMetrics
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Counters and latency histograms of event handlers and lock queries over a sliding window.
+ * The window is made of WINDOW_SLOTS slots of SLOT_MILLIS each. Recording touches only the slot
+ * of the current time with LongAdder and atomic array updates; a slot is cleared when it is reused.
+ * Histograms have four buckets per power of two, so percentiles are within 25%.
+ */
+public class FrameGuardMetrics {
+  public static final int WINDOW_SLOTS = 6;
+  public static final long SLOT_MILLIS = 10000L;
+  private static final int BUCKETS = 256;
+
+  private final boolean enabled;
+  private final long startedAt = System.currentTimeMillis();
+  private final Timer[] handlers = new Timer[Handler.values().length];
+  private final Timer[] queries = new Timer[Query.values().length];
+  private final Timer chunkHits = new Timer(false);
+  private final Timer chunkMisses = new Timer(false);
+  private final Timer writeQueueDepth = new Timer(false);
+
+  /**
+   * Event handlers of FrameGuardListener.
+   */
+  public enum Handler {
+    BLOCK_BREAK("onBlockBreak"),
+    BLOCK_BURN("onBlockBurn"),
+    BLOCK_EXPLODE("onBlockExplode"),
+    ENTITY_EXPLODE("onEntityExplode"),
+    BLOCK_FADE("onBlockFade"),
+    BLOCK_PISTON_EXTEND("onBlockPistonExtend"),
+    BLOCK_PISTON_RETRACT("onBlockPistonRetract"),
+    BLOCK_PLACE("onBlockPlace"),
+    ENTITY_DAMAGE_BY_ENTITY("onEntityDamageByEntity"),
+    HANGING_BREAK("onHangingBreak"),
+    HANGING_BREAK_BY_ENTITY("onHangingBreakByEntity"),
+    HANGING_PLACE("onHangingPlace"),
+    HANGING_PLACED("onHangingPlaced"),
+    HANGING_BROKEN("onHangingBroken"),
+    PLAYER_INTERACT_ENTITY("onPlayerInteractEntity"),
+    PLAYER_QUIT("onPlayerQuit"),
+    CHUNK_LOAD("onChunkLoad"),
+    CHUNK_UNLOAD("onChunkUnload"),
+    ENTITIES_LOAD("onEntitiesLoad"),
+    ENTITIES_UNLOAD("onEntitiesUnload");
+
+    private final String label;
+
+    private Handler(String label) {
+      this.label = label;
+    }
+
+    /**
+     * Get name of handler method.
+     * @return String Name
+     */
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /**
+   * Lock queries of FrameGuardDatabase.
+   */
+  public enum Query {
+    IS_LOCKED("isLocked"),
+    IS_ATTACHED("isAttached"),
+    IS_LOCKED_OWNER("isLockedOwner"),
+    GET_LOCK_RECORD("getLockRecord"),
+    HAS_LOCK_IN_SECTION("hasLockInSection"),
+    IS_ADJACENT_TO_LOCK("isAdjacentToLock"),
+    IS_ANY_ADJACENT_TO_LOCK("isAnyAdjacentToLock"),
+    REMOVE_PROTECTED_BLOCKS("removeProtectedBlocks"),
+    LOAD_CHUNK("loadChunk");
+
+    private final String label;
+
+    private Query(String label) {
+      this.label = label;
+    }
+
+    /**
+     * Get name of query method.
+     * @return String Name
+     */
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /**
+   * Values recorded during one slot of the window.
+   */
+  private static final class Slot {
+    private volatile long epoch = -1;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLongArray buckets;
+
+    /**
+     * Constructor of Slot.
+     * @param boolean true:keep histogram
+     */
+    private Slot(boolean histogram) {
+      this.buckets = histogram ? new AtomicLongArray(BUCKETS) : null;
+    }
+
+    /**
+     * Clear values.
+     */
+    private void reset() {
+      count.reset();
+      total.reset();
+      max.set(0);
+      if(buckets != null){
+        for(int i = 0; i < BUCKETS; i++){
+          buckets.set(i, 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Counter with an optional histogram over the window.
+   */
+  private static final class Timer {
+    private final Slot[] slots = new Slot[WINDOW_SLOTS];
+
+    /**
+     * Constructor of Timer.
+     * @param boolean true:keep histogram
+     */
+    private Timer(boolean histogram) {
+      for(int i = 0; i < WINDOW_SLOTS; i++){
+        slots[i] = new Slot(histogram);
+      }
+    }
+
+    /**
+     * Record value.
+     * @param long Epoch (slot number since 1970)
+     * @param long Value
+     */
+    private void record(long epoch, long value) {
+      Slot slot = slots[(int)(epoch % WINDOW_SLOTS)];
+      if(slot.epoch != epoch){
+        synchronized(slot){
+          if(slot.epoch != epoch){
+            slot.reset();
+            slot.epoch = epoch;
+          }
+        }
+      }
+      slot.count.increment();
+      slot.total.add(value);
+      long max;
+      while(value > (max = slot.max.get()) && !slot.max.compareAndSet(max, value)){
+        // Retry.
+      }
+      if(slot.buckets != null){
+        slot.buckets.incrementAndGet(bucketOf(value));
+      }
+    }
+
+    /**
+     * Sum the slots of the window.
+     * @param String Label
+     * @param long Current epoch
+     * @return Summary Summary
+     */
+    private Summary summarize(String label, long epoch) {
+      long count = 0;
+      long total = 0;
+      long max = 0;
+      long[] merged = slots[0].buckets == null ? null : new long[BUCKETS];
+      for(Slot slot : slots){
+        long slotEpoch = slot.epoch;
+        if(slotEpoch < 0 || slotEpoch <= epoch - WINDOW_SLOTS){
+          continue;
+        }
+        count += slot.count.sum();
+        total += slot.total.sum();
+        max = Math.max(max, slot.max.get());
+        if(merged != null){
+          for(int i = 0; i < BUCKETS; i++){
+            merged[i] += slot.buckets.get(i);
+          }
+        }
+      }
+      return new Summary(label, count, total, max, percentile(merged, count, 0.50), percentile(merged, count, 0.99));
+    }
+  }
+
+  /**
+   * Values of one handler or query over the window.
+   */
+  public static final class Summary {
+    private final String label;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+
+    /**
+     * Constructor of Summary.
+     * @param String Label
+     * @param long Number of calls
+     * @param long Total time (nanoseconds)
+     * @param long Longest time (nanoseconds)
+     * @param long Median (nanoseconds)
+     * @param long 99th percentile (nanoseconds)
+     */
+    private Summary(String label, long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos) {
+      this.label = label;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.maxNanos = maxNanos;
+      this.p50Nanos = p50Nanos;
+      this.p99Nanos = p99Nanos;
+    }
+
+    /**
+     * Get name of handler or query.
+     * @return String Name of handler or query
+     */
+    public String getLabel() {
+      return label;
+    }
+
+    /**
+     * Get number of calls.
+     * @return long Number of calls
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Get total time.
+     * @return long Total time (nanoseconds)
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Get longest time.
+     * @return long Longest time (nanoseconds), or largest value
+     */
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    /**
+     * Get median.
+     * @return long Median (nanoseconds)
+     */
+    public long getP50Nanos() {
+      return p50Nanos;
+    }
+
+    /**
+     * Get 99th percentile.
+     * @return long 99th percentile (nanoseconds)
+     */
+    public long getP99Nanos() {
+      return p99Nanos;
+    }
+  }
+
+  /**
+   * Constructor of FrameGuardMetrics.
+   * @param boolean false:record nothing
+   */
+  public FrameGuardMetrics(boolean enabled) {
+    this.enabled = enabled;
+    for(int i = 0; i < handlers.length; i++){
+      handlers[i] = new Timer(true);
+    }
+    for(int i = 0; i < queries.length; i++){
+      queries[i] = new Timer(true);
+    }
+  }
+
+  /**
+   * Check whether metrics are recorded.
+   * @return boolean true:recorded false:disabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Record call of event handler.
+   * @param Handler Handler
+   * @param long System.nanoTime at the start of the call
+   */
+  public void record(Handler handler, long startedNanos) {
+    if(enabled){
+      handlers[handler.ordinal()].record(currentEpoch(), System.nanoTime() - startedNanos);
+    }
+  }
+
+  /**
+   * Record lock query.
+   * @param Query Query
+   * @param long System.nanoTime at the start of the query
+   */
+  public void record(Query query, long startedNanos) {
+    if(enabled){
+      queries[query.ordinal()].record(currentEpoch(), System.nanoTime() - startedNanos);
+    }
+  }
+
+  /**
+   * Record lookup of the loaded chunks of the lock index.
+   * @param boolean true:chunk was loaded false:chunk was read from storage
+   */
+  public void recordChunk(boolean hit) {
+    if(enabled){
+      (hit ? chunkHits : chunkMisses).record(currentEpoch(), 0);
+    }
+  }
+
+  /**
+   * Record number of queued writes.
+   * @param int Number of queued writes
+   */
+  public void recordWriteQueueDepth(int depth) {
+    if(enabled){
+      writeQueueDepth.record(currentEpoch(), depth);
+    }
+  }
+
+  /**
+   * Get handlers called in the window, the slowest (by 99th percentile) first.
+   * @return List<Summary> Summaries
+   */
+  public List<Summary> getHandlerSummaries() {
+    List<Summary> summaries = new ArrayList<Summary>();
+    long epoch = currentEpoch();
+    for(Handler handler : Handler.values()){
+      addIfCalled(summaries, handlers[handler.ordinal()].summarize(handler.getLabel(), epoch));
+    }
+    return summaries;
+  }
+
+  /**
+   * Get queries made in the window, the slowest (by 99th percentile) first.
+   * @return List<Summary> Summaries
+   */
+  public List<Summary> getQuerySummaries() {
+    List<Summary> summaries = new ArrayList<Summary>();
+    long epoch = currentEpoch();
+    for(Query query : Query.values()){
+      addIfCalled(summaries, queries[query.ordinal()].summarize(query.getLabel(), epoch));
+    }
+    return summaries;
+  }
+
+  /**
+   * Get number of chunk lookups answered by the lock index in the window.
+   * @return long Number of hits
+   */
+  public long getChunkHits() {
+    return chunkHits.summarize("hits", currentEpoch()).getCount();
+  }
+
+  /**
+   * Get number of chunks read from storage in the window.
+   * @return long Number of misses
+   */
+  public long getChunkMisses() {
+    return chunkMisses.summarize("misses", currentEpoch()).getCount();
+  }
+
+  /**
+   * Get largest number of queued writes seen in the window.
+   * @return long Number of queued writes
+   */
+  public long getMaxWriteQueueDepth() {
+    return writeQueueDepth.summarize("depth", currentEpoch()).getMaxNanos();
+  }
+
+  /**
+   * Get length of the window so far. It is shorter than the full window right after start.
+   * @return double Seconds
+   */
+  public double getWindowSeconds() {
+    long now = System.currentTimeMillis();
+    long window = (WINDOW_SLOTS - 1) * SLOT_MILLIS + now % SLOT_MILLIS;
+    return Math.max(Math.min(window, now - startedAt), 1000) / 1000.0;
+  }
+
+  /**
+   * Insert summary ordered by 99th percentile, skipping the ones never called.
+   * @param List<Summary> Summaries
+   * @param Summary Summary
+   */
+  private static void addIfCalled(List<Summary> summaries, Summary summary) {
+    if(summary.getCount() == 0){
+      return;
+    }
+    int i = 0;
+    while(i < summaries.size() && summaries.get(i).getP99Nanos() >= summary.getP99Nanos()){
+      i++;
+    }
+    summaries.add(i, summary);
+  }
+
+  /**
+   * Get current epoch.
+   * @return long Slot number since 1970
+   */
+  private static long currentEpoch() {
+    return System.currentTimeMillis() / SLOT_MILLIS;
+  }
+
+  /**
+   * Get bucket of value. Values below 4 have their own bucket, larger values
+   * share a bucket with the values of the same power of two and the same next two bits.
+   * @param long Value
+   * @return int Bucket
+   */
+  private static int bucketOf(long value) {
+    if(value < 4){
+      return value < 0 ? 0 : (int)value;
+    }
+    int log = 63 - Long.numberOfLeadingZeros(value);
+    return (log - 1) * 4 + (int)((value >> (log - 2)) & 3);
+  }
+
+  /**
+   * Get lowest value of bucket.
+   * @param int Bucket
+   * @return long Value
+   */
+  private static long lowestOf(int bucket) {
+    if(bucket < 4){
+      return bucket;
+    }
+    int log = bucket / 4 + 1;
+    return (4L + (bucket & 3)) << (log - 2);
+  }
+
+  /**
+   * Get percentile from histogram.
+   * @param long[] Histogram or null
+   * @param long Number of values
+   * @param double Percentile (0.0 - 1.0)
+   * @return long Value, the middle of its bucket
+   */
+  private static long percentile(long[] histogram, long count, double percentile) {
+    if(histogram == null || count == 0){
+      return 0;
+    }
+    long rank = (long)Math.ceil(count * percentile);
+    long seen = 0;
+    for(int i = 0; i < BUCKETS; i++){
+      seen += histogram[i];
+      if(seen >= rank){
+        return i + 1 < BUCKETS ? (lowestOf(i) + lowestOf(i + 1)) / 2 : lowestOf(i);
+      }
+    }
+    return lowestOf(BUCKETS - 1);
+  }
+}
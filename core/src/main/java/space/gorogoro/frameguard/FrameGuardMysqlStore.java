@@ -0,0 +1,178 @@
+package space.gorogoro.frameguard;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/*
+ * FrameGuardMysqlStore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Lock store on a shared MySQL or MariaDB server. H2 in MySQL mode can stand in for tests,
+ * e.g. jdbc:h2:mem:frameguard;MODE=MySQL;NON_KEYWORDS=USER
+ *
+ * Several servers may use the same database. Ids of name codes, worlds and users are assigned
+ * by AUTO_INCREMENT and looked up by their unique key, and users and worlds are never removed,
+ * so an id means the same row on every server.
+ */
+public class FrameGuardMysqlStore extends FrameGuardJdbcStore {
+  private static final String[] DRIVERS = {"org.mariadb.jdbc.Driver", "com.mysql.cj.jdbc.Driver", "com.mysql.jdbc.Driver"};
+
+  private final String url;
+  private final String user;
+  private final String password;
+  private final int poolSize;
+
+  /**
+   * Constructor of FrameGuardMysqlStore.
+   * @param String JDBC url
+   * @param String User
+   * @param String Password
+   * @param int Maximum number of connections
+   * @param int Query timeout (seconds)
+   */
+  public FrameGuardMysqlStore(String url, String user, String password, int poolSize, int queryTimeout) {
+    super(queryTimeout);
+    this.url = url;
+    this.user = user;
+    this.password = password;
+    this.poolSize = poolSize;
+  }
+
+  @Override
+  protected Connection connect() throws SQLException {
+    // Select JDBC driver. Whichever the server ships is used.
+    for(String driver : DRIVERS){
+      try{
+        Class.forName(driver);
+      } catch (ClassNotFoundException e){
+        // Not available.
+      }
+    }
+    return DriverManager.getConnection(url, user, password);
+  }
+
+  @Override
+  protected int getPoolSize() {
+    return poolSize;
+  }
+
+  @Override
+  protected String[] getSchema() {
+    return new String[] {
+      "CREATE TABLE IF NOT EXISTS user ("
+        + " id INT NOT NULL AUTO_INCREMENT PRIMARY KEY"
+        + ",uuid CHAR(36) NOT NULL"
+        + ",player_name VARCHAR(255) NOT NULL"
+        + ",created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        + ",UNIQUE INDEX uuid_index (uuid)"
+        + ",INDEX player_name_index (player_name)"
+        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4",
+      "CREATE TABLE IF NOT EXISTS world ("
+        + " id INT NOT NULL AUTO_INCREMENT PRIMARY KEY"
+        + ",world_name VARCHAR(255) NOT NULL"
+        + ",created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        + ",UNIQUE INDEX world_name_index (world_name)"
+        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4",
+      "CREATE TABLE IF NOT EXISTS name_code ("
+        + " id INT NOT NULL AUTO_INCREMENT PRIMARY KEY"
+        + ",name VARCHAR(64) NOT NULL"
+        + ",UNIQUE INDEX name_index (name)"
+        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
+    };
+  }
+
+  @Override
+  protected String[] getLockSchema(String table) {
+    // InnoDB stores the rows in the primary key.
+    return new String[] {
+      "CREATE TABLE IF NOT EXISTS " + table + " ("
+        + " world_id INT NOT NULL"
+        + ",pos BIGINT NOT NULL"
+        + ",user_id INT NOT NULL"
+        + ",face SMALLINT NOT NULL"
+        + ",attached_pos BIGINT NOT NULL"
+        + ",material SMALLINT NOT NULL"
+        + ",created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP"
+        + ",PRIMARY KEY (world_id, pos)"
+        + ",INDEX lockdata_user_id_index (user_id)"
+        + ",INDEX lockdata_created_at_index (created_at)"
+        + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"
+    };
+  }
+
+  @Override
+  protected boolean isShared() {
+    return true;
+  }
+
+  @Override
+  protected int getSharedCode(String name) throws SQLException {
+    return getSharedId("SELECT id FROM name_code WHERE name = ?", "INSERT IGNORE INTO name_code (name) VALUES (?)",
+      new String[] {name});
+  }
+
+  @Override
+  public int getSharedWorldId(String worldName) throws FrameGuardStoreException {
+    try{
+      return getSharedId("SELECT id FROM world WHERE world_name = ?", "INSERT IGNORE INTO world (world_name) VALUES (?)",
+        new String[] {worldName});
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  public int getSharedUserId(UUID uuid, String playerName) throws FrameGuardStoreException {
+    try{
+      return getSharedId("SELECT id FROM user WHERE uuid = ?", "INSERT IGNORE INTO user (uuid, player_name) VALUES (?, ?)",
+        new String[] {uuid.toString(), playerName});
+    } catch (SQLException e){
+      throw new FrameGuardStoreException(e);
+    }
+  }
+
+  @Override
+  protected String getPutCodeSql() {
+    return "INSERT IGNORE INTO name_code (id, name) VALUES (?, ?)";
+  }
+
+  @Override
+  protected String getPutWorldSql() {
+    return "INSERT IGNORE INTO world (id, world_name) VALUES (?, ?)";
+  }
+
+  @Override
+  protected String getPutUserSql() {
+    return "INSERT IGNORE INTO user (id, uuid, player_name) VALUES (?, ?, ?)";
+  }
+
+  @Override
+  protected String getPutLockSql() {
+    return "INSERT INTO lockdata (world_id, user_id, pos, face, attached_pos, material)"
+      + " VALUES (?, ?, ?, ?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE user_id = VALUES(user_id), face = VALUES(face)"
+      + ", attached_pos = VALUES(attached_pos), material = VALUES(material), created_at = CURRENT_TIMESTAMP";
+  }
+
+  @Override
+  protected String getPutLockWithTimeSql() {
+    return "INSERT INTO lockdata (world_id, user_id, pos, face, attached_pos, material, created_at)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?)"
+      + " ON DUPLICATE KEY UPDATE user_id = VALUES(user_id), face = VALUES(face)"
+      + ", attached_pos = VALUES(attached_pos), material = VALUES(material), created_at = VALUES(created_at)";
+  }
+
+  @Override
+  protected int getExportFetchSize(Connection con) throws SQLException {
+    // MySQL Connector/J streams rows one by one only with this fetch size, other drivers reject it.
+    if(con.getMetaData().getDriverName().startsWith("MySQL Connector")){
+      return Integer.MIN_VALUE;
+    }
+    return super.getExportFetchSize(con);
+  }
+}
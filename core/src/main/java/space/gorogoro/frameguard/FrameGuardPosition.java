@@ -0,0 +1,122 @@
+package space.gorogoro.frameguard;
+
+/*
+ * FrameGuardPosition
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public final class FrameGuardPosition {
+
+  /**
+   * Value that never appears as a packed position.
+   */
+  public static final long NONE = Long.MIN_VALUE;
+
+  /**
+   * Layout (high to low): chunk x 22bit, chunk z 22bit, y 12bit, x in chunk 4bit, z in chunk 4bit.
+   * All blocks of one chunk share the upper 44 bits, so they form one contiguous range.
+   */
+  private static final int CHUNK_SHIFT = 20;
+
+  private FrameGuardPosition() {
+  }
+
+  /**
+   * Pack block coordinates.
+   * @param int x
+   * @param int y
+   * @param int z
+   * @return long Packed position.
+   */
+  public static long pack(int x, int y, int z) {
+    return (((long)(x >> 4) & 0x3FFFFFL) << 42)
+      | (((long)(z >> 4) & 0x3FFFFFL) << 20)
+      | (((long)y & 0xFFFL) << 8)
+      | ((long)(x & 15) << 4)
+      | (long)(z & 15);
+  }
+
+  /**
+   * Get block x of packed position.
+   * @param long Packed position
+   * @return int x
+   */
+  public static int x(long pos) {
+    return ((int)(pos >> 42) << 4) | (int)((pos >> 4) & 15);
+  }
+
+  /**
+   * Get block y of packed position.
+   * @param long Packed position
+   * @return int y
+   */
+  public static int y(long pos) {
+    return (int)((pos << 44) >> 52);
+  }
+
+  /**
+   * Get block z of packed position.
+   * @param long Packed position
+   * @return int z
+   */
+  public static int z(long pos) {
+    return ((int)((pos << 22) >> 42) << 4) | (int)(pos & 15);
+  }
+
+  /**
+   * Pack chunk coordinates.
+   * @param int Chunk x
+   * @param int Chunk z
+   * @return long Chunk key.
+   */
+  public static long chunkKey(int chunkX, int chunkZ) {
+    return ((long)chunkX << 22) | ((long)chunkZ & 0x3FFFFFL);
+  }
+
+  /**
+   * Get the lowest packed position of chunk.
+   * @param long Chunk key
+   * @return long Packed position.
+   */
+  public static long firstOfChunk(long chunkKey) {
+    return chunkKey << CHUNK_SHIFT;
+  }
+
+  /**
+   * Get the highest packed position of chunk.
+   * @param long Chunk key
+   * @return long Packed position.
+   */
+  public static long lastOfChunk(long chunkKey) {
+    return (chunkKey << CHUNK_SHIFT) | ((1L << CHUNK_SHIFT) - 1);
+  }
+
+  /**
+   * Get the lowest packed position of a column of chunks. Packed positions are ordered by chunk x first.
+   * @param int Chunk x
+   * @return long Packed position.
+   */
+  public static long firstOfChunkX(int chunkX) {
+    return (long)chunkX << 42;
+  }
+
+  /**
+   * Get the highest packed position of a column of chunks.
+   * @param int Chunk x
+   * @return long Packed position.
+   */
+  public static long lastOfChunkX(int chunkX) {
+    return ((long)chunkX << 42) | ((1L << 42) - 1);
+  }
+
+  /**
+   * Get chunk key of packed position.
+   * @param long Packed position
+   * @return long Chunk key.
+   */
+  public static long chunkKeyOf(long pos) {
+    return pos >> CHUNK_SHIFT;
+  }
+}
@@ -0,0 +1,118 @@
+package space.gorogoro.frameguard;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * FrameGuardPunchSessions
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Actions waiting for the player to punch the target after fglock, fgunlock or fginfo.
+ * One session per player. A session expires after setting-punch-timeout seconds,
+ * checked when it is looked up, and ends when the player quits.
+ */
+public class FrameGuardPunchSessions {
+  private final ConcurrentHashMap<UUID, Session> sessions = new ConcurrentHashMap<UUID, Session>();
+  private final long timeoutMillis;
+
+  /**
+   * Action done by punch.
+   */
+  public enum Action {
+    LOCK,
+    UNLOCK,
+    INFO
+  }
+
+  /**
+   * Action and its deadline.
+   */
+  private static final class Session {
+    private final Action action;
+    private final long expiresAt;
+
+    /**
+     * Constructor of Session.
+     * @param Action Action
+     * @param long Deadline (System.currentTimeMillis), Long.MAX_VALUE for no deadline
+     */
+    private Session(Action action, long expiresAt) {
+      this.action = action;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Constructor of FrameGuardPunchSessions.
+   * @param int Timeout (seconds), 0 or less for no timeout
+   */
+  public FrameGuardPunchSessions(int timeoutSeconds) {
+    this.timeoutMillis = timeoutSeconds > 0 ? timeoutSeconds * 1000L : 0;
+  }
+
+  /**
+   * Start session. A previous session of the player is replaced.
+   * @param UUID Player
+   * @param Action Action
+   */
+  public void start(UUID player, Action action) {
+    long expiresAt = timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : Long.MAX_VALUE;
+    sessions.put(player, new Session(action, expiresAt));
+  }
+
+  /**
+   * Determine whether punch is being processed.
+   * @param UUID Player
+   * @return boolean true:That's right false:That's not it
+   */
+  public boolean isInPunch(UUID player) {
+    Session session = sessions.get(player);
+    if(session == null){
+      return false;
+    }
+    if(session.expiresAt < System.currentTimeMillis()){
+      sessions.remove(player, session);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * End session and get its action.
+   * @param UUID Player
+   * @return Action Action or null when there is no session.
+   */
+  public Action finish(UUID player) {
+    Session session = sessions.remove(player);
+    if(session == null || session.expiresAt < System.currentTimeMillis()){
+      return null;
+    }
+    return session.action;
+  }
+
+  /**
+   * End session without action.
+   * @param UUID Player
+   */
+  public void cancel(UUID player) {
+    sessions.remove(player);
+  }
+
+  /**
+   * End all sessions.
+   */
+  public void clear() {
+    sessions.clear();
+  }
+
+  /**
+   * Get number of sessions.
+   * @return int Number of sessions.
+   */
+  public int size() {
+    return sessions.size();
+  }
+}
@@ -0,0 +1,160 @@
+package space.gorogoro.frameguard;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/*
+ * FrameGuardSchemaMigrator
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Upgrades the schema of a SQL store step by step. The version is kept in table schema_version
+ * and is written when a step is done, so an upgrade that was stopped starts again at the same step.
+ */
+public class FrameGuardSchemaMigrator {
+  private static final long PROGRESS_INTERVAL_MILLIS = 5000L;
+
+  private final List<Migration> migrations = new ArrayList<Migration>();
+
+  /**
+   * One step of the upgrade.
+   */
+  public interface Migration {
+    /**
+     * Get version of the schema after this step.
+     * @return int Version
+     */
+    int getVersion();
+
+    /**
+     * Upgrade schema. The connection is in manual commit mode, the step may commit as often as it likes.
+     * @param Connection Connection
+     * @param Progress Progress of the step
+     * @throws SQLException
+     */
+    void migrate(Connection con, Progress progress) throws SQLException;
+  }
+
+  /**
+   * Progress report of a step.
+   */
+  public interface Progress {
+    /**
+     * Report rows done.
+     * @param long Rows done
+     * @param long Rows in total
+     */
+    void report(long done, long total);
+  }
+
+  /**
+   * Add step. Steps are added in order of version.
+   * @param Migration Step
+   * @return FrameGuardSchemaMigrator This migrator
+   */
+  public FrameGuardSchemaMigrator add(Migration migration) {
+    migrations.add(migration);
+    return this;
+  }
+
+  /**
+   * Get version of the newest schema.
+   * @return int Version
+   */
+  public int getLatestVersion() {
+    return migrations.isEmpty() ? 1 : migrations.get(migrations.size() - 1).getVersion();
+  }
+
+  /**
+   * Create table schema_version if it is missing.
+   * @param Connection Connection
+   * @throws SQLException
+   */
+  public static void createVersionTable(Connection con) throws SQLException {
+    Statement stmt = con.createStatement();
+    try{
+      stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)");
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * Get version of the schema.
+   * @param Connection Connection
+   * @return int Version or -1 when it has not been written yet.
+   * @throws SQLException
+   */
+  public static int getVersion(Connection con) throws SQLException {
+    Statement stmt = con.createStatement();
+    try{
+      ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version");
+      int version = rs.next() ? rs.getInt(1) : 0;
+      return rs.wasNull() || version == 0 ? -1 : version;
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * Write version of the schema. It is committed with the changes of the connection.
+   * @param Connection Connection
+   * @param int Version
+   * @throws SQLException
+   */
+  public static void setVersion(Connection con, int version) throws SQLException {
+    Statement stmt = con.createStatement();
+    try{
+      stmt.executeUpdate("DELETE FROM schema_version");
+      stmt.executeUpdate("INSERT INTO schema_version (version) VALUES (" + version + ")");
+    } finally {
+      stmt.close();
+    }
+  }
+
+  /**
+   * Run the steps newer than the version of the schema, each step is committed with its version.
+   * @param Connection Connection in manual commit mode
+   * @param int Current version
+   * @return int Number of steps run
+   * @throws SQLException
+   */
+  public int migrate(Connection con, int version) throws SQLException {
+    final Logger logger = FrameGuardLog.getLogger();
+    int count = 0;
+    for(final Migration migration : migrations){
+      if(migration.getVersion() <= version){
+        continue;
+      }
+      logger.info("Upgrading database schema to version " + migration.getVersion() + ". Do not stop the server.");
+      final long started = System.currentTimeMillis();
+      migration.migrate(con, new Progress() {
+        private long reportedAt = started;
+
+        @Override
+        public void report(long done, long total) {
+          long now = System.currentTimeMillis();
+          if(done < total && now - reportedAt < PROGRESS_INTERVAL_MILLIS){
+            return;
+          }
+          reportedAt = now;
+          logger.info("Upgrading database schema to version " + migration.getVersion() + ": "
+            + done + " / " + total + " (" + (total == 0 ? 100 : done * 100 / total) + "%)");
+        }
+      });
+      setVersion(con, migration.getVersion());
+      con.commit();
+      version = migration.getVersion();
+      count++;
+      logger.info("Upgraded database schema to version " + version + " in " + (System.currentTimeMillis() - started) + " ms.");
+    }
+    return count;
+  }
+}
@@ -0,0 +1,145 @@
+package space.gorogoro.frameguard;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/*
+ * FrameGuardSqliteStore
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardSqliteStore extends FrameGuardJdbcStore {
+  private final File file;
+  private final int queryTimeout;
+
+  /**
+   * Constructor of FrameGuardSqliteStore.
+   * @param File Database file
+   * @param int Query timeout (seconds)
+   */
+  public FrameGuardSqliteStore(File file, int queryTimeout) {
+    super(queryTimeout);
+    this.file = file;
+    this.queryTimeout = queryTimeout;
+  }
+
+  @Override
+  protected Connection connect() throws SQLException {
+    try{
+      // Select JDBC driver.
+      Class.forName("org.sqlite.JDBC");
+    } catch (ClassNotFoundException e){
+      throw new SQLException(e);
+    }
+    Connection con = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+    Statement stmt = con.createStatement();
+    try{
+      // The readers and the writer thread wait for each other instead of failing.
+      stmt.execute("PRAGMA busy_timeout = " + (queryTimeout * 1000));
+    } finally {
+      stmt.close();
+    }
+    return con;
+  }
+
+  @Override
+  protected String[] getSchema() {
+    return new String[] {
+      // Readers on the main thread do not wait for the writer thread.
+      "PRAGMA journal_mode=WAL;",
+      "CREATE TABLE IF NOT EXISTS user ("
+        + " id INTEGER PRIMARY KEY AUTOINCREMENT"
+        + ",uuid STRING NOT NULL"
+        + ",player_name STRING NOT NULL"
+        + ",created_at DATETIME NOT NULL DEFAULT (datetime('now','localtime')) CHECK(created_at LIKE '____-__-__ __:__:__')"
+        + ");",
+      "CREATE INDEX IF NOT EXISTS uuid_index ON user (uuid);",
+      "CREATE INDEX IF NOT EXISTS player_name_index ON user (player_name);",
+      "CREATE TABLE IF NOT EXISTS world ("
+        + " id INTEGER PRIMARY KEY AUTOINCREMENT"
+        + ",world_name STRING NOT NULL"
+        + ",created_at DATETIME NOT NULL DEFAULT (datetime('now','localtime')) CHECK(created_at LIKE '____-__-__ __:__:__')"
+        + ");",
+      "CREATE INDEX IF NOT EXISTS world_name_index ON world (world_name);",
+      "CREATE TABLE IF NOT EXISTS name_code ("
+        + " id INTEGER PRIMARY KEY"
+        + ",name STRING NOT NULL"
+        + ");"
+    };
+  }
+
+  @Override
+  protected String[] getLockSchema(String table) {
+    return new String[] {
+      // The rows are stored in the primary key itself, without a separate rowid.
+      "CREATE TABLE IF NOT EXISTS " + table + " ("
+        + " world_id INTEGER NOT NULL"
+        + ",pos INTEGER NOT NULL"
+        + ",user_id INTEGER NOT NULL"
+        + ",face INTEGER NOT NULL"
+        + ",attached_pos INTEGER NOT NULL"
+        + ",material INTEGER NOT NULL"
+        + ",created_at DATETIME NOT NULL DEFAULT (datetime('now','localtime')) CHECK(created_at LIKE '____-__-__ __:__:__')"
+        + ",PRIMARY KEY(world_id, pos)"
+        + ") WITHOUT ROWID;",
+      "CREATE INDEX IF NOT EXISTS lockdata_user_id_index ON " + table + " (user_id);",
+      "CREATE INDEX IF NOT EXISTS lockdata_created_at_index ON " + table + " (created_at);"
+    };
+  }
+
+  @Override
+  protected String[] getCompactSql() {
+    return new String[] {"VACUUM;"};
+  }
+
+  @Override
+  protected String getPutCodeSql() {
+    return "INSERT OR IGNORE INTO name_code(id, name) VALUES (?, ?)";
+  }
+
+  @Override
+  protected String getPutWorldSql() {
+    return "INSERT OR IGNORE INTO world(id, world_name) VALUES (?, ?)";
+  }
+
+  @Override
+  protected String getPutUserSql() {
+    return "INSERT OR IGNORE INTO user(id, uuid, player_name) VALUES (?, ?, ?)";
+  }
+
+  @Override
+  protected String getPutLockSql() {
+    return "INSERT OR REPLACE INTO lockdata(world_id,user_id,pos,face,attached_pos,material) VALUES (?,?,?,?,?,?)";
+  }
+
+  @Override
+  protected String getPutLockWithTimeSql() {
+    return "INSERT OR REPLACE INTO lockdata(world_id,user_id,pos,face,attached_pos,material,created_at) VALUES (?,?,?,?,?,?,?)";
+  }
+
+  @Override
+  protected void setCreatedAt(PreparedStatement prepStmt, int index, long millis) throws SQLException {
+    // created_at is stored as text of local time.
+    prepStmt.setString(index, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(millis)));
+  }
+
+  @Override
+  protected long getCreatedAt(ResultSet rs, int index) throws SQLException {
+    String createdAt = rs.getString(index);
+    try{
+      return createdAt == null ? 0 : new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(createdAt).getTime();
+    } catch (ParseException e){
+      throw new SQLException("Broken created_at: " + createdAt, e);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package space.gorogoro.frameguard;
+
+/*
+ * FrameGuardStoreException
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardStoreException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor of FrameGuardStoreException.
+   * @param String Message
+   */
+  public FrameGuardStoreException(String message) {
+    super(message);
+  }
+
+  /**
+   * Constructor of FrameGuardStoreException.
+   * @param String Message
+   * @param Throwable Cause
+   */
+  public FrameGuardStoreException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  /**
+   * Constructor of FrameGuardStoreException.
+   * @param Throwable Cause
+   */
+  public FrameGuardStoreException(Throwable cause) {
+    super(cause);
+  }
+}
@@ -0,0 +1,341 @@
+package space.gorogoro.frameguard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * FrameGuardWriter
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardWriter implements Runnable {
+  private static final int BATCH_SIZE = 500;
+
+  private final Logger logger;
+  private final FrameGuardLockStore store;
+  private final Executor mainThread;
+  private final BlockingQueue<Operation> queue = new LinkedBlockingQueue<Operation>();
+  private Thread thread;
+  private volatile boolean running;
+
+  /**
+   * Queued write.
+   */
+  private abstract static class Operation {
+    private final Runnable committed;
+
+    /**
+     * Constructor of Operation.
+     * @param Runnable Called on the main thread after commit, may be null
+     */
+    private Operation(Runnable committed) {
+      this.committed = committed;
+    }
+
+    /**
+     * Execute write.
+     * @param FrameGuardLockStore Store
+     * @throws FrameGuardStoreException
+     */
+    abstract void execute(FrameGuardLockStore store) throws FrameGuardStoreException;
+
+    /**
+     * Called on the writer thread after commit.
+     */
+    void afterCommit() {
+    }
+  }
+
+  /**
+   * Work that runs on the writer thread between queued writes.
+   */
+  public interface Job {
+    /**
+     * Run job. Errors must be handled by the job, it is not retried.
+     * @param FrameGuardLockStore Store
+     */
+    void run(FrameGuardLockStore store);
+  }
+
+  /**
+   * Constructor of FrameGuardWriter.
+   * @param Logger Logger
+   * @param FrameGuardLockStore Store, it is not closed by the writer
+   * @param Executor Executor of the main thread
+   */
+  public FrameGuardWriter(Logger logger, FrameGuardLockStore store, Executor mainThread) {
+    this.logger = logger;
+    this.store = store;
+    this.mainThread = mainThread;
+  }
+
+  /**
+   * Start writer thread.
+   */
+  public void start() {
+    running = true;
+    thread = new Thread(this, "FrameGuard-Writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Queue lock. Rows of user and world are stored too when they are missing.
+   * @param int World id
+   * @param String World name
+   * @param int Owner user id
+   * @param UUID Owner
+   * @param String Owner name
+   * @param FrameGuardLockRecord Lock record
+   * @param Runnable Called on the main thread after commit, may be null
+   */
+  public void lock(final int worldId, final String worldName, final int userId, final UUID owner, final String ownerName,
+      final FrameGuardLockRecord record, Runnable committed) {
+    queue.add(new Operation(committed) {
+      @Override
+      void execute(FrameGuardLockStore store) throws FrameGuardStoreException {
+        store.putWorld(worldId, worldName);
+        store.putUser(userId, owner, ownerName);
+        store.putLock(worldId, record);
+      }
+    });
+  }
+
+  /**
+   * Queue locks of one owner. They are committed in one transaction.
+   * @param int World id
+   * @param String World name
+   * @param int Owner user id
+   * @param UUID Owner
+   * @param String Owner name
+   * @param List<FrameGuardLockRecord> Lock records
+   * @param Runnable Called on the main thread after commit, may be null
+   */
+  public void lockAll(final int worldId, final String worldName, final int userId, final UUID owner, final String ownerName,
+      final List<FrameGuardLockRecord> records, Runnable committed) {
+    queue.add(new Operation(committed) {
+      @Override
+      void execute(FrameGuardLockStore store) throws FrameGuardStoreException {
+        store.putWorld(worldId, worldName);
+        store.putUser(userId, owner, ownerName);
+        for(FrameGuardLockRecord record : records){
+          store.putLock(worldId, record);
+        }
+      }
+    });
+  }
+
+  /**
+   * Queue unlock. Rows of user and world without lock are removed too.
+   * @param int World id
+   * @param int Owner user id
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param Runnable Called on the main thread after commit, may be null
+   */
+  public void unlock(final int worldId, final int userId, final int x, final int y, final int z, Runnable committed) {
+    queue.add(new Operation(committed) {
+      @Override
+      void execute(FrameGuardLockStore store) throws FrameGuardStoreException {
+        store.removeLock(worldId, x, y, z);
+        store.removeUnusedUser(userId);
+        store.removeUnusedWorld(worldId);
+      }
+    });
+  }
+
+  /**
+   * Queue job. It sees every write queued before it.
+   * @param Job Job
+   * @param Runnable Called on the main thread after the job, may be null
+   */
+  public void submit(final Job job, Runnable committed) {
+    queue.add(new Operation(committed) {
+      private boolean done;
+
+      @Override
+      void execute(FrameGuardLockStore store) {
+        // The batch may be retried when another write fails, the job runs only once.
+        if(!done){
+          done = true;
+          job.run(store);
+        }
+      }
+    });
+  }
+
+  /**
+   * Wait until all queued writes are committed.
+   * @param long Timeout (milliseconds)
+   * @return boolean true:flushed false:timed out
+   */
+  public boolean flush(long timeoutMillis) {
+    if(!running){
+      return queue.isEmpty();
+    }
+    final CountDownLatch latch = new CountDownLatch(1);
+    queue.add(new Operation(null) {
+      @Override
+      void execute(FrameGuardLockStore store) {
+      }
+
+      @Override
+      void afterCommit() {
+        latch.countDown();
+      }
+    });
+    try{
+      return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Flush queued writes and stop writer thread.
+   * @param long Timeout (milliseconds)
+   * @return boolean true:all writes committed false:timed out
+   */
+  public boolean shutdown(long timeoutMillis) {
+    if(thread == null){
+      return true;
+    }
+    running = false;
+    // Wake the thread with an empty write rather than an interrupt,
+    // which would break the write being committed.
+    Operation wakeUp = new Operation(null) {
+      @Override
+      void execute(FrameGuardLockStore store) {
+      }
+    };
+    queue.add(wakeUp);
+    try{
+      thread.join(timeoutMillis);
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+    }
+    // Left behind when the thread stopped before it was added.
+    queue.remove(wakeUp);
+    boolean finished = !thread.isAlive();
+    if(!finished || !queue.isEmpty()){
+      logger.log(Level.WARNING, "Writer did not finish in time, " + queue.size() + " writes are lost.");
+    }
+    thread = null;
+    return finished;
+  }
+
+  /**
+   * Get number of queued writes.
+   * @return int Number of queued writes.
+   */
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  /**
+   * Writer thread.
+   */
+  @Override
+  public void run() {
+    List<Operation> batch = new ArrayList<Operation>(BATCH_SIZE);
+    while(running || !queue.isEmpty()){
+      if(batch.isEmpty()){
+        try{
+          Operation op = running ? queue.take() : queue.poll();
+          if(op == null){
+            break;
+          }
+          batch.add(op);
+        } catch (InterruptedException e){
+          continue;
+        }
+      }
+      queue.drainTo(batch, BATCH_SIZE - batch.size());
+      try{
+        commit(batch);
+      } catch (Exception e){
+        // The thread keeps running, a broken write must not stop the ones after it.
+        FrameGuardLog.logStackTrace(e);
+      }
+      batch.clear();
+    }
+  }
+
+  /**
+   * Commit batch in one transaction. When it fails every write is retried alone.
+   * A runtime exception of the store or a job is handled like a failed write,
+   * the callbacks run in any case so that pending chunks are released.
+   * @param List<Operation> Batch
+   */
+  private void commit(List<Operation> batch) {
+    try{
+      for(Operation op : batch){
+        op.execute(store);
+      }
+      store.commit();
+    } catch (Exception e){
+      rollback();
+      for(Operation op : batch){
+        try{
+          op.execute(store);
+          store.commit();
+        } catch (Exception retryException){
+          rollback();
+          FrameGuardLog.logStackTrace(retryException);
+        }
+      }
+    }
+    final List<Runnable> callbacks = new ArrayList<Runnable>();
+    for(Operation op : batch){
+      try{
+        op.afterCommit();
+      } catch (Exception e){
+        FrameGuardLog.logStackTrace(e);
+      }
+      if(op.committed != null){
+        callbacks.add(op.committed);
+      }
+    }
+    if(!callbacks.isEmpty()){
+      try{
+        mainThread.execute(new Runnable() {
+          @Override
+          public void run() {
+            for(Runnable callback : callbacks){
+              try{
+                callback.run();
+              } catch (Exception e){
+                FrameGuardLog.logStackTrace(e);
+              }
+            }
+          }
+        });
+      } catch (Exception e){
+        // The plugin is being disabled, nobody is waiting for the callbacks.
+      }
+    }
+  }
+
+  /**
+   * Roll back, a failing rollback must not stop the writer thread.
+   */
+  private void rollback() {
+    try{
+      store.rollback();
+    } catch (Exception e){
+      FrameGuardLog.logStackTrace(e);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package space.gorogoro.frameguard.loadgen;
+
+/*
+ * LoadEvent
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * One server event of a stream, as a line of text:
+ *   tick type world x y z arg [face]
+ * x, y and z are block coordinates, except CHUNK_LOAD and CHUNK_UNLOAD where x and z are chunk coordinates.
+ * arg is the player for BREAK, PLACE, INTERACT, DAMAGE, LOCK and UNLOCK, the number of pushed blocks
+ * for PISTON, the radius for EXPLODE and 1 for a newly generated chunk for CHUNK_LOAD.
+ * face is the direction of PISTON (NORTH, EAST, SOUTH, WEST, UP, DOWN).
+ */
+public final class LoadEvent {
+  private final int tick;
+  private final Type type;
+  private final String world;
+  private final int x;
+  private final int y;
+  private final int z;
+  private final int arg;
+  private final String face;
+
+  /**
+   * Type of event, named after the listener handler it stands for.
+   */
+  public enum Type {
+    BREAK,
+    PLACE,
+    BURN,
+    PISTON,
+    EXPLODE,
+    INTERACT,
+    DAMAGE,
+    LOCK,
+    UNLOCK,
+    CHUNK_LOAD,
+    CHUNK_UNLOAD
+  }
+
+  /**
+   * Constructor of LoadEvent.
+   * @param int Tick
+   * @param Type Type
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param int Player, count, radius or new chunk flag by type
+   * @param String Direction of piston or null
+   */
+  public LoadEvent(int tick, Type type, String world, int x, int y, int z, int arg, String face) {
+    this.tick = tick;
+    this.type = type;
+    this.world = world;
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.arg = arg;
+    this.face = face;
+  }
+
+  /**
+   * Parse line.
+   * @param String Line
+   * @return LoadEvent Event
+   * @throws IllegalArgumentException Malformed line
+   */
+  public static LoadEvent parse(String line) {
+    String[] f = line.trim().split("\\s+");
+    if(f.length < 7){
+      throw new IllegalArgumentException("Malformed event: " + line);
+    }
+    return new LoadEvent(
+      Integer.parseInt(f[0]),
+      Type.valueOf(f[1]),
+      f[2],
+      Integer.parseInt(f[3]),
+      Integer.parseInt(f[4]),
+      Integer.parseInt(f[5]),
+      Integer.parseInt(f[6]),
+      f.length > 7 ? f[7] : null
+    );
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(tick).append(' ').append(type.name()).append(' ').append(world)
+      .append(' ').append(x).append(' ').append(y).append(' ').append(z).append(' ').append(arg);
+    if(face != null){
+      sb.append(' ').append(face);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Get tick.
+   * @return int Tick
+   */
+  public int getTick() {
+    return tick;
+  }
+
+  /**
+   * Get type.
+   * @return Type Type
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Get world name.
+   * @return String World name
+   */
+  public String getWorld() {
+    return world;
+  }
+
+  /**
+   * Get x.
+   * @return int x
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * Get y.
+   * @return int y
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * Get z.
+   * @return int z
+   */
+  public int getZ() {
+    return z;
+  }
+
+  /**
+   * Get player, count, radius or new chunk flag by type.
+   * @return int Argument
+   */
+  public int getArg() {
+    return arg;
+  }
+
+  /**
+   * Get direction of piston.
+   * @return String Direction or null
+   */
+  public String getFace() {
+    return face;
+  }
+}
@@ -0,0 +1,346 @@
+package space.gorogoro.frameguard.loadgen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import space.gorogoro.frameguard.FrameGuardCore;
+import space.gorogoro.frameguard.FrameGuardH2Store;
+import space.gorogoro.frameguard.FrameGuardJournalStore;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardLog;
+import space.gorogoro.frameguard.FrameGuardMemoryStore;
+import space.gorogoro.frameguard.FrameGuardMetrics;
+import space.gorogoro.frameguard.FrameGuardMysqlStore;
+import space.gorogoro.frameguard.FrameGuardSqliteStore;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * LoadGenerator
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Replays an event stream against FrameGuardCore tick by tick and reports the cost per tick.
+ *
+ *   java -jar loadgen.jar [--store sqlite|h2|journal|memory|mysql] [--dir DIR] [--budget-ms 50]
+ *     [--url JDBC_URL] [--user USER] [--password PASSWORD]
+ *                                     server of the mysql store, H2 in MySQL mode by default
+ *     [--events FILE]                 replay a recorded stream against the store in DIR
+ *     [--ticks 1200] [--events-per-tick 200] [--side 32] [--frames-per-chunk 16]
+ *     [--players 100] [--seed 1] [--record FILE]
+ *                                     or generate a synthetic one, seeding a fresh store in DIR
+ *     [--check true]                  or run every store operation once on a fresh store, see StoreCheck,
+ *                                     and for mysql two servers on the same database, see SharedStoreCheck,
+ *                                     or for sqlite and h2 a stopped upgrade of schema version 1, see MigrationCheck
+ *
+ * Store files are named as in the plugin folder, so DIR may be a copy of plugins/FrameGuard.
+ * The mysql store is not cleared, give it an empty database.
+ */
+public final class LoadGenerator {
+  private static final int QUERY_TIMEOUT = 30;
+  private static final int JOURNAL_COMPACT_THRESHOLD = 100000;
+  private static final int COMMIT_INTERVAL = 10000;
+  private static final int MYSQL_POOL_SIZE = 3;
+  private static final String MYSQL_STAND_IN_URL = "jdbc:h2:mem:frameguard;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1";
+
+  private LoadGenerator() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    String storage = get(options, "store", "sqlite");
+    File dir = new File(get(options, "dir", "target/loadgen"));
+    long budgetNanos = Long.parseLong(get(options, "budget-ms", "50")) * 1000000L;
+    dir.mkdirs();
+
+    if(Boolean.parseBoolean(get(options, "check", "false"))){
+      deleteStore(storage, dir);
+      boolean shared = storage.equalsIgnoreCase("mysql");
+      StoreCheck.run(createStore(storage, dir, options), shared);
+      if(shared){
+        // Servers sharing the database, each with a store of its own.
+        SharedStoreCheck.run(createStore(storage, dir, options), createStore(storage, dir, options), createStore(storage, dir, options));
+      }
+      if(storage.equalsIgnoreCase("sqlite") || storage.equalsIgnoreCase("h2")){
+        // A database of schema version 1 whose upgrade is stopped and resumed.
+        deleteStore(storage, dir);
+        MigrationCheck.run(createStore(storage, dir, options), getJdbcUrl(storage, dir));
+      }
+      System.out.println("Store check of " + storage + " passed.");
+      return;
+    }
+
+    List<LoadEvent> events;
+    if(options.containsKey("events")){
+      events = readEvents(new File(options.get("events")));
+    }else{
+      SyntheticEvents synthetic = new SyntheticEvents(
+        Long.parseLong(get(options, "seed", "1")),
+        Integer.parseInt(get(options, "side", "32")),
+        Integer.parseInt(get(options, "frames-per-chunk", "16")),
+        Integer.parseInt(get(options, "players", "100"))
+      );
+      events = synthetic.generate(Integer.parseInt(get(options, "ticks", "1200")), Integer.parseInt(get(options, "events-per-tick", "200")));
+      if(options.containsKey("record")){
+        writeEvents(new File(options.get("record")), events);
+      }
+      deleteStore(storage, dir);
+      if(!storage.equalsIgnoreCase("memory")){
+        seed(createStore(storage, dir, options), synthetic, Integer.parseInt(get(options, "players", "100")));
+      }
+    }
+
+    FrameGuardMetrics metrics = new FrameGuardMetrics(true);
+    FrameGuardCore core = new FrameGuardCore(FrameGuardLog.getLogger(), metrics);
+    LoadReplayer replayer = new LoadReplayer(core);
+    core.open(createStore(storage, dir, options), replayer.getMainThread());
+
+    List<Long> tickNanos = new ArrayList<Long>();
+    int from = 0;
+    while(from < events.size()){
+      int tick = events.get(from).getTick();
+      int to = from;
+      while(to < events.size() && events.get(to).getTick() == tick){
+        to++;
+      }
+      tickNanos.add(replayer.runTick(events, from, to));
+      from = to;
+    }
+    long flushStarted = System.nanoTime();
+    core.close(60000L);
+    long flushNanos = System.nanoTime() - flushStarted;
+
+    report(events.size(), tickNanos, budgetNanos, flushNanos, replayer, metrics);
+  }
+
+  /**
+   * Parse --key value pairs.
+   * @param String[] Arguments
+   * @return Map<String, String> Options
+   */
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<String, String>();
+    for(int i = 0; i < args.length; i++){
+      if(!args[i].startsWith("--") || i + 1 >= args.length){
+        throw new IllegalArgumentException("Expected --option value: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[++i]);
+    }
+    return options;
+  }
+
+  /**
+   * Get option.
+   * @param Map<String, String> Options
+   * @param String Name
+   * @param String Default value
+   * @return String Value
+   */
+  private static String get(Map<String, String> options, String name, String defaultValue) {
+    String value = options.get(name);
+    return value == null ? defaultValue : value;
+  }
+
+  /**
+   * Create store the way FrameGuardDatabase does.
+   * @param String Storage
+   * @param File Folder
+   * @param Map<String, String> Options
+   * @return FrameGuardLockStore Store
+   */
+  private static FrameGuardLockStore createStore(String storage, File dir, Map<String, String> options) {
+    if(storage.equalsIgnoreCase("mysql")){
+      return new FrameGuardMysqlStore(get(options, "url", MYSQL_STAND_IN_URL), get(options, "user", "sa"),
+        get(options, "password", ""), MYSQL_POOL_SIZE, QUERY_TIMEOUT);
+    }else if(storage.equalsIgnoreCase("h2")){
+      return new FrameGuardH2Store(new File(dir, "database"), QUERY_TIMEOUT);
+    }else if(storage.equalsIgnoreCase("journal")){
+      return new FrameGuardJournalStore(new File(dir, "journal"), JOURNAL_COMPACT_THRESHOLD);
+    }else if(storage.equalsIgnoreCase("memory")){
+      return new FrameGuardMemoryStore();
+    }
+    return new FrameGuardSqliteStore(new File(dir, "database.db"), QUERY_TIMEOUT);
+  }
+
+  /**
+   * Get JDBC URL of the sqlite or h2 store in folder, as the store connects to it.
+   * @param String Storage
+   * @param File Folder
+   * @return String JDBC URL
+   */
+  private static String getJdbcUrl(String storage, File dir) {
+    if(storage.equalsIgnoreCase("h2")){
+      return "jdbc:h2:" + new File(dir, "database").getAbsolutePath() + ";NON_KEYWORDS=USER";
+    }
+    return "jdbc:sqlite:" + new File(dir, "database.db").getPath();
+  }
+
+  /**
+   * Delete store files of a previous synthetic run.
+   * @param String Storage
+   * @param File Folder
+   */
+  private static void deleteStore(String storage, File dir) {
+    String[] names = {"database.db", "database.db-wal", "database.db-shm", "database.mv.db", "database.trace.db"};
+    for(String name : names){
+      new File(dir, name).delete();
+    }
+    File[] journal = new File(dir, "journal").listFiles();
+    if(journal != null){
+      for(File file : journal){
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Store the frames of the synthetic world.
+   * @param FrameGuardLockStore Store
+   * @param SyntheticEvents Synthetic events
+   * @param int Number of players
+   * @throws FrameGuardStoreException
+   */
+  private static void seed(FrameGuardLockStore store, SyntheticEvents synthetic, int players) throws FrameGuardStoreException {
+    store.open();
+    try{
+      store.putWorld(1, SyntheticEvents.WORLD);
+      for(int player = 0; player < players; player++){
+        UUID uuid = LoadReplayer.getPlayer(player);
+        store.putUser(player + 1, uuid, "player" + player);
+      }
+      for(int i = 0; i < synthetic.getFrameCount(); i++){
+        store.putLock(1, synthetic.getFrame(i));
+        if(i % COMMIT_INTERVAL == COMMIT_INTERVAL - 1){
+          store.commit();
+        }
+      }
+      store.commit();
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Read events, one per line. Empty lines and lines starting with # are skipped.
+   * @param File File
+   * @return List<LoadEvent> Events
+   * @throws IOException
+   */
+  private static List<LoadEvent> readEvents(File file) throws IOException {
+    List<LoadEvent> events = new ArrayList<LoadEvent>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    try{
+      String line;
+      while((line = reader.readLine()) != null){
+        line = line.trim();
+        if(line.isEmpty() || line.startsWith("#")){
+          continue;
+        }
+        events.add(LoadEvent.parse(line));
+      }
+    } finally {
+      reader.close();
+    }
+    return events;
+  }
+
+  /**
+   * Write events, one per line.
+   * @param File File
+   * @param List<LoadEvent> Events
+   * @throws IOException
+   */
+  private static void writeEvents(File file, List<LoadEvent> events) throws IOException {
+    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    try{
+      writer.write("# tick type world x y z arg [face]");
+      writer.newLine();
+      for(LoadEvent event : events){
+        writer.write(event.toString());
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Print cost per tick, per event type and per query.
+   * @param int Number of events
+   * @param List<Long> Cost of each tick (nanoseconds)
+   * @param long Budget of a tick (nanoseconds)
+   * @param long Time to flush queued writes at the end (nanoseconds)
+   * @param LoadReplayer Replayer
+   * @param FrameGuardMetrics Metrics
+   */
+  private static void report(int eventCount, List<Long> tickNanos, long budgetNanos, long flushNanos,
+      LoadReplayer replayer, FrameGuardMetrics metrics) {
+    long[] sorted = new long[tickNanos.size()];
+    long total = 0;
+    int overBudget = 0;
+    for(int i = 0; i < sorted.length; i++){
+      sorted[i] = tickNanos.get(i);
+      total += sorted[i];
+      if(sorted[i] > budgetNanos){
+        overBudget++;
+      }
+    }
+    Arrays.sort(sorted);
+    System.out.printf("Ticks %d, events %d%n", sorted.length, eventCount);
+    if(sorted.length > 0){
+      System.out.printf("Tick cost (ms): mean %.3f p50 %.3f p90 %.3f p99 %.3f max %.3f%n",
+        total / (double)sorted.length / 1e6,
+        percentile(sorted, 0.50) / 1e6,
+        percentile(sorted, 0.90) / 1e6,
+        percentile(sorted, 0.99) / 1e6,
+        sorted[sorted.length - 1] / 1e6);
+      System.out.printf("Ticks over %d ms budget: %d, mean share of budget %.2f%%%n",
+        budgetNanos / 1000000L, overBudget, total / (double)sorted.length / budgetNanos * 100);
+    }
+    System.out.printf("Flush of queued writes at the end (ms): %.1f, max write queue depth %d%n",
+      flushNanos / 1e6, metrics.getMaxWriteQueueDepth());
+    System.out.printf("Chunk cache: hits %d, misses %d%n", metrics.getChunkHits(), metrics.getChunkMisses());
+    System.out.println();
+    System.out.printf("%-14s %10s %12s %12s%n", "event", "count", "mean(us)", "total(ms)");
+    for(LoadEvent.Type type : LoadEvent.Type.values()){
+      long count = replayer.getCount(type);
+      if(count == 0){
+        continue;
+      }
+      long nanos = replayer.getNanos(type);
+      System.out.printf("%-14s %10d %12.2f %12.1f%n", type.name(), count, nanos / (double)count / 1e3, nanos / 1e6);
+    }
+    System.out.println();
+    System.out.printf("Queries of the last %.0f s:%n", metrics.getWindowSeconds());
+    System.out.printf("%-24s %10s %10s %10s %10s%n", "query", "count", "p50(us)", "p99(us)", "max(us)");
+    for(FrameGuardMetrics.Summary summary : metrics.getQuerySummaries()){
+      System.out.printf("%-24s %10d %10.2f %10.2f %10.2f%n", summary.getLabel(), summary.getCount(),
+        summary.getP50Nanos() / 1e3, summary.getP99Nanos() / 1e3, summary.getMaxNanos() / 1e3);
+    }
+  }
+
+  /**
+   * Get percentile of sorted values.
+   * @param long[] Sorted values
+   * @param double Fraction
+   * @return long Value
+   */
+  private static long percentile(long[] sorted, double fraction) {
+    int i = (int)Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+  }
+}
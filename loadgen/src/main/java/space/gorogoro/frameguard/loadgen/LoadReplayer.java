@@ -0,0 +1,229 @@
+package space.gorogoro.frameguard.loadgen;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import space.gorogoro.frameguard.FrameGuardCore;
+import space.gorogoro.frameguard.FrameGuardPosition;
+
+/*
+ * LoadReplayer
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Stand-in for the server: runs the events of a tick through the core the way
+ * FrameGuardListener and FrameGuardDatabase do, then the tasks the writer thread
+ * handed to the main thread, and measures the cost of each tick.
+ * Player n is UUID 0-n named "player" + n.
+ */
+public class LoadReplayer {
+  private final FrameGuardCore core;
+  private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  private final Executor mainThread = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+  };
+  private final long[] typeCounts = new long[LoadEvent.Type.values().length];
+  private final long[] typeNanos = new long[LoadEvent.Type.values().length];
+  private long[] positions = new long[64];
+  private boolean[] protectedPositions = new boolean[64];
+
+  /**
+   * Constructor of LoadReplayer.
+   * @param FrameGuardCore Core, opened with getMainThread()
+   */
+  public LoadReplayer(FrameGuardCore core) {
+    this.core = core;
+  }
+
+  /**
+   * Get executor of the main thread. Tasks run at the end of the tick.
+   * @return Executor Executor
+   */
+  public Executor getMainThread() {
+    return mainThread;
+  }
+
+  /**
+   * Run the events of a tick and the tasks of the main thread.
+   * @param List<LoadEvent> Events
+   * @param int First event of the tick
+   * @param int End of the events of the tick (exclusive)
+   * @return long Cost of the tick (nanoseconds)
+   */
+  public long runTick(List<LoadEvent> events, int from, int to) {
+    long tickStarted = System.nanoTime();
+    for(int i = from; i < to; i++){
+      LoadEvent event = events.get(i);
+      long started = System.nanoTime();
+      dispatch(event);
+      int type = event.getType().ordinal();
+      typeNanos[type] += System.nanoTime() - started;
+      typeCounts[type]++;
+    }
+    runTasks();
+    return System.nanoTime() - tickStarted;
+  }
+
+  /**
+   * Run the tasks handed to the main thread.
+   */
+  public void runTasks() {
+    Runnable task;
+    while((task = tasks.poll()) != null){
+      task.run();
+    }
+  }
+
+  /**
+   * Get number of events by type.
+   * @param LoadEvent.Type Type
+   * @return long Number of events
+   */
+  public long getCount(LoadEvent.Type type) {
+    return typeCounts[type.ordinal()];
+  }
+
+  /**
+   * Get time spent on events by type.
+   * @param LoadEvent.Type Type
+   * @return long Time (nanoseconds)
+   */
+  public long getNanos(LoadEvent.Type type) {
+    return typeNanos[type.ordinal()];
+  }
+
+  /**
+   * Run event through the core.
+   * @param LoadEvent Event
+   */
+  private void dispatch(LoadEvent e) {
+    String world = e.getWorld();
+    int x = e.getX();
+    int y = e.getY();
+    int z = e.getZ();
+    switch(e.getType()){
+      case BREAK:
+        core.checkBlockBreak(world, x, y, z);
+        break;
+      case PLACE:
+        core.checkBlockPlace(world, x, y, z);
+        break;
+      case BURN:
+        core.checkBlockChange(world, x, y, z);
+        break;
+      case PISTON:
+        piston(world, x, y, z, e.getFace(), e.getArg());
+        break;
+      case EXPLODE:
+        explode(world, x, y, z, e.getArg());
+        break;
+      case INTERACT:
+      case DAMAGE:
+        if(core.isLocked(world, x, y, z)){
+          core.isLockedOwner(world, x, y, z, getPlayer(e.getArg()));
+        }
+        break;
+      case LOCK:
+        core.lock(world, x, y, z, getPlayer(e.getArg()), "player" + e.getArg(), "NORTH", x, y, z + 1, "STONE");
+        break;
+      case UNLOCK:
+        core.unlock(world, x, y, z, getPlayer(e.getArg()), false);
+        break;
+      case CHUNK_LOAD:
+        core.loadChunk(world, x, z, e.getArg() == 1);
+        break;
+      case CHUNK_UNLOAD:
+        core.unloadChunk(world, x, z);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Piston extending at x, y, z: the head and the pushed blocks in front of it.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param String Direction
+   * @param int Number of pushed blocks
+   */
+  private void piston(String world, int x, int y, int z, String face, int count) {
+    int dx = 0;
+    int dy = 0;
+    int dz = 0;
+    if("NORTH".equals(face)){
+      dz = -1;
+    }else if("SOUTH".equals(face)){
+      dz = 1;
+    }else if("EAST".equals(face)){
+      dx = 1;
+    }else if("WEST".equals(face)){
+      dx = -1;
+    }else if("UP".equals(face)){
+      dy = 1;
+    }else{
+      dy = -1;
+    }
+    int n = 0;
+    ensureCapacity(count + 1);
+    positions[n++] = FrameGuardPosition.pack(x + dx, y + dy, z + dz);
+    for(int i = 1; i <= count; i++){
+      positions[n++] = FrameGuardPosition.pack(x + dx * i, y + dy * i, z + dz * i);
+    }
+    core.isAnyAdjacentToLock(world, positions, n);
+  }
+
+  /**
+   * Explosion of radius at x, y, z destroying every block of the sphere.
+   * @param String World name
+   * @param int x
+   * @param int y
+   * @param int z
+   * @param int Radius
+   */
+  private void explode(String world, int x, int y, int z, int radius) {
+    int n = 0;
+    int side = radius * 2 + 1;
+    ensureCapacity(side * side * side);
+    for(int ix = -radius; ix <= radius; ix++){
+      for(int iy = -radius; iy <= radius; iy++){
+        for(int iz = -radius; iz <= radius; iz++){
+          if(ix * ix + iy * iy + iz * iz <= radius * radius){
+            positions[n++] = FrameGuardPosition.pack(x + ix, y + iy, z + iz);
+          }
+        }
+      }
+    }
+    core.findProtected(world, positions, n, protectedPositions);
+  }
+
+  /**
+   * Grow the position buffers.
+   * @param int Required size
+   */
+  private void ensureCapacity(int size) {
+    if(positions.length < size){
+      positions = Arrays.copyOf(positions, Math.max(size, positions.length << 1));
+      protectedPositions = new boolean[positions.length];
+    }
+  }
+
+  /**
+   * Get UUID of player n.
+   * @param int Player
+   * @return UUID UUID
+   */
+  public static UUID getPlayer(int player) {
+    return new UUID(0L, player);
+  }
+}
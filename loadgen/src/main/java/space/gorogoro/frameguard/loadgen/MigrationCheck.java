@@ -0,0 +1,324 @@
+package space.gorogoro.frameguard.loadgen;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * MigrationCheck
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Builds a database of schema version 1, stops its upgrade part way and opens it again,
+ * then compares every lock with the rows of version 1. The upgrade is also resumed from
+ * the states left between its last statements. The database must be empty.
+ */
+public final class MigrationCheck {
+  // More than one batch of the upgrade, which copies 10000 rows per commit.
+  private static final int ROWS = 25000;
+  // A row of the second batch, it is put on the position of row 1 once packed.
+  private static final int BROKEN_ID = 15000;
+  private static final long CREATED_AT = Timestamp.valueOf("2017-06-01 12:00:00").getTime();
+  private static final String[] WORLDS = {"world", "world_nether"};
+  private static final String[] FACES = {"NORTH", "EAST", "SOUTH", "WEST"};
+  private static final String[] MATERIALS = {"STONE", "GLASS", "OAK_PLANKS"};
+  private static final int USERS = 7;
+
+  private final FrameGuardLockStore store;
+  private final String url;
+  private final boolean sqlite;
+  private final Map<String, String> expected = new HashMap<String, String>();
+
+  /**
+   * Constructor of MigrationCheck.
+   * @param FrameGuardLockStore Store
+   * @param String JDBC URL of the database of store
+   */
+  private MigrationCheck(FrameGuardLockStore store, String url) {
+    this.store = store;
+    this.url = url;
+    this.sqlite = url.startsWith("jdbc:sqlite:");
+  }
+
+  /**
+   * Check upgrade of store. It is opened and closed here.
+   * @param FrameGuardLockStore SQLite or H2 store on an empty database
+   * @param String JDBC URL of the same database
+   * @throws FrameGuardStoreException
+   * @throws SQLException
+   * @throws IllegalStateException A result is wrong.
+   */
+  public static void run(FrameGuardLockStore store, String url) throws FrameGuardStoreException, SQLException {
+    new MigrationCheck(store, url).check();
+  }
+
+  /**
+   * Run the checks in order, each one works on the database left by the one before.
+   * @throws FrameGuardStoreException
+   * @throws SQLException
+   */
+  private void check() throws FrameGuardStoreException, SQLException {
+    createVersion1();
+
+    // y 4096 wraps to the y of row 1 in the packed position, the copy fails in its second batch.
+    boolean stopped = false;
+    try{
+      store.open();
+    } catch (FrameGuardStoreException e){
+      stopped = true;
+    } finally {
+      store.close();
+    }
+    expect("upgrade stopped", true, stopped);
+    expect("version after stop", 1, queryInt("SELECT MAX(version) FROM schema_version"));
+    expect("rows copied before stop", 10000, queryInt("SELECT COUNT(*) FROM lockdata_v2"));
+    expect("rows kept before stop", ROWS, queryInt("SELECT COUNT(*) FROM lockdata"));
+
+    update("DELETE FROM lockdata WHERE id = " + BROKEN_ID);
+    compareLocks("resumed copy");
+
+    // Stopped after the new table took its name, before the version was written.
+    update("UPDATE schema_version SET version = 1");
+    compareLocks("resumed after rename");
+
+    // Stopped after the old table was dropped, before the new one took its name.
+    update("ALTER TABLE lockdata RENAME TO lockdata_v2");
+    update("UPDATE schema_version SET version = 1");
+    compareLocks("resumed after drop");
+  }
+
+  /**
+   * Create the tables of version 1 and fill them the way version 1 did.
+   * @throws SQLException
+   */
+  private void createVersion1() throws SQLException {
+    Connection con = DriverManager.getConnection(url);
+    try{
+      Statement stmt = con.createStatement();
+      try{
+        if(sqlite){
+          stmt.execute("CREATE TABLE user (id INTEGER PRIMARY KEY AUTOINCREMENT, uuid STRING NOT NULL, player_name STRING NOT NULL"
+            + ", created_at DATETIME NOT NULL DEFAULT (datetime('now','localtime')))");
+          stmt.execute("CREATE TABLE world (id INTEGER PRIMARY KEY AUTOINCREMENT, world_name STRING NOT NULL"
+            + ", created_at DATETIME NOT NULL DEFAULT (datetime('now','localtime')))");
+          stmt.execute("CREATE TABLE lockdata (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL, world_id INTEGER NOT NULL"
+            + ", x INTEGER NOT NULL, y INTEGER NOT NULL, z INTEGER NOT NULL, block_face STRING NOT NULL"
+            + ", attached_x INTEGER NOT NULL, attached_y INTEGER NOT NULL, attached_z INTEGER NOT NULL, attached_material STRING NOT NULL"
+            + ", created_at DATETIME NOT NULL DEFAULT (datetime('now','localtime')) CHECK(created_at LIKE '____-__-__ __:__:__')"
+            + ", unique(world_id, x, y, z))");
+        } else {
+          stmt.execute("CREATE TABLE user (id INT PRIMARY KEY, uuid VARCHAR(36) NOT NULL, player_name VARCHAR(255) NOT NULL"
+            + ", created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+          stmt.execute("CREATE TABLE world (id INT PRIMARY KEY, world_name VARCHAR(255) NOT NULL"
+            + ", created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+          stmt.execute("CREATE TABLE lockdata (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL, world_id INT NOT NULL"
+            + ", x INT NOT NULL, y INT NOT NULL, z INT NOT NULL, block_face VARCHAR(16) NOT NULL"
+            + ", attached_x INT NOT NULL, attached_y INT NOT NULL, attached_z INT NOT NULL, attached_material VARCHAR(64) NOT NULL"
+            + ", created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, UNIQUE(world_id, x, y, z))");
+        }
+      } finally {
+        stmt.close();
+      }
+
+      con.setAutoCommit(false);
+      PreparedStatement prepStmt = con.prepareStatement("INSERT INTO world (id, world_name) VALUES (?, ?)");
+      for(int i = 0; i < WORLDS.length; i++){
+        prepStmt.setInt(1, i + 1);
+        prepStmt.setString(2, WORLDS[i]);
+        prepStmt.addBatch();
+      }
+      prepStmt.executeBatch();
+      prepStmt.close();
+
+      prepStmt = con.prepareStatement("INSERT INTO user (id, uuid, player_name) VALUES (?, ?, ?)");
+      for(int userId = 1; userId <= USERS; userId++){
+        prepStmt.setInt(1, userId);
+        prepStmt.setString(2, getUuid(userId).toString());
+        prepStmt.setString(3, "player" + userId);
+        prepStmt.addBatch();
+      }
+      prepStmt.executeBatch();
+      prepStmt.close();
+
+      SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+      prepStmt = con.prepareStatement("INSERT INTO lockdata (id, user_id, world_id, x, y, z, block_face"
+        + ", attached_x, attached_y, attached_z, attached_material, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+      for(int id = 1; id <= ROWS; id++){
+        // Rows of both worlds are spread over negative and positive chunks.
+        int worldId = id % WORLDS.length + 1;
+        int x = id % 300 - 150;
+        int y = id % 5 * 50 - 64;
+        int z = id / 300 - 40;
+        if(id == BROKEN_ID){
+          worldId = 1 % WORLDS.length + 1;
+          x = 1 % 300 - 150;
+          y = 1 % 5 * 50 - 64 + 4096;
+          z = 1 / 300 - 40;
+        }
+        int userId = id % USERS + 1;
+        String face = FACES[id % FACES.length];
+        String material = MATERIALS[id % MATERIALS.length];
+        long createdAt = CREATED_AT + id * 1000L;
+        prepStmt.setLong(1, id);
+        prepStmt.setInt(2, userId);
+        prepStmt.setInt(3, worldId);
+        prepStmt.setInt(4, x);
+        prepStmt.setInt(5, y);
+        prepStmt.setInt(6, z);
+        prepStmt.setString(7, face);
+        prepStmt.setInt(8, x);
+        prepStmt.setInt(9, y);
+        prepStmt.setInt(10, z + 1);
+        prepStmt.setString(11, material);
+        prepStmt.setString(12, format.format(new Date(createdAt)));
+        prepStmt.addBatch();
+        if(id != BROKEN_ID){
+          expected.put(getKey(WORLDS[worldId - 1], x, y, z),
+            getValue(getUuid(userId), "player" + userId, face, x, y, z + 1, material, createdAt));
+        }
+      }
+      prepStmt.executeBatch();
+      prepStmt.close();
+      con.commit();
+    } finally {
+      con.close();
+    }
+  }
+
+  /**
+   * Open store, which finishes the upgrade, and compare every lock with the rows of version 1.
+   * @param String Name of the check
+   * @throws FrameGuardStoreException
+   * @throws SQLException
+   */
+  private void compareLocks(String name) throws FrameGuardStoreException, SQLException {
+    final Map<String, String> actual = new HashMap<String, String>();
+    store.open();
+    try{
+      store.exportLocks(new FrameGuardLockStore.ExportVisitor() {
+        @Override
+        public void visit(String worldName, UUID uuid, String playerName, FrameGuardLockRecord record, long createdAt) {
+          actual.put(getKey(worldName, record.getX(), record.getY(), record.getZ()),
+            getValue(uuid, playerName, record.getBlockFace(), record.getAttachedX(), record.getAttachedY(),
+              record.getAttachedZ(), record.getAttachedMaterial(), createdAt));
+        }
+      });
+    } finally {
+      store.close();
+    }
+    expect(name + ": locks", expected.size(), actual.size());
+    for(Map.Entry<String, String> entry : expected.entrySet()){
+      if(!entry.getValue().equals(actual.get(entry.getKey()))){
+        expect(name + ": lock at " + entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+      }
+    }
+    System.out.println("ok " + name + ": every lock");
+    expect(name + ": version", 2, queryInt("SELECT MAX(version) FROM schema_version"));
+  }
+
+  /**
+   * Get owner of test user.
+   * @param int User id
+   * @return UUID Owner
+   */
+  private static UUID getUuid(int userId) {
+    return new UUID(0x4d, userId);
+  }
+
+  /**
+   * Get key of lock.
+   * @param String World name
+   * @param int X
+   * @param int Y
+   * @param int Z
+   * @return String Key
+   */
+  private static String getKey(String worldName, int x, int y, int z) {
+    return worldName + " " + x + " " + y + " " + z;
+  }
+
+  /**
+   * Get every column of lock but its position.
+   * @param UUID Owner
+   * @param String Player name
+   * @param String Block face
+   * @param int Attached x
+   * @param int Attached y
+   * @param int Attached z
+   * @param String Attached material
+   * @param long Created at
+   * @return String Value
+   */
+  private static String getValue(UUID uuid, String playerName, String face, int attachedX, int attachedY, int attachedZ,
+    String material, long createdAt) {
+    return uuid + " " + playerName + " " + face + " " + attachedX + " " + attachedY + " " + attachedZ + " " + material + " " + createdAt;
+  }
+
+  /**
+   * Run statement on a connection of its own.
+   * @param String SQL
+   * @throws SQLException
+   */
+  private void update(String sql) throws SQLException {
+    Connection con = DriverManager.getConnection(url);
+    try{
+      Statement stmt = con.createStatement();
+      try{
+        stmt.executeUpdate(sql);
+      } finally {
+        stmt.close();
+      }
+    } finally {
+      con.close();
+    }
+  }
+
+  /**
+   * Run query for one number on a connection of its own.
+   * @param String SQL
+   * @return int Number
+   * @throws SQLException
+   */
+  private int queryInt(String sql) throws SQLException {
+    Connection con = DriverManager.getConnection(url);
+    try{
+      Statement stmt = con.createStatement();
+      try{
+        ResultSet rs = stmt.executeQuery(sql);
+        return rs.next() ? rs.getInt(1) : -1;
+      } finally {
+        stmt.close();
+      }
+    } finally {
+      con.close();
+    }
+  }
+
+  /**
+   * Compare result.
+   * @param String Name of the check
+   * @param Object Expected value
+   * @param Object Actual value
+   */
+  private static void expect(String name, Object expected, Object actual) {
+    if(expected == null ? actual != null : !expected.equals(actual)){
+      throw new IllegalStateException(name + ": expected " + expected + " but was " + actual);
+    }
+    System.out.println("ok " + name);
+  }
+}
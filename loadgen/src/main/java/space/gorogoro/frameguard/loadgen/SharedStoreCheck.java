@@ -0,0 +1,141 @@
+package space.gorogoro.frameguard.loadgen;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import space.gorogoro.frameguard.FrameGuardCore;
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardLog;
+import space.gorogoro.frameguard.FrameGuardMetrics;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * SharedStoreCheck
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Runs two servers on one shared store, e.g. two MySQL stores on the same database, and checks
+ * that the owners and materials of their locks come back unchanged on both and on a third server.
+ * Names are made unique per run, so the database may hold data of earlier runs.
+ */
+public final class SharedStoreCheck {
+  private static final long FLUSH_TIMEOUT = 30000L;
+
+  private final String world;
+  private final UUID alice;
+  private final UUID bob;
+  private final String aliceMaterial;
+  private final String bobMaterial;
+  private final Queue<Runnable> mainThread = new ConcurrentLinkedQueue<Runnable>();
+
+  /**
+   * Constructor of SharedStoreCheck.
+   */
+  private SharedStoreCheck() {
+    long run = System.nanoTime();
+    world = "shared_" + run;
+    alice = new UUID(run, 1);
+    bob = new UUID(run, 2);
+    aliceMaterial = "ALICE_" + run;
+    bobMaterial = "BOB_" + run;
+  }
+
+  /**
+   * Check stores. They are opened and closed here.
+   * @param FrameGuardLockStore Store of the first server
+   * @param FrameGuardLockStore Store of the second server, on the same database
+   * @param FrameGuardLockStore Store of a server started afterwards, on the same database
+   * @throws FrameGuardStoreException
+   * @throws IllegalStateException A result is wrong.
+   */
+  public static void run(FrameGuardLockStore first, FrameGuardLockStore second, FrameGuardLockStore third) throws FrameGuardStoreException {
+    new SharedStoreCheck().check(first, second, third);
+  }
+
+  /**
+   * Run the checks in order.
+   * @param FrameGuardLockStore Store of the first server
+   * @param FrameGuardLockStore Store of the second server
+   * @param FrameGuardLockStore Store of the third server
+   * @throws FrameGuardStoreException
+   */
+  private void check(FrameGuardLockStore first, FrameGuardLockStore second, FrameGuardLockStore third) throws FrameGuardStoreException {
+    // Both servers start before either one locks, their dictionaries see the same rows.
+    FrameGuardCore a = open(first);
+    FrameGuardCore b = open(second);
+    expect("lock on first", true, a.lock(world, 1, 64, 1, alice, "alice", "NORTH", 1, 64, 0, aliceMaterial));
+    expect("lock on second", true, b.lock(world, 40, 64, 40, bob, "bob", "SOUTH", 40, 64, 41, bobMaterial));
+    close(b);
+
+    // The first server reads the lock of the second one with a user and a material it has not seen.
+    expect("owner of second on first", "bob", a.getOwnerName(world, 40, 64, 40));
+    expect("material of second on first", bobMaterial, a.getLockRecord(world, 40, 64, 40).getAttachedMaterial());
+    expect("owner of first on first", "alice", a.getOwnerName(world, 1, 64, 1));
+    close(a);
+
+    FrameGuardCore c = open(third);
+    expect("owner of first on third", "alice", c.getOwnerName(world, 1, 64, 1));
+    expect("owner of second on third", "bob", c.getOwnerName(world, 40, 64, 40));
+    FrameGuardLockRecord aliceRecord = c.getLockRecord(world, 1, 64, 1);
+    FrameGuardLockRecord bobRecord = c.getLockRecord(world, 40, 64, 40);
+    expect("material of first on third", aliceMaterial, aliceRecord.getAttachedMaterial());
+    expect("material of second on third", bobMaterial, bobRecord.getAttachedMaterial());
+    expect("owners differ", false, aliceRecord.getOwnerId() == bobRecord.getOwnerId());
+
+    // A user left without lock keeps its id, another server may still hold it.
+    expect("unlock on third", true, c.unlock(world, 1, 64, 1, alice, false));
+    close(c);
+    c = open(third);
+    expect("owner kept", true, c.getOwnerFilter(alice) != null);
+    expect("lock again on third", true, c.lock(world, 2, 64, 1, alice, "alice", "NORTH", 2, 64, 0, aliceMaterial));
+    expect("same id again", aliceRecord.getOwnerId(), c.getLockRecord(world, 2, 64, 1).getOwnerId());
+    close(c);
+  }
+
+  /**
+   * Open core on store. Callbacks for the main thread run when the core is closed.
+   * @param FrameGuardLockStore Store
+   * @return FrameGuardCore Core
+   * @throws FrameGuardStoreException
+   */
+  private FrameGuardCore open(FrameGuardLockStore store) throws FrameGuardStoreException {
+    FrameGuardCore core = new FrameGuardCore(FrameGuardLog.getLogger(), new FrameGuardMetrics(false));
+    core.open(store, new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        mainThread.add(command);
+      }
+    });
+    return core;
+  }
+
+  /**
+   * Commit the queued writes of core and close it.
+   * @param FrameGuardCore Core
+   */
+  private void close(FrameGuardCore core) {
+    core.close(FLUSH_TIMEOUT);
+    Runnable callback;
+    while((callback = mainThread.poll()) != null){
+      callback.run();
+    }
+  }
+
+  /**
+   * Compare result.
+   * @param String Name of the check
+   * @param Object Expected value
+   * @param Object Actual value
+   */
+  private static void expect(String name, Object expected, Object actual) {
+    if(expected == null ? actual != null : !expected.equals(actual)){
+      throw new IllegalStateException(name + ": expected " + expected + " but was " + actual);
+    }
+    System.out.println("ok " + name);
+  }
+}
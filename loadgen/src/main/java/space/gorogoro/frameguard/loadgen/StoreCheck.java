@@ -0,0 +1,215 @@
+package space.gorogoro.frameguard.loadgen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import space.gorogoro.frameguard.FrameGuardLockFilter;
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+import space.gorogoro.frameguard.FrameGuardLockStore;
+import space.gorogoro.frameguard.FrameGuardStoreException;
+
+/*
+ * StoreCheck
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Runs every operation of a store once on a small data set and compares the results,
+ * e.g. the MySQL store against H2 in MySQL mode. The store must be empty.
+ */
+public final class StoreCheck {
+  private static final long DAY = 86400000L;
+  private static final String[] FACES = {"NORTH", "EAST", "UP", "DOWN"};
+  private static final String[] MATERIALS = {"STONE", "GLASS"};
+
+  private final FrameGuardLockStore store;
+  private final boolean shared;
+  private final List<Integer> worldIds = new ArrayList<Integer>();
+  private final List<FrameGuardLockRecord> records = new ArrayList<FrameGuardLockRecord>();
+
+  /**
+   * Constructor of StoreCheck.
+   * @param FrameGuardLockStore Store
+   * @param boolean true:the store is shared, users without lock are kept
+   */
+  private StoreCheck(FrameGuardLockStore store, boolean shared) {
+    this.store = store;
+    this.shared = shared;
+  }
+
+  /**
+   * Check store. It is opened and closed here.
+   * @param FrameGuardLockStore Empty store
+   * @param boolean true:the store is shared by several servers, users without lock are kept
+   * @throws FrameGuardStoreException
+   * @throws IllegalStateException A result is wrong.
+   */
+  public static void run(FrameGuardLockStore store, boolean shared) throws FrameGuardStoreException {
+    store.open();
+    try{
+      new StoreCheck(store, shared).check();
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Get owner of test user.
+   * @param int User id
+   * @return UUID Owner
+   */
+  private static UUID getUuid(int userId) {
+    return new UUID(0x46, userId);
+  }
+
+  /**
+   * Run the checks in order, each one works on the result of the one before.
+   * @throws FrameGuardStoreException
+   */
+  private void check() throws FrameGuardStoreException {
+    long now = System.currentTimeMillis();
+    store.putWorld(1, "world");
+    store.putWorld(2, "world_nether");
+    for(int userId = 1; userId <= 3; userId++){
+      store.putUser(userId, getUuid(userId), "player" + userId);
+    }
+    // Chunk -1,-1 of user 1, four locks are expired and four are purged later.
+    for(int i = 0; i < 16; i++){
+      long createdAt = i < 4 ? now - 10 * DAY : i < 8 ? now - 3 * DAY : now;
+      put(1, new FrameGuardLockRecord(-16 + i, 64 + i, -1 - i, 1, FACES[i % 4], -16 + i, 64 + i, -2 - i, MATERIALS[i % 2]), createdAt);
+    }
+    // Chunk 0,0 of user 2 below y 0.
+    for(int i = 0; i < 16; i++){
+      put(1, new FrameGuardLockRecord(i, -60 + i, 15 - i, 2, FACES[i % 4], i, -61 + i, 15 - i, MATERIALS[i % 2]), now);
+    }
+    // Far away in the other world.
+    for(int i = 0; i < 4; i++){
+      put(2, new FrameGuardLockRecord(100000 + i, 319, -100000, 3, "SOUTH", 100000 + i, 319, -100001, "OBSIDIAN"), now);
+    }
+    store.commit();
+
+    for(int i = 0; i < records.size(); i++){
+      FrameGuardLockRecord record = records.get(i);
+      expect("get", record, store.getLock(worldIds.get(i), record.getX(), record.getY(), record.getZ()));
+    }
+    expect("get missing", null, store.getLock(1, 0, 0, 0));
+
+    expect("chunk -1,-1", 16, countChunk(1, -1, -1));
+    expect("chunk 0,0", 16, countChunk(1, 0, 0));
+    expect("chunk -1,0", 0, countChunk(1, -1, 0));
+    expect("chunk far", 4, countChunk(2, 100000 >> 4, -100000 >> 4));
+
+    expect("transfer area", 16, store.transferLocks(FrameGuardLockFilter.area(1, 0, -64, 0, 15, 320, 15), 3, getUuid(3), "player3"));
+    expect("transferred owner", 3, store.getLock(1, 0, -60, 15).getOwnerId());
+    expect("transfer owner", 20, store.transferLocks(FrameGuardLockFilter.owner(3), 2, getUuid(2), "player2"));
+    expect("users after transfer", shared ? 3 : 2, countUsers());
+
+    final int[] visited = {0};
+    expect("expire", 4, store.expire(now - 5 * DAY, 100, new FrameGuardLockStore.LockVisitor() {
+      @Override
+      public void visit(int worldId, FrameGuardLockRecord record) {
+        visited[0]++;
+      }
+    }));
+    expect("expire visited", 4, visited[0]);
+
+    final int[] purged = {0};
+    expect("purge", 4, store.purge(2, 3, new FrameGuardLockStore.PurgeListener() {
+      @Override
+      public void purged(int worldId, FrameGuardLockRecord record) {
+        purged[0]++;
+      }
+
+      @Override
+      public void progress(int purgedCount) {
+      }
+    }));
+    expect("purge listener", 4, purged[0]);
+    expect("chunk -1,-1 after purge", 8, countChunk(1, -1, -1));
+
+    final Set<String> exported = new HashSet<String>();
+    store.exportLocks(new FrameGuardLockStore.ExportVisitor() {
+      @Override
+      public void visit(String worldName, UUID uuid, String playerName, FrameGuardLockRecord record, long createdAt) {
+        int userId = (int)uuid.getLeastSignificantBits();
+        if(!playerName.equals("player" + userId) || createdAt <= 0){
+          throw new IllegalStateException("export: broken row " + worldName + " " + uuid + " " + playerName + " " + createdAt);
+        }
+        exported.add(worldName + " " + record.getX() + " " + record.getY() + " " + record.getZ() + " " + record.getAttachedMaterial());
+      }
+    });
+    expect("export", 28, exported.size());
+    expect("export far", true, exported.contains("world_nether 100003 319 -100000 OBSIDIAN"));
+
+    expect("remove world", 4, store.removeLocks(FrameGuardLockFilter.world(2)));
+    expect("chunk far after remove", 0, countChunk(2, 100000 >> 4, -100000 >> 4));
+  }
+
+  /**
+   * Put lock and remember it.
+   * @param int World id
+   * @param FrameGuardLockRecord Lock record
+   * @param long Created time (milliseconds)
+   * @throws FrameGuardStoreException
+   */
+  private void put(int worldId, FrameGuardLockRecord record, long createdAt) throws FrameGuardStoreException {
+    store.putLock(worldId, record, createdAt);
+    worldIds.add(worldId);
+    records.add(record);
+  }
+
+  /**
+   * Count locks of chunk and check they are inside it.
+   * @param int World id
+   * @param final int Chunk x
+   * @param final int Chunk z
+   * @return int Number of locks
+   * @throws FrameGuardStoreException
+   */
+  private int countChunk(int worldId, final int chunkX, final int chunkZ) throws FrameGuardStoreException {
+    final int[] count = {0};
+    store.forEachLockInChunk(worldId, chunkX, chunkZ, new FrameGuardLockStore.LockVisitor() {
+      @Override
+      public void visit(int worldId, FrameGuardLockRecord record) {
+        if(record.getX() >> 4 != chunkX || record.getZ() >> 4 != chunkZ){
+          throw new IllegalStateException("chunk " + chunkX + "," + chunkZ + ": lock outside at " + record.getX() + "," + record.getZ());
+        }
+        count[0]++;
+      }
+    });
+    return count[0];
+  }
+
+  /**
+   * Count users.
+   * @return int Number of users
+   * @throws FrameGuardStoreException
+   */
+  private int countUsers() throws FrameGuardStoreException {
+    final int[] count = {0};
+    store.forEachUser(new FrameGuardLockStore.UserVisitor() {
+      @Override
+      public void visit(int id, UUID uuid, String playerName) {
+        count[0]++;
+      }
+    });
+    return count[0];
+  }
+
+  /**
+   * Compare result.
+   * @param String Name of the check
+   * @param Object Expected value
+   * @param Object Actual value
+   */
+  private static void expect(String name, Object expected, Object actual) {
+    if(expected == null ? actual != null : !expected.equals(actual)){
+      throw new IllegalStateException(name + ": expected " + expected + " but was " + actual);
+    }
+    System.out.println("ok " + name);
+  }
+}
@@ -0,0 +1,172 @@
+package space.gorogoro.frameguard.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import space.gorogoro.frameguard.FrameGuardLockRecord;
+
+/*
+ * SyntheticEvents
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Synthetic event stream over a square of side x side chunks around chunk 0,0 holding
+ * framesPerChunk locked frames each, at y=64 facing north onto the block at z+1.
+ * Tick 0 loads every chunk. Half of the block events hit a frame, its attached block
+ * or a side of it, the rest hit random blocks of the square.
+ */
+public class SyntheticEvents {
+  public static final String WORLD = "world";
+  public static final int Y = 64;
+  private static final String[] PISTON_FACES = {"NORTH", "EAST", "SOUTH", "WEST", "UP", "DOWN"};
+
+  private final Random random;
+  private final int side;
+  private final int framesPerChunk;
+  private final int players;
+
+  /**
+   * Constructor of SyntheticEvents.
+   * @param long Seed
+   * @param int Chunks on a side
+   * @param int Frames in a chunk, at most 64
+   * @param int Number of players
+   */
+  public SyntheticEvents(long seed, int side, int framesPerChunk, int players) {
+    this.random = new Random(seed);
+    this.side = side;
+    this.framesPerChunk = Math.min(framesPerChunk, 64);
+    this.players = players;
+  }
+
+  /**
+   * Get number of frames.
+   * @return int Number of frames
+   */
+  public int getFrameCount() {
+    return side * side * framesPerChunk;
+  }
+
+  /**
+   * Get frame number i, owned by player i % players.
+   * @param int Number of frame
+   * @return FrameGuardLockRecord Lock record, owner id is player + 1
+   */
+  public FrameGuardLockRecord getFrame(int i) {
+    int chunk = i / framesPerChunk;
+    int slot = i % framesPerChunk;
+    int x = (chunk % side) * 16 + (slot % 8) * 2;
+    int z = (chunk / side) * 16 + (slot / 8) * 2;
+    return new FrameGuardLockRecord(x, Y, z, i % players + 1, "NORTH", x, Y, z + 1, "STONE");
+  }
+
+  /**
+   * Generate events.
+   * @param int Number of ticks
+   * @param int Events in a tick
+   * @return List<LoadEvent> Events in order of tick
+   */
+  public List<LoadEvent> generate(int ticks, int eventsPerTick) {
+    List<LoadEvent> events = new ArrayList<LoadEvent>(side * side + ticks * eventsPerTick);
+    for(int cx = 0; cx < side; cx++){
+      for(int cz = 0; cz < side; cz++){
+        events.add(new LoadEvent(0, LoadEvent.Type.CHUNK_LOAD, WORLD, cx, 0, cz, 0, null));
+      }
+    }
+    for(int tick = 1; tick <= ticks; tick++){
+      for(int n = 0; n < eventsPerTick; n++){
+        addEvent(events, tick);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Add a random event. Mix: break 40%, place 20%, interact 10%, damage 5%, burn 5%,
+   * piston 8%, explode 1%, lock 3%, unlock 2%, chunk unloaded and loaded again 6%.
+   * @param List<LoadEvent> Events
+   * @param int Tick
+   */
+  private void addEvent(List<LoadEvent> events, int tick) {
+    int roll = random.nextInt(100);
+    int player = random.nextInt(players);
+    if(roll < 40){
+      events.add(block(tick, LoadEvent.Type.BREAK, player, null));
+    }else if(roll < 60){
+      events.add(block(tick, LoadEvent.Type.PLACE, player, null));
+    }else if(roll < 70){
+      events.add(hanging(tick, LoadEvent.Type.INTERACT, player));
+    }else if(roll < 75){
+      events.add(hanging(tick, LoadEvent.Type.DAMAGE, player));
+    }else if(roll < 80){
+      events.add(block(tick, LoadEvent.Type.BURN, 0, null));
+    }else if(roll < 88){
+      events.add(block(tick, LoadEvent.Type.PISTON, 1 + random.nextInt(12), PISTON_FACES[random.nextInt(PISTON_FACES.length)]));
+    }else if(roll < 89){
+      events.add(block(tick, LoadEvent.Type.EXPLODE, 2 + random.nextInt(3), null));
+    }else if(roll < 92){
+      // New frames go above the generated ones.
+      int x = random.nextInt(side * 16);
+      int z = random.nextInt(side * 16);
+      events.add(new LoadEvent(tick, LoadEvent.Type.LOCK, WORLD, x, Y + 8 + random.nextInt(32), z, player, null));
+    }else if(roll < 94){
+      FrameGuardLockRecord frame = getFrame(random.nextInt(getFrameCount()));
+      int unlocker = random.nextBoolean() ? frame.getOwnerId() - 1 : player;
+      events.add(new LoadEvent(tick, LoadEvent.Type.UNLOCK, WORLD, frame.getX(), frame.getY(), frame.getZ(), unlocker, null));
+    }else{
+      int cx = random.nextInt(side);
+      int cz = random.nextInt(side);
+      events.add(new LoadEvent(tick, LoadEvent.Type.CHUNK_UNLOAD, WORLD, cx, 0, cz, 0, null));
+      events.add(new LoadEvent(tick, LoadEvent.Type.CHUNK_LOAD, WORLD, cx, 0, cz, 0, null));
+    }
+  }
+
+  /**
+   * Event on a block, near a frame half of the time.
+   * @param int Tick
+   * @param LoadEvent.Type Type
+   * @param int Argument
+   * @param String Face or null
+   * @return LoadEvent Event
+   */
+  private LoadEvent block(int tick, LoadEvent.Type type, int arg, String face) {
+    if(random.nextBoolean()){
+      FrameGuardLockRecord frame = getFrame(random.nextInt(getFrameCount()));
+      int x = frame.getX();
+      int z = frame.getZ();
+      switch(random.nextInt(4)){
+        case 0:
+          break;
+        case 1:
+          z = frame.getAttachedZ();
+          break;
+        case 2:
+          x += random.nextBoolean() ? 1 : -1;
+          break;
+        default:
+          z--;
+          break;
+      }
+      return new LoadEvent(tick, type, WORLD, x, Y, z, arg, face);
+    }
+    return new LoadEvent(tick, type, WORLD, random.nextInt(side * 16), 1 + random.nextInt(254), random.nextInt(side * 16), arg, face);
+  }
+
+  /**
+   * Event on a wall hanging, on a locked frame 3 times in 4.
+   * @param int Tick
+   * @param LoadEvent.Type Type
+   * @param int Player
+   * @return LoadEvent Event
+   */
+  private LoadEvent hanging(int tick, LoadEvent.Type type, int player) {
+    if(random.nextInt(4) > 0){
+      FrameGuardLockRecord frame = getFrame(random.nextInt(getFrameCount()));
+      return new LoadEvent(tick, type, WORLD, frame.getX(), frame.getY(), frame.getZ(), player, null);
+    }
+    return new LoadEvent(tick, type, WORLD, random.nextInt(side * 16), Y + 1, random.nextInt(side * 16), player, null);
+  }
+}
@@ -17,8 +17,35 @@ import org.bukkit.plugin.java.JavaPlugin;
  * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
  */
 public class FrameGuard extends JavaPlugin{
+  private volatile FrameGuardConfig fgconfig;
+  private FrameGuardMetrics fgmetrics;
   private FrameGuardDatabase fgdatabase;
   private FrameGuardCommand fgcommand;
+  private FrameGuardSweeper fgsweeper;
+  private FrameGuardHangingIndex fghangingindex;
+  private FrameGuardPunchSessions fgpunchsessions;
+  
+  /**
+   * Get FrameGuardConfig instance.
+   */
+  public FrameGuardConfig getFgConfig() {
+    return fgconfig;
+  }
+  
+  /**
+   * Read config.yml again and replace FrameGuardConfig at once.
+   */
+  public void reloadFgConfig() {
+    reloadConfig();
+    fgconfig = new FrameGuardConfig(getConfig());
+  }
+  
+  /**
+   * Get FrameGuardMetrics instance.
+   */
+  public FrameGuardMetrics getFgMetrics() {
+    return fgmetrics;
+  }
   
   /**
    * Get FrameGuardDatabase instance.
@@ -34,6 +61,27 @@ public class FrameGuard extends JavaPlugin{
     return fgcommand;
   }
   
+  /**
+   * Get FrameGuardSweeper instance.
+   */
+  public FrameGuardSweeper getFgSweeper() {
+    return fgsweeper;
+  }
+  
+  /**
+   * Get FrameGuardHangingIndex instance.
+   */
+  public FrameGuardHangingIndex getFgHangingIndex() {
+    return fghangingindex;
+  }
+  
+  /**
+   * Get FrameGuardPunchSessions instance.
+   */
+  public FrameGuardPunchSessions getFgPunchSessions() {
+    return fgpunchsessions;
+  }
+  
   /**
    * JavaPlugin method onEnable.
    */
@@ -48,17 +96,37 @@ public class FrameGuard extends JavaPlugin{
       if(!configFile.exists()){
         saveDefaultConfig();
       }
-      getLogger().log(Level.INFO, getConfig().getString("message-enable"));
+      FrameGuardLog.setLogger(getLogger());
+      fgconfig = new FrameGuardConfig(getConfig());
+      fgmetrics = new FrameGuardMetrics(fgconfig.isMetrics());
+      getLogger().log(Level.INFO, getFgConfig().getMessageEnable().getText());
       
       // Register event listener.
       PluginManager pm = this.getServer().getPluginManager();
       HandlerList.unregisterAll(this);    // clean up
       pm.registerEvents(new FrameGuardListener(this), this);
       
+      // Index wall hangings of the loaded chunks.
+      fghangingindex = new FrameGuardHangingIndex();
+      fghangingindex.loadWorlds(getServer().getWorlds());
+      
       // Initialize the database.
+      if(fgsweeper != null){
+        fgsweeper.stop();
+      }
+      if(fgdatabase != null){
+        fgdatabase.closeCon();
+      }
       fgdatabase = new FrameGuardDatabase(this);
       fgdatabase.initialize();
       
+      // Start expiry of old locks.
+      fgsweeper = new FrameGuardSweeper(this);
+      fgsweeper.start();
+      
+      // Sessions waiting for punch.
+      fgpunchsessions = new FrameGuardPunchSessions(getFgConfig().getPunchTimeout());
+      
       // Instance prepared of FrameGuardCommand.
       fgcommand = new FrameGuardCommand(this);
       
@@ -75,12 +143,24 @@ public class FrameGuard extends JavaPlugin{
     try{
       if( command.getName().equals("fglock") && (sender.hasPermission("frameguard.fglock") || sender.isOp()) ) { 
         return fgcommand.fglock(sender, args);
+      }else if( command.getName().equals("fglockarea") && (sender.hasPermission("frameguard.fglockarea") || sender.isOp()) ) {
+        return fgcommand.fglockarea(sender, args);
       }else if( command.getName().equals("fgunlock") && (sender.hasPermission("frameguard.fgunlock") || sender.isOp()) ) {
         return fgcommand.fgunlock(sender, args);
       }else if( command.getName().equals("fginfo") && (sender.hasPermission("frameguard.fginfo") || sender.isOp()) ) {
         return fgcommand.fginfo(sender, args);
+      }else if( command.getName().equals("fgunlockall") && sender.isOp() ) {
+        return fgcommand.fgunlockall(sender, args);
+      }else if( command.getName().equals("fgtransfer") && sender.isOp() ) {
+        return fgcommand.fgtransfer(sender, args);
       }else if( command.getName().equals("fgpurge") && sender.isOp() ) {
         return fgcommand.fgpurge(sender, args);
+      }else if( command.getName().equals("fgexport") && sender.isOp() ) {
+        return fgcommand.fgexport(sender, args);
+      }else if( command.getName().equals("fgimport") && sender.isOp() ) {
+        return fgcommand.fgimport(sender, args);
+      }else if( command.getName().equals("fgstats") && sender.isOp() ) {
+        return fgcommand.fgstats(sender, args);
       }else if( command.getName().equals("fgreload") && sender.isOp() ) {
         return fgcommand.fgreload(sender, args);
       }else if( command.getName().equals("fgenable") && sender.isOp() ) {
@@ -102,10 +182,13 @@ public class FrameGuard extends JavaPlugin{
   @Override
   public void onDisable(){
     try{
+      if(fgsweeper != null){
+        fgsweeper.stop();
+      }
       fgdatabase.closeCon();
       // Unregister all event listener.
       HandlerList.unregisterAll(this);
-      getLogger().log(Level.INFO, getConfig().getString("message-disable"));
+      getLogger().log(Level.INFO, getFgConfig().getMessageDisable().getText());
     } catch (Exception e){
       FrameGuardUtility.logStackTrace(e);
     }
@@ -0,0 +1,409 @@
+package space.gorogoro.frameguard;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/*
+ * FrameGuardCommand
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardCommand {
+  private FrameGuard frameguard;
+
+  /**
+   * Constructor of FrameGuardCommand.
+   * @param FrameGuard FrameGuard
+   */
+  public FrameGuardCommand(FrameGuard frameGuard) {
+    try{
+      this.frameguard = frameGuard;
+    } catch (Exception e){
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Processing of command fglock.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fglock(CommandSender sender, String[] args) {
+    if(!(sender instanceof Player)) {
+      sender.sendMessage(frameguard.getFgConfig().getMessageExecuteCommandsFromChat().getText());
+      return true;
+    }
+    
+    // Wait for punch of player.
+    Player player = (Player)sender;
+    frameguard.getFgPunchSessions().start(player.getUniqueId(), FrameGuardPunchSessions.Action.LOCK);
+    sender.sendMessage(frameguard.getFgConfig().getMessagePleasePunchTheTarget().getText());
+    return true;
+  }
+  
+  /**
+   * Processing of command fglockarea.
+   * /fglockarea <chunk radius> locks around the chunk of the player,
+   * /fglockarea <x1> <y1> <z1> <x2> <y2> <z2> locks inside the cuboid.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fglockarea(CommandSender sender, String[] args) {
+    if(!(sender instanceof Player)) {
+      sender.sendMessage(frameguard.getFgConfig().getMessageExecuteCommandsFromChat().getText());
+      return true;
+    }
+    
+    Player player = (Player)sender;
+    int maxRadius = frameguard.getFgConfig().getBulkLockMaxChunkRadius();
+    int[] n = new int[args.length];
+    try{
+      for(int i = 0; i < args.length; i++){
+        n[i] = Integer.parseInt(args[i]);
+      }
+    } catch (NumberFormatException e){
+      return false;
+    }
+    
+    if(args.length == 1){
+      if(n[0] < 0){
+        return false;
+      }
+      if(n[0] > maxRadius){
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageBulkLockAreaTooLarge());
+        return true;
+      }
+      int chunkX = player.getLocation().getBlockX() >> 4;
+      int chunkZ = player.getLocation().getBlockZ() >> 4;
+      frameguard.getFgDatabase().createLockDataInArea(
+        player,
+        (chunkX - n[0]) << 4,
+        player.getWorld().getMinHeight(),
+        (chunkZ - n[0]) << 4,
+        ((chunkX + n[0]) << 4) + 15,
+        player.getWorld().getMaxHeight() - 1,
+        ((chunkZ + n[0]) << 4) + 15
+      );
+      return true;
+    }
+    
+    if(args.length == 6){
+      int minX = Math.min(n[0], n[3]);
+      int minZ = Math.min(n[2], n[5]);
+      int maxX = Math.max(n[0], n[3]);
+      int maxZ = Math.max(n[2], n[5]);
+      // The cuboid may span as many chunks as the largest radius does.
+      int maxChunks = maxRadius * 2 + 1;
+      if((maxX >> 4) - (minX >> 4) >= maxChunks || (maxZ >> 4) - (minZ >> 4) >= maxChunks){
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageBulkLockAreaTooLarge());
+        return true;
+      }
+      frameguard.getFgDatabase().createLockDataInArea(player, minX, Math.min(n[1], n[4]), minZ, maxX, Math.max(n[1], n[4]), maxZ);
+      return true;
+    }
+    return false;
+  }
+  
+  /**
+   * Processing of command fgunlock.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgunlock(CommandSender sender, String[] args) {
+    if(!(sender instanceof Player)) {
+      sender.sendMessage(frameguard.getFgConfig().getMessageExecuteCommandsFromChat().getText());
+      return true;
+    }
+    
+    // Wait for punch of player.
+    Player player = (Player)sender;
+    frameguard.getFgPunchSessions().start(player.getUniqueId(), FrameGuardPunchSessions.Action.UNLOCK);
+    sender.sendMessage(frameguard.getFgConfig().getMessagePleasePunchTheTarget().getText());
+    return true;
+  }
+
+  /**
+   * Processing of command fgunlockall.
+   * /fgunlockall player <name|uuid>, /fgunlockall world <world> or
+   * /fgunlockall area [world] <x1> <y1> <z1> <x2> <y2> <z2> unlocks every lock selected, loaded or not.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgunlockall(CommandSender sender, String[] args) {
+    FrameGuardLockFilter filter;
+    try{
+      filter = getFilter(sender, args, 0);
+    } catch (IllegalArgumentException e){
+      return false;
+    } catch (PlayerNotFoundException e){
+      FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessagePlayerNotFound(), e.getMessage());
+      return true;
+    }
+    frameguard.getFgDatabase().removeLockDataAll(sender, filter);
+    return true;
+  }
+
+  /**
+   * Processing of command fgtransfer.
+   * /fgtransfer <new owner> followed by the selection of fgunlockall gives every lock selected to the new owner.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgtransfer(CommandSender sender, String[] args) {
+    if(args.length < 1){
+      return false;
+    }
+    FrameGuardLockFilter filter;
+    OfflinePlayer newOwner;
+    try{
+      filter = getFilter(sender, args, 1);
+      newOwner = getOfflinePlayer(args[0]);
+    } catch (IllegalArgumentException e){
+      return false;
+    } catch (PlayerNotFoundException e){
+      FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessagePlayerNotFound(), e.getMessage());
+      return true;
+    }
+    frameguard.getFgDatabase().transferLockDataAll(sender, filter, newOwner, args[0]);
+    return true;
+  }
+
+  /**
+   * Parse the selection of fgunlockall and fgtransfer.
+   * @param CommandSender Sender, its world is used by area without world
+   * @param String[] Arguments
+   * @param int Index of the selection kind
+   * @return FrameGuardLockFilter Filter or null when nothing has been locked there.
+   * @throws IllegalArgumentException The arguments are wrong.
+   * @throws PlayerNotFoundException The selected player is unknown.
+   */
+  private FrameGuardLockFilter getFilter(CommandSender sender, String[] args, int offset) throws PlayerNotFoundException {
+    FrameGuardCore core = frameguard.getFgDatabase().getCore();
+    int rest = args.length - offset - 1;
+    if(rest < 1){
+      throw new IllegalArgumentException();
+    }
+    String kind = args[offset];
+    if(kind.equalsIgnoreCase("player") && rest == 1){
+      return core.getOwnerFilter(getOfflinePlayer(args[offset + 1]).getUniqueId());
+    }
+    if(kind.equalsIgnoreCase("world") && rest == 1){
+      return core.getWorldFilter(args[offset + 1]);
+    }
+    if(kind.equalsIgnoreCase("area") && (rest == 6 || rest == 7)){
+      String world;
+      int first = offset + 1;
+      if(rest == 7){
+        world = args[first++];
+      }else if(sender instanceof Player){
+        world = ((Player)sender).getWorld().getName();
+      }else{
+        throw new IllegalArgumentException();
+      }
+      int[] n = new int[6];
+      for(int i = 0; i < 6; i++){
+        n[i] = Integer.parseInt(args[first + i]);
+      }
+      return core.getAreaFilter(world, n[0], n[1], n[2], n[3], n[4], n[5]);
+    }
+    throw new IllegalArgumentException();
+  }
+
+  /**
+   * Get player by UUID or by the name of a player who has played on this server.
+   * The name is not looked up by getOfflinePlayer(String), which may ask Mojang on the main thread
+   * and makes up a player for a typo.
+   * @param String UUID or player name
+   * @return OfflinePlayer Player
+   * @throws PlayerNotFoundException No player has played with the name.
+   */
+  private OfflinePlayer getOfflinePlayer(String nameOrUuid) throws PlayerNotFoundException {
+    try{
+      return frameguard.getServer().getOfflinePlayer(UUID.fromString(nameOrUuid));
+    } catch (IllegalArgumentException e){
+      // Not a UUID, look it up by name.
+    }
+    Player online = frameguard.getServer().getPlayerExact(nameOrUuid);
+    if(online != null){
+      return online;
+    }
+    for(OfflinePlayer player : frameguard.getServer().getOfflinePlayers()){
+      if(player.hasPlayedBefore() && nameOrUuid.equalsIgnoreCase(player.getName())){
+        return player;
+      }
+    }
+    throw new PlayerNotFoundException(nameOrUuid);
+  }
+
+  /**
+   * Thrown when a player name is unknown, the message is the name.
+   */
+  private static class PlayerNotFoundException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor of PlayerNotFoundException.
+     * @param String Player name
+     */
+    private PlayerNotFoundException(String name) {
+      super(name);
+    }
+  }
+
+  /**
+   * Processing of command fginfo.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fginfo(CommandSender sender, String[] args) {
+    if(!(sender instanceof Player)) {
+      sender.sendMessage(frameguard.getFgConfig().getMessageExecuteCommandsFromChat().getText());
+      return true;
+    }
+    
+    // Wait for punch of player.
+    Player player = (Player)sender;
+    frameguard.getFgPunchSessions().start(player.getUniqueId(), FrameGuardPunchSessions.Action.INFO);
+    sender.sendMessage(frameguard.getFgConfig().getMessagePleasePunchTheTarget().getText());
+    return true;
+  }
+
+  
+  /**
+   * Processing of command fgpurge.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgpurge(CommandSender sender, String[] args) {
+    if(args.length == 1){
+      int days;
+      try{
+        days = Integer.parseInt(args[0]);
+      } catch (NumberFormatException e){
+        return false;
+      }
+      if(days < 0){
+        return false;
+      }
+      frameguard.getFgDatabase().purgeData(sender, days);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Processing of command fgexport.
+   * /fgexport <file> writes all locks to the file in the plugin folder, gzipped when the name ends with .gz.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgexport(CommandSender sender, String[] args) {
+    if(args.length == 1 && isPlainFileName(args[0])){
+      frameguard.getFgDatabase().exportData(sender, args[0]);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Processing of command fgimport.
+   * /fgimport <file> reads locks from the file in the plugin folder, locks at the same positions are replaced.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgimport(CommandSender sender, String[] args) {
+    if(args.length == 1 && isPlainFileName(args[0])){
+      frameguard.getFgDatabase().importData(sender, args[0]);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Check that the name stays in the plugin folder.
+   * @param String File name
+   * @return boolean true:plain file name false:path
+   */
+  private static boolean isPlainFileName(String fileName) {
+    return !fileName.isEmpty() && !fileName.contains("/") && !fileName.contains("\\") && !fileName.startsWith(".");
+  }
+
+  /**
+   * Processing of command fgstats.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgstats(CommandSender sender, String[] args) {
+    FrameGuardMetrics metrics = frameguard.getFgMetrics();
+    if(!metrics.isEnabled()){
+      FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageMetricsDisabled());
+      return true;
+    }
+    double seconds = metrics.getWindowSeconds();
+    sender.sendMessage(String.format("[FrameGuard] Last %.0f seconds (rate, p50, p99, max):", seconds));
+    
+    List<FrameGuardMetrics.Summary> handlers = metrics.getHandlerSummaries();
+    sender.sendMessage("Event handlers:");
+    for(FrameGuardMetrics.Summary summary : handlers){
+      sender.sendMessage(formatSummary(summary, seconds));
+    }
+    sender.sendMessage("Lock queries:");
+    for(FrameGuardMetrics.Summary summary : metrics.getQuerySummaries()){
+      sender.sendMessage(formatSummary(summary, seconds));
+    }
+    
+    long hits = metrics.getChunkHits();
+    long misses = metrics.getChunkMisses();
+    sender.sendMessage(String.format("Loaded chunk hits: %d, misses: %d (%.1f%% hit)", hits, misses,
+      hits + misses == 0 ? 100.0 : hits * 100.0 / (hits + misses)));
+    sender.sendMessage(String.format("Write queue: %d now, %d max", frameguard.getFgDatabase().getWriteQueueSize(), metrics.getMaxWriteQueueDepth()));
+    FrameGuardSweeper sweeper = frameguard.getFgSweeper();
+    if(sweeper != null && sweeper.isEnabled()){
+      sender.sendMessage(String.format("Retention sweeper: %d runs, %d expired, last run %d in %.1f ms, %.0f locks/s",
+        sweeper.getRuns(), sweeper.getExpiredTotal(), sweeper.getLastExpired(), sweeper.getLastNanos() / 1000000.0, sweeper.getThroughput()));
+    }
+    if(!handlers.isEmpty()){
+      FrameGuardMetrics.Summary slowest = handlers.get(0);
+      sender.sendMessage(String.format("Slowest handler: %s (p99 %.1f us, %.1f ms in total)", slowest.getLabel(),
+        slowest.getP99Nanos() / 1000.0, slowest.getTotalNanos() / 1000000.0));
+    }
+    return true;
+  }
+  
+  /**
+   * Format one line of fgstats.
+   * @param FrameGuardMetrics.Summary Summary
+   * @param double Seconds of the window
+   * @return String Line
+   */
+  private static String formatSummary(FrameGuardMetrics.Summary summary, double seconds) {
+    return String.format("  %s: %.1f/s, %.1f us, %.1f us, %.1f us", summary.getLabel(), summary.getCount() / seconds,
+      summary.getP50Nanos() / 1000.0, summary.getP99Nanos() / 1000.0, summary.getMaxNanos() / 1000.0);
+  }
+  
+  /**
+   * Processing of command fgreload.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgreload(CommandSender sender, String[] args) {
+    frameguard.reloadFgConfig();
+    FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageCommandReload());
+    return true;
+  }
+
+  /**
+   * Processing of command fgenable.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgenable(CommandSender sender, String[] args) {
+    frameguard.onEnable();
+    FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageCommandEnable());
+    return true;
+  }
+
+  /**
+   * Processing of command fgdisable.
+   * @return boolean true:Success false:Display the usage dialog set in plugin.yml
+   */
+  public boolean fgdisable(CommandSender sender, String[] args) {
+    frameguard.onDisable();
+    FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageCommandDisable());
+    return true;
+  }
+}
\ No newline at end of file
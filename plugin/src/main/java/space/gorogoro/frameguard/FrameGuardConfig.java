@@ -0,0 +1,553 @@
+package space.gorogoro.frameguard;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/*
+ * FrameGuardConfig
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Immutable snapshot of config.yml. It is read once and replaced as a whole by fgreload,
+ * so that event handlers do not walk the YAML tree.
+ */
+public final class FrameGuardConfig {
+  private final boolean debugMode;
+  private final String storage;
+  private final String mysqlUrl;
+  private final String mysqlUser;
+  private final String mysqlPassword;
+  private final int mysqlPoolSize;
+  private final int journalCompactThreshold;
+  private final int queryTimeout;
+  private final int writeFlushTimeout;
+  private final int purgeBatchSize;
+  private final int importBatchSize;
+  private final int retentionDays;
+  private final int retentionSweepInterval;
+  private final int retentionSweepBatchSize;
+  private final int punchTimeout;
+  private final int bulkLockMaxChunkRadius;
+  private final boolean metrics;
+  private final FrameGuardMessage messageEnable;
+  private final FrameGuardMessage messageDisable;
+  private final FrameGuardMessage messageCommandReload;
+  private final FrameGuardMessage messageCommandEnable;
+  private final FrameGuardMessage messageCommandDisable;
+  private final FrameGuardMessage messageLocked;
+  private final FrameGuardMessage messageUnlocked;
+  private final FrameGuardMessage messageInformation;
+  private final FrameGuardMessage messageCanNotLockInLiquids;
+  private final FrameGuardMessage messageCanNotLockHangingPlaceIsLiquidOrAir;
+  private final FrameGuardMessage messageAlreadyLocked;
+  private final FrameGuardMessage messageNoLockInformation;
+  private final FrameGuardMessage messageLockByPlayer;
+  private final FrameGuardMessage messageBlockIsLocked;
+  private final FrameGuardMessage messageBlockHasLockedWallHanging;
+  private final FrameGuardMessage messageExecuteCommandsFromChat;
+  private final FrameGuardMessage messagePleasePunchTheTarget;
+  private final FrameGuardMessage messagePurgeStarted;
+  private final FrameGuardMessage messagePurgeProgress;
+  private final FrameGuardMessage messagePurgeTheData;
+  private final FrameGuardMessage messagePurgeFailed;
+  private final FrameGuardMessage messageMetricsDisabled;
+  private final FrameGuardMessage messageBulkLocked;
+  private final FrameGuardMessage messageBulkLockAreaTooLarge;
+  private final FrameGuardMessage messageBulkUnlocked;
+  private final FrameGuardMessage messageBulkTransferred;
+  private final FrameGuardMessage messageBulkFailed;
+  private final FrameGuardMessage messageExportStarted;
+  private final FrameGuardMessage messageExportFinished;
+  private final FrameGuardMessage messageImportStarted;
+  private final FrameGuardMessage messageImportFinished;
+  private final FrameGuardMessage messageStreamProgress;
+  private final FrameGuardMessage messageStreamFailed;
+  private final FrameGuardMessage messageStreamBusy;
+  private final FrameGuardMessage messageFileNotFound;
+  private final FrameGuardMessage messagePlayerNotFound;
+
+  /**
+   * Constructor of FrameGuardConfig.
+   * @param FileConfiguration Loaded config.yml
+   */
+  public FrameGuardConfig(FileConfiguration config) {
+    debugMode = config.getBoolean("setting-debug-mode");
+    storage = config.getString("setting-storage", "sqlite");
+    mysqlUrl = config.getString("setting-mysql-url");
+    mysqlUser = config.getString("setting-mysql-user");
+    mysqlPassword = config.getString("setting-mysql-password");
+    mysqlPoolSize = config.getInt("setting-mysql-pool-size");
+    journalCompactThreshold = config.getInt("setting-journal-compact-threshold");
+    queryTimeout = config.getInt("setting-query-timeout");
+    writeFlushTimeout = config.getInt("setting-write-flush-timeout");
+    purgeBatchSize = Math.max(config.getInt("setting-purge-batch-size"), 1);
+    importBatchSize = Math.max(config.getInt("setting-import-batch-size", 10000), 1);
+    retentionDays = config.getInt("setting-retention-days");
+    retentionSweepInterval = Math.max(config.getInt("setting-retention-sweep-interval"), 1);
+    retentionSweepBatchSize = Math.max(config.getInt("setting-retention-sweep-batch-size"), 1);
+    punchTimeout = config.getInt("setting-punch-timeout");
+    bulkLockMaxChunkRadius = Math.max(config.getInt("setting-bulk-lock-max-chunk-radius", 8), 0);
+    metrics = config.getBoolean("setting-metrics");
+
+    messageEnable = new FrameGuardMessage(config.getString("message-enable"), null);
+    messageDisable = new FrameGuardMessage(config.getString("message-disable"), null);
+    messageCommandReload = new FrameGuardMessage(config.getString("message-command-reload"), null);
+    messageCommandEnable = new FrameGuardMessage(config.getString("message-command-enable"), null);
+    messageCommandDisable = new FrameGuardMessage(config.getString("message-command-disable"), null);
+    messageLocked = new FrameGuardMessage(config.getString("message-locked"), null);
+    messageUnlocked = new FrameGuardMessage(config.getString("message-unlocked"), null);
+    messageInformation = new FrameGuardMessage(config.getString("message-information"), null);
+    messageCanNotLockInLiquids = new FrameGuardMessage(config.getString("message-can-not-lock-in-liquids"), null);
+    messageCanNotLockHangingPlaceIsLiquidOrAir = new FrameGuardMessage(config.getString("message-can-not-lock-hanging-place-is-liquid-or-air"), null);
+    messageAlreadyLocked = new FrameGuardMessage(config.getString("message-already-locked"), null);
+    messageNoLockInformation = new FrameGuardMessage(config.getString("message-no-lock-information"), null);
+    messageLockByPlayer = new FrameGuardMessage(config.getString("message-lock-by-player"), "__PLAYERNAME__");
+    messageBlockIsLocked = new FrameGuardMessage(config.getString("message-block-is-locked"), null);
+    messageBlockHasLockedWallHanging = new FrameGuardMessage(config.getString("message-block-has-locked-wall-hanging"), null);
+    messageExecuteCommandsFromChat = new FrameGuardMessage(config.getString("message-execute-commands-from-chat"), null);
+    messagePleasePunchTheTarget = new FrameGuardMessage(config.getString("message-please-punch-the-target"), null);
+    messagePurgeStarted = new FrameGuardMessage(config.getString("message-purge-started"), "__DAYS__");
+    messagePurgeProgress = new FrameGuardMessage(config.getString("message-purge-progress"), "__COUNT__");
+    messagePurgeTheData = new FrameGuardMessage(config.getString("message-purge-the-data"), "__DAYS__");
+    messagePurgeFailed = new FrameGuardMessage(config.getString("message-purge-failed"), null);
+    messageMetricsDisabled = new FrameGuardMessage(config.getString("message-metrics-disabled"), null);
+    messageBulkLocked = new FrameGuardMessage(config.getString("message-bulk-locked"), "__COUNT__");
+    messageBulkLockAreaTooLarge = new FrameGuardMessage(config.getString("message-bulk-lock-area-too-large"), null);
+    messageBulkUnlocked = new FrameGuardMessage(config.getString("message-bulk-unlocked"), "__COUNT__");
+    messageBulkTransferred = new FrameGuardMessage(config.getString("message-bulk-transferred"), "__COUNT__");
+    messageBulkFailed = new FrameGuardMessage(config.getString("message-bulk-failed"), null);
+    messageExportStarted = new FrameGuardMessage(config.getString("message-export-started"), "__FILE__");
+    messageExportFinished = new FrameGuardMessage(config.getString("message-export-finished"), "__COUNT__");
+    messageImportStarted = new FrameGuardMessage(config.getString("message-import-started"), "__FILE__");
+    messageImportFinished = new FrameGuardMessage(config.getString("message-import-finished"), "__COUNT__");
+    messageStreamProgress = new FrameGuardMessage(config.getString("message-stream-progress"), "__COUNT__");
+    messageStreamFailed = new FrameGuardMessage(config.getString("message-stream-failed"), null);
+    messageStreamBusy = new FrameGuardMessage(config.getString("message-stream-busy"), null);
+    messageFileNotFound = new FrameGuardMessage(config.getString("message-file-not-found"), "__FILE__");
+    messagePlayerNotFound = new FrameGuardMessage(config.getString("message-player-not-found"), "__PLAYERNAME__");
+  }
+
+  /**
+   * Get setting-debug-mode.
+   * @return boolean Debug mode
+   */
+  public boolean isDebugMode() {
+    return debugMode;
+  }
+
+  /**
+   * Get setting-storage.
+   * @return String Storage name
+   */
+  public String getStorage() {
+    return storage;
+  }
+
+  /**
+   * Get setting-mysql-url.
+   * @return String JDBC url
+   */
+  public String getMysqlUrl() {
+    return mysqlUrl;
+  }
+
+  /**
+   * Get setting-mysql-user.
+   * @return String User
+   */
+  public String getMysqlUser() {
+    return mysqlUser;
+  }
+
+  /**
+   * Get setting-mysql-password.
+   * @return String Password
+   */
+  public String getMysqlPassword() {
+    return mysqlPassword;
+  }
+
+  /**
+   * Get setting-mysql-pool-size.
+   * @return int Maximum number of connections
+   */
+  public int getMysqlPoolSize() {
+    return mysqlPoolSize;
+  }
+
+  /**
+   * Get setting-journal-compact-threshold.
+   * @return int Dead records
+   */
+  public int getJournalCompactThreshold() {
+    return journalCompactThreshold;
+  }
+
+  /**
+   * Get setting-query-timeout.
+   * @return int Seconds
+   */
+  public int getQueryTimeout() {
+    return queryTimeout;
+  }
+
+  /**
+   * Get setting-write-flush-timeout.
+   * @return int Seconds
+   */
+  public int getWriteFlushTimeout() {
+    return writeFlushTimeout;
+  }
+
+  /**
+   * Get setting-purge-batch-size.
+   * @return int Number of locks
+   */
+  public int getPurgeBatchSize() {
+    return purgeBatchSize;
+  }
+
+  /**
+   * Get setting-import-batch-size.
+   * @return int Number of locks
+   */
+  public int getImportBatchSize() {
+    return importBatchSize;
+  }
+
+  /**
+   * Get setting-retention-days.
+   * @return int Days, 0 for disabled
+   */
+  public int getRetentionDays() {
+    return retentionDays;
+  }
+
+  /**
+   * Get setting-retention-sweep-interval.
+   * @return int Ticks
+   */
+  public int getRetentionSweepInterval() {
+    return retentionSweepInterval;
+  }
+
+  /**
+   * Get setting-retention-sweep-batch-size.
+   * @return int Number of locks
+   */
+  public int getRetentionSweepBatchSize() {
+    return retentionSweepBatchSize;
+  }
+
+  /**
+   * Get setting-punch-timeout.
+   * @return int Seconds, 0 for no timeout
+   */
+  public int getPunchTimeout() {
+    return punchTimeout;
+  }
+
+  /**
+   * Get setting-bulk-lock-max-chunk-radius.
+   * @return int Chunks
+   */
+  public int getBulkLockMaxChunkRadius() {
+    return bulkLockMaxChunkRadius;
+  }
+
+  /**
+   * Get setting-metrics.
+   * @return boolean true:record metrics for fgstats
+   */
+  public boolean isMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get message-enable.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageEnable() {
+    return messageEnable;
+  }
+
+  /**
+   * Get message-disable.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageDisable() {
+    return messageDisable;
+  }
+
+  /**
+   * Get message-command-reload.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageCommandReload() {
+    return messageCommandReload;
+  }
+
+  /**
+   * Get message-command-enable.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageCommandEnable() {
+    return messageCommandEnable;
+  }
+
+  /**
+   * Get message-command-disable.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageCommandDisable() {
+    return messageCommandDisable;
+  }
+
+  /**
+   * Get message-locked.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageLocked() {
+    return messageLocked;
+  }
+
+  /**
+   * Get message-unlocked.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageUnlocked() {
+    return messageUnlocked;
+  }
+
+  /**
+   * Get message-information.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageInformation() {
+    return messageInformation;
+  }
+
+  /**
+   * Get message-can-not-lock-in-liquids.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageCanNotLockInLiquids() {
+    return messageCanNotLockInLiquids;
+  }
+
+  /**
+   * Get message-can-not-lock-hanging-place-is-liquid-or-air.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageCanNotLockHangingPlaceIsLiquidOrAir() {
+    return messageCanNotLockHangingPlaceIsLiquidOrAir;
+  }
+
+  /**
+   * Get message-already-locked.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageAlreadyLocked() {
+    return messageAlreadyLocked;
+  }
+
+  /**
+   * Get message-no-lock-information.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageNoLockInformation() {
+    return messageNoLockInformation;
+  }
+
+  /**
+   * Get message-lock-by-player.
+   * @return FrameGuardMessage Message (placeholder __PLAYERNAME__)
+   */
+  public FrameGuardMessage getMessageLockByPlayer() {
+    return messageLockByPlayer;
+  }
+
+  /**
+   * Get message-block-is-locked.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBlockIsLocked() {
+    return messageBlockIsLocked;
+  }
+
+  /**
+   * Get message-block-has-locked-wall-hanging.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBlockHasLockedWallHanging() {
+    return messageBlockHasLockedWallHanging;
+  }
+
+  /**
+   * Get message-execute-commands-from-chat.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageExecuteCommandsFromChat() {
+    return messageExecuteCommandsFromChat;
+  }
+
+  /**
+   * Get message-please-punch-the-target.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessagePleasePunchTheTarget() {
+    return messagePleasePunchTheTarget;
+  }
+
+  /**
+   * Get message-purge-started.
+   * @return FrameGuardMessage Message (placeholder __DAYS__)
+   */
+  public FrameGuardMessage getMessagePurgeStarted() {
+    return messagePurgeStarted;
+  }
+
+  /**
+   * Get message-purge-progress.
+   * @return FrameGuardMessage Message (placeholder __COUNT__)
+   */
+  public FrameGuardMessage getMessagePurgeProgress() {
+    return messagePurgeProgress;
+  }
+
+  /**
+   * Get message-purge-the-data.
+   * @return FrameGuardMessage Message (placeholder __DAYS__)
+   */
+  public FrameGuardMessage getMessagePurgeTheData() {
+    return messagePurgeTheData;
+  }
+
+  /**
+   * Get message-purge-failed.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessagePurgeFailed() {
+    return messagePurgeFailed;
+  }
+
+  /**
+   * Get message-metrics-disabled.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageMetricsDisabled() {
+    return messageMetricsDisabled;
+  }
+
+  /**
+   * Get message-bulk-locked.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBulkLocked() {
+    return messageBulkLocked;
+  }
+
+  /**
+   * Get message-bulk-lock-area-too-large.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBulkLockAreaTooLarge() {
+    return messageBulkLockAreaTooLarge;
+  }
+
+  /**
+   * Get message-bulk-unlocked.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBulkUnlocked() {
+    return messageBulkUnlocked;
+  }
+
+  /**
+   * Get message-bulk-transferred.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBulkTransferred() {
+    return messageBulkTransferred;
+  }
+
+  /**
+   * Get message-bulk-failed.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageBulkFailed() {
+    return messageBulkFailed;
+  }
+  /**
+   * Get message-export-started.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageExportStarted() {
+    return messageExportStarted;
+  }
+
+  /**
+   * Get message-export-finished.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageExportFinished() {
+    return messageExportFinished;
+  }
+
+  /**
+   * Get message-import-started.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageImportStarted() {
+    return messageImportStarted;
+  }
+
+  /**
+   * Get message-import-finished.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageImportFinished() {
+    return messageImportFinished;
+  }
+
+  /**
+   * Get message-stream-progress.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageStreamProgress() {
+    return messageStreamProgress;
+  }
+
+  /**
+   * Get message-stream-failed.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageStreamFailed() {
+    return messageStreamFailed;
+  }
+
+  /**
+   * Get message-stream-busy.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageStreamBusy() {
+    return messageStreamBusy;
+  }
+
+  /**
+   * Get message-file-not-found.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessageFileNotFound() {
+    return messageFileNotFound;
+  }
+
+  /**
+   * Get message-player-not-found.
+   * @return FrameGuardMessage Message
+   */
+  public FrameGuardMessage getMessagePlayerNotFound() {
+    return messagePlayerNotFound;
+  }
+}
@@ -0,0 +1,532 @@
+package space.gorogoro.frameguard;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Hanging;
+import org.bukkit.entity.Player;
+
+/*
+ * FrameGuardDatabase
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Bukkit side of FrameGuardCore: selects the store from config.yml, translates
+ * locations, chunks and players into core calls and reports results to players.
+ */
+public class FrameGuardDatabase {
+  private FrameGuard frameguard;
+  private FrameGuardCore core;
+  private long[] explodeCheck = new long[256];
+  private boolean[] explodeProtected = new boolean[256];
+
+  /**
+   * Constructor of FrameGuardDatabase.
+   * @param FrameGuard FrameGuard
+   */
+  public FrameGuardDatabase(FrameGuard frameGuard) {
+    this.frameguard = frameGuard;
+    this.core = new FrameGuardCore(frameGuard.getLogger(), frameGuard.getFgMetrics());
+  }
+
+  /**
+   * Get FrameGuardCore instance.
+   * @return FrameGuardCore Core
+   */
+  public FrameGuardCore getCore() {
+    return core;
+  }
+
+  /**
+   * Create store selected by setting-storage.
+   * @return FrameGuardLockStore Store
+   */
+  private FrameGuardLockStore createStore(){
+    String storage = frameguard.getFgConfig().getStorage();
+    int queryTimeout = frameguard.getFgConfig().getQueryTimeout();
+    // Create database folder.
+    if(!frameguard.getDataFolder().exists()){
+      frameguard.getDataFolder().mkdir();
+    }
+    if(storage.equalsIgnoreCase("h2")){
+      return new FrameGuardH2Store(new File(frameguard.getDataFolder(), "database"), queryTimeout);
+    }else if(storage.equalsIgnoreCase("mysql")){
+      return new FrameGuardMysqlStore(
+        frameguard.getFgConfig().getMysqlUrl(),
+        frameguard.getFgConfig().getMysqlUser(),
+        frameguard.getFgConfig().getMysqlPassword(),
+        frameguard.getFgConfig().getMysqlPoolSize(),
+        queryTimeout
+      );
+    }else if(storage.equalsIgnoreCase("journal")){
+      return new FrameGuardJournalStore(new File(frameguard.getDataFolder(), "journal"), frameguard.getFgConfig().getJournalCompactThreshold());
+    }else if(storage.equalsIgnoreCase("memory")){
+      frameguard.getLogger().log(Level.WARNING, "setting-storage is memory, lock data is not saved.");
+      return new FrameGuardMemoryStore();
+    }else if(!storage.equalsIgnoreCase("sqlite")){
+      frameguard.getLogger().log(Level.WARNING, "Unknown setting-storage " + storage + ", sqlite is used.");
+    }
+    return new FrameGuardSqliteStore(new File(frameguard.getDataFolder(), "database.db"), queryTimeout);
+  }
+  
+  /**
+   * Flush queued writes and close store.
+   */
+  public void closeCon(){
+    core.close(frameguard.getFgConfig().getWriteFlushTimeout() * 1000L);
+  }
+  
+  /**
+   * Initialize
+   */
+  public void initialize() {
+    try{
+      core.open(createStore(), new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          frameguard.getServer().getScheduler().runTask(frameguard, command);
+        }
+      });
+      loadLoadedChunks();
+    } catch (Exception e){
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Load lock data of all loaded chunks.
+   */
+  public void loadLoadedChunks() {
+    core.unloadAllChunks();
+    for(World world : frameguard.getServer().getWorlds()){
+      for(Chunk chunk : world.getLoadedChunks()){
+        core.loadChunk(world.getName(), chunk.getX(), chunk.getZ(), false);
+      }
+    }
+    frameguard.getLogger().log(Level.INFO, "Loaded " + core.getLoadedLockCount() + " locks.");
+  }
+
+  /**
+   * Load lock data of chunk.
+   * @param Chunk Chunk
+   * @param boolean true:chunk was generated just now
+   */
+  public void loadChunk(Chunk chunk, boolean newChunk) {
+    core.loadChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ(), newChunk);
+  }
+
+  /**
+   * Drop lock data of chunk.
+   * @param Chunk Chunk
+   */
+  public void unloadChunk(Chunk chunk) {
+    core.unloadChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+  }
+
+  /**
+   * Get number of queued writes.
+   * @return int Number of queued writes
+   */
+  public int getWriteQueueSize() {
+    return core.getWriteQueueSize();
+  }
+
+  /**
+   * Finished process punch.
+   * @param Player Player
+   * @param Entity Entity
+   */
+  public void finishPunch(Player player, Entity entity){
+    FrameGuardPunchSessions.Action action = frameguard.getFgPunchSessions().finish(player.getUniqueId());
+    if( action == FrameGuardPunchSessions.Action.LOCK){
+      createLockData(player, entity);
+    }else if( action == FrameGuardPunchSessions.Action.UNLOCK){
+      removeLockData(player, entity);
+    }else if( action == FrameGuardPunchSessions.Action.INFO){
+      informationLockData(player, entity);
+    }
+  }
+  
+  /**
+   * Create lock data.
+   * @param Player Player
+   * @param Entity Entity
+   */
+  public void createLockData(Player player, Entity entity){
+    try {
+      
+      Hanging hanging = (Hanging) entity;
+      if(hanging.getLocation().getBlock().isLiquid()){
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageCanNotLockInLiquids());
+        return;
+      }
+      
+      Block attachedBlock = FrameGuardUtility.getAttachedBlockByHanging(hanging);
+      if(attachedBlock.isEmpty() || attachedBlock.isLiquid()){
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageCanNotLockHangingPlaceIsLiquidOrAir());
+        return;
+      }
+      
+      Location loc = hanging.getLocation();
+      Location attachedLoc = attachedBlock.getLocation();
+      boolean locked = core.lock(
+        loc.getWorld().getName(),
+        loc.getBlockX(),
+        loc.getBlockY(),
+        loc.getBlockZ(),
+        player.getUniqueId(),
+        player.getName(),
+        hanging.getFacing().name(),
+        attachedLoc.getBlockX(),
+        attachedLoc.getBlockY(),
+        attachedLoc.getBlockZ(),
+        attachedBlock.getType().name()
+      );
+      if(locked){
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageLocked());
+      }else{
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageAlreadyLocked());
+      }
+      
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+  
+  /**
+   * Lock every item frame, glow item frame and painting inside cuboid of the player's world
+   * in one transaction. Wall hangings already locked, in liquid or on air are skipped.
+   * @param Player Player
+   * @param int Minimum x
+   * @param int Minimum y
+   * @param int Minimum z
+   * @param int Maximum x
+   * @param int Maximum y
+   * @param int Maximum z
+   */
+  public void createLockDataInArea(Player player, int minX, int minY, int minZ, int maxX, int maxY, int maxZ){
+    try {
+      String world = player.getWorld().getName();
+      List<FrameGuardLockRecord> candidates = new ArrayList<FrameGuardLockRecord>();
+      for(Hanging hanging : frameguard.getFgHangingIndex().getInArea(world, minX, minY, minZ, maxX, maxY, maxZ)){
+        Location loc = hanging.getLocation();
+        if(loc.getBlock().isLiquid()){
+          continue;
+        }
+        Block attachedBlock = FrameGuardUtility.getAttachedBlockByHanging(hanging);
+        if(attachedBlock.isEmpty() || attachedBlock.isLiquid()){
+          continue;
+        }
+        candidates.add(new FrameGuardLockRecord(
+          loc.getBlockX(),
+          loc.getBlockY(),
+          loc.getBlockZ(),
+          -1,
+          hanging.getFacing().name(),
+          attachedBlock.getX(),
+          attachedBlock.getY(),
+          attachedBlock.getZ(),
+          attachedBlock.getType().name()
+        ));
+      }
+      int locked = core.lockAll(world, player.getUniqueId(), player.getName(), candidates);
+      FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageBulkLocked(), String.valueOf(locked));
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+  
+  /**
+   * Remove lock data.
+   * @param Player Player
+   * @param Entity Entity
+   */
+  public void removeLockData(Player player, Entity entity){
+    try {
+      Location loc = entity.getLocation();
+      // OP authority can be unlocked by anyone.
+      if(core.unlock(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), player.getUniqueId(), player.isOp())){
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageUnlocked());
+      }
+      
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+  
+  /**
+   * Remove every lock selected by the filter in the background. The result is reported to the sender.
+   * @param CommandSender Sender
+   * @param FrameGuardLockFilter Filter, null selects nothing
+   */
+  public void removeLockDataAll(final CommandSender sender, FrameGuardLockFilter filter){
+    try {
+      core.unlockAll(filter, new FrameGuardCore.BulkCallback() {
+        @Override
+        public void done(int count) {
+          if(count < 0){
+            FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageBulkFailed());
+          }else{
+            FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageBulkUnlocked(), String.valueOf(count));
+          }
+        }
+      });
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Give every lock selected by the filter to another player in the background. The result is reported to the sender.
+   * @param CommandSender Sender
+   * @param FrameGuardLockFilter Filter, null selects nothing
+   * @param OfflinePlayer New owner
+   * @param String Name of the new owner, used when the server does not know it
+   */
+  public void transferLockDataAll(final CommandSender sender, FrameGuardLockFilter filter, OfflinePlayer newOwner, String name){
+    try {
+      String playerName = newOwner.getName() == null ? name : newOwner.getName();
+      core.transferAll(filter, newOwner.getUniqueId(), playerName, new FrameGuardCore.BulkCallback() {
+        @Override
+        public void done(int count) {
+          if(count < 0){
+            FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageBulkFailed());
+          }else{
+            FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageBulkTransferred(), String.valueOf(count));
+          }
+        }
+      });
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Purge lock data in the background. Progress is reported to the sender.
+   * @param CommandSender Sender
+   * @param int days
+   */
+  public void purgeData(final CommandSender sender, final int days){
+    FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessagePurgeStarted(), String.valueOf(days));
+    core.purge(days, frameguard.getFgConfig().getPurgeBatchSize(), new FrameGuardCore.PurgeCallback() {
+      @Override
+      public void progress(int purgedCount) {
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessagePurgeProgress(), String.valueOf(purgedCount));
+      }
+
+      @Override
+      public void finished() {
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessagePurgeTheData(), String.valueOf(days));
+      }
+
+      @Override
+      public void failed() {
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessagePurgeFailed());
+      }
+    });
+  }
+
+  /**
+   * Export lock data to a file of the plugin folder in the background. Progress is reported to the sender.
+   * @param CommandSender Sender
+   * @param String File name
+   */
+  public void exportData(final CommandSender sender, String fileName){
+    try {
+      if(!core.exportLocks(new File(frameguard.getDataFolder(), fileName), createStreamCallback(sender, frameguard.getFgConfig().getMessageExportFinished()))){
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageStreamBusy());
+        return;
+      }
+      FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageExportStarted(), fileName);
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Import lock data from a file of the plugin folder in the background. Progress is reported to the sender.
+   * @param CommandSender Sender
+   * @param String File name
+   */
+  public void importData(final CommandSender sender, String fileName){
+    try {
+      File file = new File(frameguard.getDataFolder(), fileName);
+      if(!file.isFile()){
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageFileNotFound(), fileName);
+        return;
+      }
+      if(!core.importLocks(file, frameguard.getFgConfig().getImportBatchSize(), createStreamCallback(sender, frameguard.getFgConfig().getMessageImportFinished()))){
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageStreamBusy());
+        return;
+      }
+      FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageImportStarted(), fileName);
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Create callback that reports export or import to the sender.
+   * @param CommandSender Sender
+   * @param FrameGuardMessage Message of the end
+   * @return FrameGuardCore.StreamCallback Callback
+   */
+  private FrameGuardCore.StreamCallback createStreamCallback(final CommandSender sender, final FrameGuardMessage finished){
+    return new FrameGuardCore.StreamCallback() {
+      @Override
+      public void progress(long count) {
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageStreamProgress(), String.valueOf(count));
+      }
+
+      @Override
+      public void finished(long count) {
+        FrameGuardUtility.sendMessage(sender, finished, String.valueOf(count));
+      }
+
+      @Override
+      public void failed() {
+        FrameGuardUtility.sendMessage(sender, frameguard.getFgConfig().getMessageStreamFailed());
+      }
+    };
+  }
+
+  /**
+   * Remove a bounded number of the oldest locks older than days in the background.
+   * @param int days
+   * @param int Maximum number of locks
+   * @param ExpireCallback Callback
+   */
+  public void expireLocks(int days, int limit, FrameGuardCore.ExpireCallback callback){
+    core.expire(days, limit, callback);
+  }
+
+  /**
+   * View lock data.
+   * @param Player Player
+   * @param Entity Entity
+   */
+  public void informationLockData(Player player, Entity entity){
+    try {
+      Location loc = entity.getLocation();
+      String playerName = core.getOwnerName(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+      if(playerName != null){
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageLockByPlayer(), playerName);
+      } else {
+        FrameGuardUtility.sendMessage(player, frameguard.getFgConfig().getMessageNoLockInformation());
+      }
+    } catch (Exception e) {
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+  
+  /**
+   * Check a block broken by a player.
+   * @param Location Location
+   * @return FrameGuardCore.Verdict LOCKED, ATTACHED or ALLOW
+   */
+  public FrameGuardCore.Verdict checkBlockBreak(Location loc){
+    return core.checkBlockBreak(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+  }
+  
+  /**
+   * Check a block that burns or fades.
+   * @param Location Location
+   * @return FrameGuardCore.Verdict LOCKED, ATTACHED or ALLOW
+   */
+  public FrameGuardCore.Verdict checkBlockChange(Location loc){
+    return core.checkBlockChange(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+  }
+  
+  /**
+   * Check a block placed by a player.
+   * @param Location Location
+   * @return FrameGuardCore.Verdict LOCKED or ALLOW
+   */
+  public FrameGuardCore.Verdict checkBlockPlace(Location loc){
+    return core.checkBlockPlace(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+  }
+  
+  /**
+   * Check lock data.
+   * @param Location Location
+   * @return boolean true:locked false:no lock
+   */
+  public boolean isLocked(Location loc){
+    return core.isLocked(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+  }
+  
+  /**
+   * Check whether any of the blocks touches a locked wall hanging.
+   * @param World World
+   * @param long[] Positions packed by FrameGuardPosition.pack
+   * @param int Number of positions
+   * @return boolean true:touches false:none
+   */
+  public boolean isAnyAdjacentToLock(World world, long[] positions, int count){
+    return core.isAnyAdjacentToLock(world.getName(), positions, count);
+  }
+  
+  /**
+   * Remove locked blocks and blocks with a locked wall hanging attached from the blocks of an explosion.
+   * @param World World
+   * @param List<Block> Blocks to be destroyed, changed in place
+   * @return int Number of removed blocks
+   */
+  public int removeProtectedBlocks(World world, List<Block> blocks){
+    int count = blocks.size();
+    if(explodeCheck.length < count){
+      explodeCheck = Arrays.copyOf(explodeCheck, Math.max(count, explodeCheck.length << 1));
+      explodeProtected = new boolean[explodeCheck.length];
+    }
+    int i = 0;
+    for(Block block : blocks){
+      explodeCheck[i++] = FrameGuardPosition.pack(block.getX(), block.getY(), block.getZ());
+    }
+    int removed = core.findProtected(world.getName(), explodeCheck, count, explodeProtected);
+    if(removed == 0){
+      return 0;
+    }
+    i = 0;
+    for(Iterator<Block> it = blocks.iterator(); it.hasNext(); i++){
+      it.next();
+      if(explodeProtected[i]){
+        it.remove();
+      }
+    }
+    return removed;
+  }
+  
+  /**
+   * Check lock data by location and player.
+   * @param Location Location
+   * @param Player Player
+   * @return boolean true:locked false:no locked or no owner
+   */
+  public boolean isLockedOwner(Location loc, Player owner){
+    return core.isLockedOwner(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), owner.getUniqueId());
+  }
+  
+  /**
+   * Get lock record.
+   * @param Location Location
+   * @return FrameGuardLockRecord Lock record or null.
+   */
+  public FrameGuardLockRecord getLockRecord(Location loc){
+    return core.getLockRecord(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+  }
+
+}
@@ -0,0 +1,211 @@
+package space.gorogoro.frameguard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Hanging;
+
+/*
+ * FrameGuardHangingIndex
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Item frames, glow item frames and paintings of the loaded chunks by block position.
+ * World -> chunk -> position -> hangings. More than one hanging can share a block,
+ * e.g. frames facing different directions. Used on the main thread only.
+ */
+public class FrameGuardHangingIndex {
+  private final Map<String, Map<Long, Map<Long, List<Hanging>>>> worlds = new HashMap<String, Map<Long, Map<Long, List<Hanging>>>>();
+  private int size;
+
+  /**
+   * Index hangings of all loaded worlds.
+   * @param List<World> Worlds
+   */
+  public void loadWorlds(List<World> worldList) {
+    clear();
+    for(World world : worldList){
+      loadEntities(world.getName(), world.getEntities());
+    }
+  }
+
+  /**
+   * Index hangings among entities that were loaded.
+   * @param String World name
+   * @param List<Entity> Entities
+   */
+  public void loadEntities(String world, List<Entity> entities) {
+    for(Entity entity : entities){
+      if(entity instanceof Hanging && FrameGuardUtility.isContinue(entity)){
+        add(world, (Hanging)entity);
+      }
+    }
+  }
+
+  /**
+   * Forget hangings of chunk.
+   * @param String World name
+   * @param int Chunk x
+   * @param int Chunk z
+   */
+  public void unloadChunk(String world, int chunkX, int chunkZ) {
+    Map<Long, Map<Long, List<Hanging>>> chunks = worlds.get(world);
+    if(chunks == null){
+      return;
+    }
+    Map<Long, List<Hanging>> positions = chunks.remove(FrameGuardPosition.chunkKey(chunkX, chunkZ));
+    if(positions == null){
+      return;
+    }
+    for(List<Hanging> hangings : positions.values()){
+      size -= hangings.size();
+    }
+  }
+
+  /**
+   * Add hanging.
+   * @param Hanging Hanging
+   */
+  public void add(Hanging hanging) {
+    add(hanging.getWorld().getName(), hanging);
+  }
+
+  /**
+   * Add hanging.
+   * @param String World name
+   * @param Hanging Hanging
+   */
+  private void add(String world, Hanging hanging) {
+    Location loc = hanging.getLocation();
+    long pos = FrameGuardPosition.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    Map<Long, Map<Long, List<Hanging>>> chunks = worlds.get(world);
+    if(chunks == null){
+      chunks = new HashMap<Long, Map<Long, List<Hanging>>>();
+      worlds.put(world, chunks);
+    }
+    Long chunkKey = FrameGuardPosition.chunkKeyOf(pos);
+    Map<Long, List<Hanging>> positions = chunks.get(chunkKey);
+    if(positions == null){
+      positions = new HashMap<Long, List<Hanging>>();
+      chunks.put(chunkKey, positions);
+    }
+    List<Hanging> hangings = positions.get(pos);
+    if(hangings == null){
+      hangings = new ArrayList<Hanging>(1);
+      positions.put(pos, hangings);
+    }
+    for(Hanging indexed : hangings){
+      if(indexed.getUniqueId().equals(hanging.getUniqueId())){
+        return;
+      }
+    }
+    hangings.add(hanging);
+    size++;
+  }
+
+  /**
+   * Remove hanging.
+   * @param Hanging Hanging
+   */
+  public void remove(Hanging hanging) {
+    Location loc = hanging.getLocation();
+    long pos = FrameGuardPosition.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    Map<Long, List<Hanging>> positions = getPositions(hanging.getWorld().getName(), pos);
+    if(positions == null){
+      return;
+    }
+    List<Hanging> hangings = positions.get(pos);
+    if(hangings == null){
+      return;
+    }
+    for(Iterator<Hanging> it = hangings.iterator(); it.hasNext();){
+      if(it.next().getUniqueId().equals(hanging.getUniqueId())){
+        it.remove();
+        size--;
+      }
+    }
+    if(hangings.isEmpty()){
+      positions.remove(pos);
+    }
+  }
+
+  /**
+   * Get hangings inside cuboid, one map lookup per chunk of the cuboid.
+   * @param String World name
+   * @param int Minimum x
+   * @param int Minimum y
+   * @param int Minimum z
+   * @param int Maximum x
+   * @param int Maximum y
+   * @param int Maximum z
+   * @return List<Hanging> Hangings
+   */
+  public List<Hanging> getInArea(String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+    List<Hanging> found = new ArrayList<Hanging>();
+    Map<Long, Map<Long, List<Hanging>>> chunks = worlds.get(world);
+    if(chunks == null){
+      return found;
+    }
+    for(int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++){
+      for(int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++){
+        Map<Long, List<Hanging>> positions = chunks.get(FrameGuardPosition.chunkKey(chunkX, chunkZ));
+        if(positions == null){
+          continue;
+        }
+        for(Map.Entry<Long, List<Hanging>> entry : positions.entrySet()){
+          long pos = entry.getKey();
+          int x = FrameGuardPosition.x(pos);
+          int y = FrameGuardPosition.y(pos);
+          int z = FrameGuardPosition.z(pos);
+          if(x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ){
+            continue;
+          }
+          for(Hanging hanging : entry.getValue()){
+            if(hanging.isValid()){
+              found.add(hanging);
+            }
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Get hangings of chunk containing position.
+   * @param String World name
+   * @param long Packed position
+   * @return Map<Long, List<Hanging>> Hangings by position or null
+   */
+  private Map<Long, List<Hanging>> getPositions(String world, long pos) {
+    Map<Long, Map<Long, List<Hanging>>> chunks = worlds.get(world);
+    if(chunks == null){
+      return null;
+    }
+    return chunks.get(FrameGuardPosition.chunkKeyOf(pos));
+  }
+
+  /**
+   * Forget all hangings.
+   */
+  public void clear() {
+    worlds.clear();
+    size = 0;
+  }
+
+  /**
+   * Get number of indexed hangings.
+   * @return int Number of hangings.
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,589 @@
+package space.gorogoro.frameguard;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Hanging;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.hanging.HangingBreakByEntityEvent;
+import org.bukkit.event.hanging.HangingBreakEvent;
+import org.bukkit.event.hanging.HangingPlaceEvent;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.inventory.ItemStack;
+
+/*
+ * FrameGuardListener
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardListener implements Listener{
+  private FrameGuard frameguard;
+  private boolean DEBUG;
+  private long[] pistonCheck = new long[64];
+  private int pistonCheckCount;
+  
+  /**
+   * Constructor of FrameGuardListener.
+   */
+  public FrameGuardListener(FrameGuard frameGuard) {
+    try{
+      this.frameguard = frameGuard;
+      this.DEBUG = frameguard.getFgConfig().isDebugMode();
+    } catch (Exception e){
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+  
+  /**
+   * On block break
+   * @param BlockBreakEvent BlockBreakEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onBlockBreak(BlockBreakEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onBlockBreak");
+      }
+    
+      FrameGuardCore.Verdict verdict = frameguard.getFgDatabase().checkBlockBreak(event.getBlock().getLocation());
+      if(verdict == FrameGuardCore.Verdict.LOCKED){
+        FrameGuardUtility.sendMessage(event.getPlayer(), frameguard.getFgConfig().getMessageBlockIsLocked());
+        event.setCancelled(true);
+        return;
+      }
+    
+      if(verdict == FrameGuardCore.Verdict.ATTACHED){
+        FrameGuardUtility.sendMessage(event.getPlayer(), frameguard.getFgConfig().getMessageBlockHasLockedWallHanging());
+        event.setCancelled(true);
+        return;
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_BREAK, started);
+    }
+  }
+  
+  /**
+   * On block burn
+   * @param BlockBurnEvent BlockBurnEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onBlockBurn(BlockBurnEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: BlockBurn");
+      }
+    
+      if(frameguard.getFgDatabase().checkBlockChange(event.getBlock().getLocation()) != FrameGuardCore.Verdict.ALLOW){
+        frameguard.getLogger().log(Level.INFO, frameguard.getFgConfig().getMessageBlockIsLocked().getText());
+        event.setCancelled(true);
+        return;
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_BURN, started);
+    }
+  }
+  
+  /**
+   * On block explode
+   * @param BlockExplodeEvent BlockExplodeEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST, ignoreCancelled=true)
+  public void onBlockExplode(BlockExplodeEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onBlockExplode");
+      }
+    
+      // Keep locked blocks and the blocks locked wall hangings are attached to.
+      frameguard.getFgDatabase().removeProtectedBlocks(event.getBlock().getWorld(), event.blockList());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_EXPLODE, started);
+    }
+  }
+  
+  /**
+   * On entity explode
+   * @param EntityExplodeEvent EntityExplodeEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST, ignoreCancelled=true)
+  public void onEntityExplode(EntityExplodeEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onEntityExplode");
+      }
+    
+      // Keep locked blocks and the blocks locked wall hangings are attached to.
+      frameguard.getFgDatabase().removeProtectedBlocks(event.getEntity().getWorld(), event.blockList());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.ENTITY_EXPLODE, started);
+    }
+  }
+  
+  /**
+   * On block fade
+   * @param BlockFadeEvent BlockFadeEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onBlockFade(BlockFadeEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onBlockFade");
+      }
+    
+      if(frameguard.getFgDatabase().checkBlockChange(event.getBlock().getLocation()) != FrameGuardCore.Verdict.ALLOW){
+        event.setCancelled(true);
+        return;
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_FADE, started);
+    }
+  }
+  
+  /**
+   * On block pistion extend
+   * @param BlockPistonExtendEvent BlockPistonExtendEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onBlockPistonExtend(BlockPistonExtendEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onBlockPistonExtend");
+      }
+    
+      // Cancel the event if the piston has stretched into a locked wall hanging,
+      // or a moving block touches a locked wall hanging.
+      pistonCheckCount = 0;
+      addPistonCheck(event.getBlock().getRelative(event.getDirection()));
+      for ( Block block : event.getBlocks() ) {
+        addPistonCheck(block);
+      }
+      if(frameguard.getFgDatabase().isAnyAdjacentToLock(event.getBlock().getWorld(), pistonCheck, pistonCheckCount)){
+        event.setCancelled(true);
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_PISTON_EXTEND, started);
+    }
+  }
+  
+  /**
+   * On block piston retract
+   * @param BlockPistonRetractEvent BlockPistonRetractEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onBlockPistonRetract(BlockPistonRetractEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onBlockPistonRetract");
+      }
+    
+      Block block = event.getBlock().getRelative(event.getDirection());
+      if ( block == null || block.isEmpty() || block.isLiquid() ) {
+        return;
+      }
+      pistonCheckCount = 0;
+      addPistonCheck(block);
+      for ( Block pulled : event.getBlocks() ) {
+        addPistonCheck(pulled);
+      }
+      if(frameguard.getFgDatabase().isAnyAdjacentToLock(event.getBlock().getWorld(), pistonCheck, pistonCheckCount)){
+        event.setCancelled(true);
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_PISTON_RETRACT, started);
+    }
+  }
+  
+  /**
+   * Add block to the positions checked by the piston handlers.
+   * @param Block Block
+   */
+  private void addPistonCheck(Block block) {
+    if(pistonCheckCount == pistonCheck.length){
+      pistonCheck = Arrays.copyOf(pistonCheck, pistonCheck.length << 1);
+    }
+    pistonCheck[pistonCheckCount++] = FrameGuardPosition.pack(block.getX(), block.getY(), block.getZ());
+  }
+  
+  /**
+   * On block place
+   * @param BlockPlaceEvent BlockPlaceEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onBlockPlace(BlockPlaceEvent event){
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onBlockPlace");
+      }
+    
+      if(frameguard.getFgDatabase().checkBlockPlace(event.getBlock().getLocation()) == FrameGuardCore.Verdict.LOCKED){
+        frameguard.getLogger().log(Level.INFO, frameguard.getFgConfig().getMessageBlockIsLocked().getText());
+        event.setCancelled(true);
+        return;
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.BLOCK_PLACE, started);
+    }
+  }
+  
+  /**
+   * On entity damage by entity
+   * @param EntityDamageByEntityEvent EntityDamageByEntityEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onEntityDamageByEntity");
+      }
+    
+      Entity entity = event.getEntity();
+      if(!FrameGuardUtility.isContinue(entity)){
+        return;
+      }
+    
+      Location loc = entity.getLocation();
+      if(frameguard.getFgDatabase().isLocked(loc)){
+        if(event.getDamager().getType() == EntityType.PLAYER){
+          Player damager = (Player)event.getDamager();
+        
+          if (frameguard.getFgPunchSessions().isInPunch(damager.getUniqueId())){
+            event.setCancelled(true);
+            frameguard.getFgDatabase().finishPunch(damager, event.getEntity());
+            return;
+          }
+        
+          if(!frameguard.getFgDatabase().isLockedOwner(loc, damager)){
+            // Cancel if broken by non-owner
+            frameguard.getFgDatabase().informationLockData(damager, entity);
+            event.setCancelled(true);
+            return;
+          }
+        } else {
+          // Cancel if broken by arrow
+          event.setCancelled(true);
+        }
+      } else {
+        if(event.getDamager().getType() == EntityType.PLAYER){
+          Player damager = (Player)event.getDamager();
+        
+          if (frameguard.getFgPunchSessions().isInPunch(damager.getUniqueId())){
+            event.setCancelled(true);
+            frameguard.getFgDatabase().finishPunch(damager, event.getEntity());
+            return;
+          }
+        }
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.ENTITY_DAMAGE_BY_ENTITY, started);
+    }
+  }
+  
+  /**
+   * On hanging break
+   * @param HangingBreakEvent HangingBreakEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onHangingBreak(HangingBreakEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onHangingBreak");
+      }
+    
+      Hanging hanging = event.getEntity();
+      if(!FrameGuardUtility.isContinue(hanging)){
+        return;
+      }
+    
+      FrameGuardLockRecord record = frameguard.getFgDatabase().getLockRecord(hanging.getLocation());
+      if( record != null ){
+      
+        if(hanging.getLocation().getBlock().getType() != Material.AIR){
+          if(!hanging.getLocation().getBlock().isLiquid()) {
+            for (ItemStack drop : hanging.getLocation().getBlock().getDrops() ) {
+              // Drop the block of the locked place
+              hanging.getWorld().dropItemNaturally(hanging.getLocation(), drop);
+            }
+            // Replace AIR
+            hanging.getLocation().getBlock().setType(Material.AIR);
+          } else {
+            hanging.getLocation().getBlock().setType(Material.AIR);
+          }
+        }
+      
+        Block restoredBlock = hanging.getWorld().getBlockAt(record.getAttachedX(), record.getAttachedY(), record.getAttachedZ());
+        Material attachedMaterial = Material.getMaterial(record.getAttachedMaterial());
+        if(attachedMaterial != null && restoredBlock.getType() != attachedMaterial) {
+          restoredBlock.setType(attachedMaterial);
+        }
+      
+        if(hanging.getFacing().name().equals(record.getBlockFace())) {
+          event.setCancelled(true);
+        }
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.HANGING_BREAK, started);
+    }
+  }
+  
+  /**
+   * On hanging break by entity
+   * @param HangingBreakByEntityEvent HangingBreakByEntityEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onHangingBreakByEntity(HangingBreakByEntityEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onHangingBreakByEntity");
+      }
+    
+      Hanging hanging = event.getEntity();
+      if(!FrameGuardUtility.isContinue(hanging)){
+        return;
+      }
+    
+      if ( event.getRemover().getType() == EntityType.PLAYER ) {
+        Player damager = (Player)event.getRemover();
+        if (frameguard.getFgPunchSessions().isInPunch(damager.getUniqueId())){
+          event.setCancelled(true);
+          frameguard.getFgDatabase().finishPunch(damager, event.getEntity());
+          return;
+        }
+      }
+    
+      if( frameguard.getFgDatabase().isLocked(hanging.getLocation()) ){
+        event.setCancelled(true);
+        if ( event.getRemover().getType() == EntityType.PLAYER ) {
+          Player damager = (Player)event.getRemover();
+          frameguard.getFgDatabase().informationLockData(damager, hanging);
+        }
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.HANGING_BREAK_BY_ENTITY, started);
+    }
+  }
+  
+  /**
+   * On hanging place
+   * @param HangingPlaceEvent HangingPlaceEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onHangingPlace(HangingPlaceEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onHangingPlace");
+      }
+    
+      Hanging hanging = event.getEntity();
+      if(!FrameGuardUtility.isContinue(hanging)){
+        return;
+      }
+    
+      if(frameguard.getFgDatabase().isLocked(hanging.getLocation())){
+        if(!frameguard.getFgDatabase().isLockedOwner(hanging.getLocation(), event.getPlayer())){
+          FrameGuardUtility.sendMessage(event.getPlayer(), frameguard.getFgConfig().getMessageBlockIsLocked());
+          event.setCancelled(true);
+        }
+        return;
+      }else{
+        Player player = event.getPlayer();
+        if (frameguard.getFgPunchSessions().isInPunch(player.getUniqueId())){
+          event.setCancelled(true);
+          frameguard.getFgDatabase().finishPunch(player, event.getEntity());
+          return;
+        }
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.HANGING_PLACE, started);
+    }
+  }
+  
+  /**
+   * On hanging place, after protection has decided.
+   * @param HangingPlaceEvent HangingPlaceEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+  public void onHangingPlaced(HangingPlaceEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(!FrameGuardUtility.isContinue(event.getEntity())){
+        return;
+      }
+      frameguard.getFgHangingIndex().add(event.getEntity());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.HANGING_PLACED, started);
+    }
+  }
+  
+  /**
+   * On hanging break, after protection has decided.
+   * @param HangingBreakEvent HangingBreakEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+  public void onHangingBroken(HangingBreakEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(!FrameGuardUtility.isContinue(event.getEntity())){
+        return;
+      }
+      frameguard.getFgHangingIndex().remove(event.getEntity());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.HANGING_BROKEN, started);
+    }
+  }
+  
+  /**
+   * On player interact entity
+   * @param PlayerInteractEntityEvent PlayerInteractEntityEvent
+   */
+  @EventHandler(priority=EventPriority.HIGHEST)
+  public void onPlayerInteractEntity(PlayerInteractEntityEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onPlayerInteractEntity");
+      }
+    
+      Entity entity = event.getRightClicked();
+      if(!FrameGuardUtility.isContinue(entity)){
+        return;
+      }
+    
+      if(frameguard.getFgDatabase().isLocked(entity.getLocation())){
+        if(!frameguard.getFgDatabase().isLockedOwner(entity.getLocation(), event.getPlayer())){
+          FrameGuardUtility.sendMessage(event.getPlayer(), frameguard.getFgConfig().getMessageBlockIsLocked());
+          event.setCancelled(true);
+        }
+        return;
+      }
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.PLAYER_INTERACT_ENTITY, started);
+    }
+  }
+  
+  /**
+   * On player quit
+   * @param PlayerQuitEvent PlayerQuitEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR)
+  public void onPlayerQuit(PlayerQuitEvent event) {
+    long started = System.nanoTime();
+    try{
+      frameguard.getFgPunchSessions().cancel(event.getPlayer().getUniqueId());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.PLAYER_QUIT, started);
+    }
+  }
+  
+  /**
+   * On chunk load
+   * @param ChunkLoadEvent ChunkLoadEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR)
+  public void onChunkLoad(ChunkLoadEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onChunkLoad");
+      }
+    
+      Chunk chunk = event.getChunk();
+      frameguard.getFgDatabase().loadChunk(chunk, event.isNewChunk());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.CHUNK_LOAD, started);
+    }
+  }
+  
+  /**
+   * On chunk unload
+   * @param ChunkUnloadEvent ChunkUnloadEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR)
+  public void onChunkUnload(ChunkUnloadEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onChunkUnload");
+      }
+    
+      Chunk chunk = event.getChunk();
+      frameguard.getFgDatabase().unloadChunk(chunk);
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.CHUNK_UNLOAD, started);
+    }
+  }
+  
+  /**
+   * On entities load
+   * @param EntitiesLoadEvent EntitiesLoadEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR)
+  public void onEntitiesLoad(EntitiesLoadEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onEntitiesLoad");
+      }
+    
+      frameguard.getFgHangingIndex().loadEntities(event.getWorld().getName(), event.getEntities());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.ENTITIES_LOAD, started);
+    }
+  }
+  
+  /**
+   * On entities unload
+   * @param EntitiesUnloadEvent EntitiesUnloadEvent
+   */
+  @EventHandler(priority=EventPriority.MONITOR)
+  public void onEntitiesUnload(EntitiesUnloadEvent event) {
+    long started = System.nanoTime();
+    try{
+      if(DEBUG) {
+        frameguard.getLogger().info("Called: onEntitiesUnload");
+      }
+    
+      Chunk chunk = event.getChunk();
+      frameguard.getFgHangingIndex().unloadChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    } finally {
+      frameguard.getFgMetrics().record(FrameGuardMetrics.Handler.ENTITIES_UNLOAD, started);
+    }
+  }
+  
+}
\ No newline at end of file
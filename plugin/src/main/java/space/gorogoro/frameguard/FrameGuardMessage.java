@@ -0,0 +1,79 @@
+package space.gorogoro.frameguard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.ChatColor;
+
+/*
+ * FrameGuardMessage
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Message of config.yml, colored and split around its placeholder (e.g. __PLAYERNAME__) once.
+ */
+public final class FrameGuardMessage {
+  private static final String CHAT_PREFIX = (Object)ChatColor.DARK_RED + "[FrameGuard]" + " " + (Object)ChatColor.RED;
+
+  private final String text;
+  private final String chatText;
+  private final String[] parts;
+
+  /**
+   * Constructor of FrameGuardMessage.
+   * @param String Message text, null is taken as empty
+   * @param String Placeholder or null
+   */
+  public FrameGuardMessage(String text, String placeholder) {
+    this.text = text == null ? "" : text;
+    this.chatText = CHAT_PREFIX + this.text;
+    if(placeholder == null){
+      this.parts = new String[] {this.chatText};
+      return;
+    }
+    List<String> split = new ArrayList<String>();
+    String rest = this.chatText;
+    int i;
+    while((i = rest.indexOf(placeholder)) >= 0){
+      split.add(rest.substring(0, i));
+      rest = rest.substring(i + placeholder.length());
+    }
+    split.add(rest);
+    this.parts = split.toArray(new String[split.size()]);
+  }
+
+  /**
+   * Get text without color, for the server log and plain command output.
+   * @return String Text
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Get text with the colored [FrameGuard] prefix.
+   * @return String Text
+   */
+  public String getChatText() {
+    return chatText;
+  }
+
+  /**
+   * Get text with the colored [FrameGuard] prefix and the placeholder filled in.
+   * @param String Value of placeholder
+   * @return String Text
+   */
+  public String format(String value) {
+    if(parts.length == 1){
+      return parts[0];
+    }
+    StringBuilder sb = new StringBuilder(chatText.length() + value.length() * (parts.length - 1));
+    sb.append(parts[0]);
+    for(int i = 1; i < parts.length; i++){
+      sb.append(value).append(parts[i]);
+    }
+    return sb.toString();
+  }
+}
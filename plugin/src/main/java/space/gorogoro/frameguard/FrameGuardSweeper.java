@@ -0,0 +1,172 @@
+package space.gorogoro.frameguard;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.bukkit.scheduler.BukkitTask;
+
+/*
+ * FrameGuardSweeper
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ *
+ * Removes locks older than setting-retention-days. Every run removes at most
+ * setting-retention-sweep-batch-size of the oldest locks on the writer thread,
+ * so a large backlog is worked off over many small runs.
+ */
+public class FrameGuardSweeper {
+  private final FrameGuard frameguard;
+  private final int retentionDays;
+  private final int interval;
+  private final int batchSize;
+  private final boolean debug;
+  private BukkitTask task;
+  private boolean sweeping;
+  private final AtomicLong runs = new AtomicLong();
+  private final AtomicLong expiredTotal = new AtomicLong();
+  private final AtomicLong nanosTotal = new AtomicLong();
+  private volatile int lastExpired;
+  private volatile long lastNanos;
+  private long backlogStarted;
+  private int backlogExpired;
+
+  /**
+   * Constructor of FrameGuardSweeper.
+   * @param FrameGuard FrameGuard
+   */
+  public FrameGuardSweeper(FrameGuard frameguard) {
+    this.frameguard = frameguard;
+    this.retentionDays = frameguard.getFgConfig().getRetentionDays();
+    this.interval = frameguard.getFgConfig().getRetentionSweepInterval();
+    this.batchSize = frameguard.getFgConfig().getRetentionSweepBatchSize();
+    this.debug = frameguard.getFgConfig().isDebugMode();
+  }
+
+  /**
+   * Start sweeping. Nothing is done when the retention is disabled.
+   */
+  public void start() {
+    if(retentionDays <= 0 || task != null){
+      return;
+    }
+    task = frameguard.getServer().getScheduler().runTaskTimer(frameguard, new Runnable() {
+      @Override
+      public void run() {
+        sweep();
+      }
+    }, interval, interval);
+  }
+
+  /**
+   * Stop sweeping. A run still queued on the writer may never call back, the next start does not wait for it.
+   */
+  public void stop() {
+    if(task != null){
+      task.cancel();
+      task = null;
+    }
+    sweeping = false;
+  }
+
+  /**
+   * Check whether the retention is enabled.
+   * @return boolean true:enabled false:disabled
+   */
+  public boolean isEnabled() {
+    return retentionDays > 0;
+  }
+
+  /**
+   * Start one run unless the previous run is still in progress.
+   */
+  private void sweep() {
+    if(sweeping){
+      return;
+    }
+    sweeping = true;
+    try{
+      frameguard.getFgDatabase().expireLocks(retentionDays, batchSize, new FrameGuardCore.ExpireCallback() {
+        @Override
+        public void expired(int count, long nanos) {
+          sweeping = false;
+          finished(count, nanos);
+        }
+      });
+    } catch (Exception e){
+      // The run was not queued, the next one starts at the next interval.
+      sweeping = false;
+      FrameGuardUtility.logStackTrace(e);
+    }
+  }
+
+  /**
+   * Record result of run.
+   * @param int Number of expired locks, -1 when failed
+   * @param long Time spent on the writer thread (nanoseconds)
+   */
+  private void finished(int count, long nanos) {
+    runs.incrementAndGet();
+    nanosTotal.addAndGet(nanos);
+    lastNanos = nanos;
+    lastExpired = Math.max(count, 0);
+    if(count <= 0){
+      if(backlogExpired > 0){
+        frameguard.getLogger().log(Level.INFO, "Expired " + backlogExpired + " locks older than " + retentionDays + " days in "
+          + ((System.currentTimeMillis() - backlogStarted) / 1000) + " seconds.");
+      }
+      backlogExpired = 0;
+      return;
+    }
+    expiredTotal.addAndGet(count);
+    if(backlogExpired == 0){
+      backlogStarted = System.currentTimeMillis();
+    }
+    backlogExpired += count;
+    if(debug){
+      frameguard.getLogger().info("Expired " + count + " locks in " + (nanos / 1000000.0) + " ms.");
+    }
+  }
+
+  /**
+   * Get number of runs.
+   * @return long Number of runs.
+   */
+  public long getRuns() {
+    return runs.get();
+  }
+
+  /**
+   * Get number of expired locks since start.
+   * @return long Number of locks.
+   */
+  public long getExpiredTotal() {
+    return expiredTotal.get();
+  }
+
+  /**
+   * Get number of locks expired by the last run.
+   * @return int Number of locks.
+   */
+  public int getLastExpired() {
+    return lastExpired;
+  }
+
+  /**
+   * Get time of the last run on the writer thread.
+   * @return long Nanoseconds
+   */
+  public long getLastNanos() {
+    return lastNanos;
+  }
+
+  /**
+   * Get expired locks per second of writer thread time.
+   * @return double Locks per second.
+   */
+  public double getThroughput() {
+    long nanos = nanosTotal.get();
+    return nanos == 0 ? 0 : expiredTotal.get() * 1000000000.0 / nanos;
+  }
+}
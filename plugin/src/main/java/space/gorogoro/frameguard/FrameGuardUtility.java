@@ -0,0 +1,105 @@
+package space.gorogoro.frameguard;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Hanging;
+import org.bukkit.entity.Player;
+
+/*
+ * FrameGuardUtility
+ * @license    LGPLv3
+ * @copyright  Copyright gorogoro.space 2017
+ * @author     kubotan
+ * @see        <a href="http://blog.gorogoro.space">Kubotan's blog.</a>
+ */
+public class FrameGuardUtility {
+  
+  /**
+   * Output stack trace to log file.
+   * @param Exception Exception
+   */
+  public static void logStackTrace(Exception e){
+    FrameGuardLog.logStackTrace(e);
+  }
+  
+  /**
+   * Determine whether processing can be continued.
+   * @param Hanging Hanging
+   * @return boolean true:Continue false:Stop
+   */
+  public static boolean isContinue(Hanging hanging){
+    if(hanging.getType() == EntityType.ITEM_FRAME){
+      return true;
+    }else if(hanging.getType() == EntityType.GLOW_ITEM_FRAME){
+      return true;
+    }else if(hanging.getType() == EntityType.PAINTING){
+      return true;
+    }
+    return false;
+  }
+  
+  /**
+   * Determine whether processing can be continued.
+   * @param Entity Entity
+   * @return boolean true:Continue false:Stop
+   */
+  public static boolean isContinue(Entity entity){
+    if ( entity.getType() == EntityType.ITEM_FRAME) {
+      return true;
+    }else if ( entity.getType() == EntityType.GLOW_ITEM_FRAME ) {
+      return true;
+    }else if ( entity.getType() == EntityType.PAINTING ) {
+      return true;
+    }
+    return false;
+  }
+  
+  /**
+   * Send message to player
+   * @param CommandSender CommandSender
+   * @param String message
+   */
+  public static void sendMessage(CommandSender sender, String message){
+    sender.sendMessage((Object)ChatColor.DARK_RED + "[FrameGuard]" + " " + (Object)ChatColor.RED + message);
+  }
+  
+  /**
+   * Send message to player
+   * @param CommandSender CommandSender
+   * @param FrameGuardMessage message
+   */
+  public static void sendMessage(CommandSender sender, FrameGuardMessage message){
+    sender.sendMessage(message.getChatText());
+  }
+  
+  /**
+   * Send message with its placeholder filled in to player
+   * @param CommandSender CommandSender
+   * @param FrameGuardMessage message
+   * @param String Value of placeholder
+   */
+  public static void sendMessage(CommandSender sender, FrameGuardMessage message, String value){
+    sender.sendMessage(message.format(value));
+  }
+  
+  /**
+   * Get attached block by hanging
+   * @param Hanging Hanging
+   * @return Block Attached block
+   */
+  public static Block getAttachedBlockByHanging(Hanging hanging){
+    // Calculate the position of the wall hanging block
+    Location attachedLocation = new Location(
+      hanging.getLocation().getWorld(),
+      hanging.getLocation().getX() + hanging.getAttachedFace().getModX(),
+      hanging.getLocation().getY() + hanging.getAttachedFace().getModY(),
+      hanging.getLocation().getZ() + hanging.getAttachedFace().getModZ()
+    );
+    return attachedLocation.getBlock();
+  }
+  
+}